@@ -0,0 +1,43 @@
+package benchmarks;
+
+import models.FreightWagon;
+import models.Locomotive;
+import models.Train;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building a freight train one wagon at a time with attachToRear.
+ * With a maintained tail the time per assembled train should grow linearly
+ * with the number of wagons, i.e. the time per wagon should stay flat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssemblyBenchmark {
+
+    @Param({"1000", "2000", "4000", "8000"})
+    public int numberOfWagons;
+
+    @Benchmark
+    public Train attachToRear() {
+        Train train = new Train(new Locomotive(1, numberOfWagons), "Amsterdam", "Rotterdam");
+        for (int id = 1; id <= numberOfWagons; id++) {
+            train.attachToRear(new FreightWagon(id, 1000));
+        }
+        return train;
+    }
+
+    @Benchmark
+    public Train insertAtFront() {
+        Train train = new Train(new Locomotive(1, numberOfWagons), "Amsterdam", "Rotterdam");
+        for (int id = 1; id <= numberOfWagons; id++) {
+            train.insertAtFront(new FreightWagon(id, 1000));
+        }
+        return train;
+    }
+}
@@ -0,0 +1,43 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs benchmarks and exports the results as JSON, to compare the performance of different commits:
+ *
+ *      java -cp benchmarks/target/benchmarks.jar benchmarks.BenchmarkMain <label> [JMH options]
+ *
+ * The results are written to results/<label>.json, e.g. with the commit id as label:
+ *
+ *      java -cp benchmarks/target/benchmarks.jar benchmarks.BenchmarkMain $(git rev-parse --short HEAD) TrainOperations
+ *
+ * All other arguments are passed to JMH, e.g. a benchmark name pattern or -p length=1000,1000000.
+ * Two JSON result files can be compared with any JMH result viewer.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("usage: BenchmarkMain <label> [JMH options]");
+            System.exit(2);
+        }
+        String[] jmhArgs = new String[args.length - 1];
+        System.arraycopy(args, 1, jmhArgs, 0, jmhArgs.length);
+        File results = new File("results", args[0] + ".json");
+        if (!results.getParentFile().isDirectory() && !results.getParentFile().mkdirs()) {
+            throw new IllegalStateException("cannot create " + results.getParentFile());
+        }
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(jmhArgs))
+                .resultFormat(ResultFormatType.JSON)
+                .result(results.getPath())
+                .build();
+        new Runner(options).run();
+    }
+}
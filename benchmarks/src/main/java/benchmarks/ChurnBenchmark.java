@@ -0,0 +1,58 @@
+package benchmarks;
+
+import models.Locomotive;
+import models.Train;
+import models.Wagon;
+import models.WagonPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures consist churn with pooled wagons: every operation takes a wagon from the pool,
+ * attaches or inserts it, moves a wagon to another train, and periodically splits a train
+ * and releases the split off wagons to the pool.
+ * Run with -prof gc: gc.alloc.rate.norm should be 0 B/op in steady state.
+ *
+ *      java -jar target/benchmarks.jar ChurnBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChurnBenchmark {
+    private static final int MAX_WAGONS = 1000;
+
+    private final WagonPool pool = new WagonPool();
+    private Train yard;
+    private Train outbound;
+    private int nextId;
+
+    @Setup
+    public void setup() {
+        pool.reserve(0, 4 * MAX_WAGONS);
+        yard = new Train(new Locomotive(1, MAX_WAGONS), "Yard", "Yard");
+        outbound = new Train(new Locomotive(2, MAX_WAGONS), "Yard", "Rotterdam");
+        nextId = 1;
+    }
+
+    @Benchmark
+    public int attachInsertMove() {
+        int id = nextId;
+        nextId += 2;
+        yard.attachToRear(pool.freightWagon(id, 1000));
+        yard.insertAtFront(pool.freightWagon(id + 1, 1200));
+        yard.moveOneWagon(id, outbound);
+        if (yard.getNumberOfWagons() >= MAX_WAGONS / 2) {
+            yard.splitAtPosition(1, outbound);
+        }
+        if (outbound.getNumberOfWagons() >= MAX_WAGONS / 2) {
+            Wagon departed = outbound.getFirstWagon();
+            outbound.setFirstWagon(null);
+            pool.release(departed);
+        }
+        return yard.getNumberOfWagons();
+    }
+}
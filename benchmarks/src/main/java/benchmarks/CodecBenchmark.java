@@ -0,0 +1,106 @@
+package benchmarks;
+
+import models.FreightWagon;
+import models.Locomotive;
+import models.Train;
+import models.TrainCodec;
+import models.Wagon;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a round trip of a train through TrainCodec with a round trip through Java serialization.
+ * The model classes are not Serializable, so the Java serialization side uses plain
+ * serializable transfer objects holding the same data, as a caller would have to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"100", "10000"})
+    public int numberOfWagons;
+
+    private Train train;
+    private ByteBuffer buffer;
+
+    static class WagonRecord implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int id;
+        final boolean freight;
+        final int capacity;
+
+        WagonRecord(int id, boolean freight, int capacity) {
+            this.id = id;
+            this.freight = freight;
+            this.capacity = capacity;
+        }
+    }
+
+    static class TrainRecord implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        int locNumber, maxWagons;
+        String origin, destination;
+        List<WagonRecord> wagons = new ArrayList<>();
+    }
+
+    @Setup
+    public void setup() {
+        train = new Train(new Locomotive(1, numberOfWagons), "Amsterdam", "Rotterdam");
+        for (int id = 1; id <= numberOfWagons; id++) {
+            train.attachToRear(new FreightWagon(100000 + id, id % 4 == 0 ? 60000 : 50000));
+        }
+        buffer = ByteBuffer.allocate(32 + 20 * numberOfWagons);
+    }
+
+    @Benchmark
+    public Train trainCodec() {
+        buffer.clear();
+        TrainCodec.encode(train, buffer);
+        buffer.flip();
+        return TrainCodec.decode(buffer);
+    }
+
+    @Benchmark
+    public Train javaSerialization() throws IOException, ClassNotFoundException {
+        TrainRecord record = new TrainRecord();
+        record.locNumber = train.getEngine().getLocNumber();
+        record.maxWagons = train.getEngine().getMaxWagons();
+        record.origin = train.getOrigin();
+        record.destination = train.getDestination();
+        for (Wagon wagon : train) {
+            record.wagons.add(new WagonRecord(wagon.getId(), true, ((FreightWagon) wagon).getMaxWeight()));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(record);
+        }
+        TrainRecord copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (TrainRecord) in.readObject();
+        }
+        Train result = new Train(new Locomotive(copy.locNumber, copy.maxWagons), copy.origin, copy.destination);
+        Wagon first = null, last = null;
+        for (WagonRecord wagonRecord : copy.wagons) {
+            Wagon wagon = new FreightWagon(wagonRecord.id, wagonRecord.capacity);
+            if (last == null) {
+                first = wagon;
+            } else {
+                wagon.attachTo(last);
+            }
+            last = wagon;
+        }
+        result.setFirstWagon(first);
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+package benchmarks;
+
+import models.CompactTrain;
+import models.Locomotive;
+import models.PassengerWagon;
+import models.Train;
+import models.Wagon;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares scanning the linked Train representation with the array-backed CompactTrain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactTrainBenchmark {
+
+    @Param({"1000", "100000"})
+    public int numberOfWagons;
+
+    private Train train;
+    private CompactTrain compactTrain;
+    private int lastId;
+
+    @Setup
+    public void setup() {
+        train = new Train(new Locomotive(1, numberOfWagons), "Amsterdam", "Rotterdam");
+        for (int id = 1; id <= numberOfWagons; id++) {
+            train.attachToRear(new PassengerWagon(id, 20 + id % 40));
+        }
+        compactTrain = CompactTrain.copyOf(train);
+        lastId = numberOfWagons;
+    }
+
+    @Benchmark
+    public int sumSeatsLinked() {
+        int seats = 0;
+        for (Wagon wagon = train.getFirstWagon(); wagon != null; wagon = wagon.getNextWagon()) {
+            seats += ((PassengerWagon) wagon).getNumberOfSeats();
+        }
+        return seats;
+    }
+
+    @Benchmark
+    public int sumSeatsCompact() {
+        int seats = 0;
+        for (int position = 1; position <= compactTrain.getNumberOfWagons(); position++) {
+            seats += compactTrain.getNumberOfSeatsAt(position);
+        }
+        return seats;
+    }
+
+    @Benchmark
+    public int positionOfLastWagonLinked() {
+        int position = 0;
+        for (Wagon wagon = train.getFirstWagon(); wagon != null; wagon = wagon.getNextWagon()) {
+            position++;
+            if (wagon.getId() == lastId) {
+                return position;
+            }
+        }
+        return 0;
+    }
+
+    @Benchmark
+    public int positionOfLastWagonCompact() {
+        return compactTrain.findPositionById(lastId);
+    }
+}
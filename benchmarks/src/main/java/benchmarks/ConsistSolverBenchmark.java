@@ -0,0 +1,59 @@
+package benchmarks;
+
+import models.ConsistSolver;
+import models.ConsistSolver.Route;
+import models.FreightWagon;
+import models.Locomotive;
+import models.PassengerWagon;
+import models.Train;
+import models.Wagon;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures forming trains for many routes from a pool of 10^5 wagons, half passenger and half freight wagons.
+ * The pool is rebuilt before every invocation, because the solver attaches the selected wagons to new trains.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ConsistSolverBenchmark {
+    private static final int POOL_SIZE = 100_000;
+
+    @Param({"20", "200", "1000"})
+    public int numberOfRoutes;
+
+    private final ConsistSolver solver = new ConsistSolver();
+    private List<Wagon> wagons;
+    private List<Route> routes;
+    private List<Locomotive> locomotives;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        Random random = new Random(42);
+        wagons = new ArrayList<>(POOL_SIZE);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            wagons.add(i % 2 == 0 ? new PassengerWagon(i, 20 + random.nextInt(61))
+                    : new FreightWagon(i, 1000 * (10 + random.nextInt(91))));
+        }
+        routes = new ArrayList<>(numberOfRoutes);
+        locomotives = new ArrayList<>(numberOfRoutes);
+        for (int r = 0; r < numberOfRoutes; r++) {
+            routes.add(r % 2 == 0 ? new Route("Yard", "Destination " + r, false, 500 + random.nextInt(2000))
+                    : new Route("Yard", "Destination " + r, true, 100_000 + random.nextInt(2_000_000)));
+            locomotives.add(new Locomotive(r, 20 + random.nextInt(60)));
+        }
+    }
+
+    @Benchmark
+    public Train[] solve() {
+        return solver.solve(routes, locomotives, wagons);
+    }
+}
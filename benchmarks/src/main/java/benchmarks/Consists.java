@@ -0,0 +1,77 @@
+package benchmarks;
+
+import models.FreightWagon;
+import models.Locomotive;
+import models.PassengerWagon;
+import models.Train;
+import models.Wagon;
+
+import java.util.Random;
+
+/**
+ * Builds the consists used by the benchmark suites
+ */
+final class Consists {
+
+    /**
+     * The kinds of wagons in a consist
+     */
+    enum Mix {
+        PASSENGER,      // passenger wagons with 20 to 79 seats
+        FREIGHT         // freight wagons with a max weight of 10000 to 59999
+    }
+
+    private Consists() {
+    }
+
+    /**
+     * @param mix
+     * @param firstId   the id of the first wagon; the other wagons have the next ids
+     * @param length
+     * @return  the first wagon of a new linked sequence of wagons (null for length 0)
+     */
+    static Wagon sequence(Mix mix, int firstId, int length) {
+        Random random = new Random(firstId);
+        Wagon first = null, last = null;
+        for (int id = firstId; id < firstId + length; id++) {
+            Wagon wagon = mix == Mix.PASSENGER
+                    ? new PassengerWagon(id, 20 + random.nextInt(60))
+                    : new FreightWagon(id, 10000 + random.nextInt(50000));
+            if (last == null) {
+                first = wagon;
+            } else {
+                wagon.attachTo(last);
+            }
+            last = wagon;
+        }
+        return first;
+    }
+
+    /**
+     * @param mix
+     * @param locNumber
+     * @param maxWagons     the capacity of the engine
+     * @param firstId       the id of the first wagon; the other wagons have the next ids
+     * @param length
+     * @return  a new train with the given number of wagons
+     */
+    static Train train(Mix mix, int locNumber, int maxWagons, int firstId, int length) {
+        Train train = new Train(new Locomotive(locNumber, maxWagons), "Amsterdam", "Rotterdam");
+        train.setFirstWagon(sequence(mix, firstId, length));
+        return train;
+    }
+
+    /**
+     * @param count
+     * @param bound
+     * @return  count random values from 0 up to (not including) bound, to cycle through in a benchmark
+     */
+    static int[] randomIndices(int count, int bound) {
+        Random random = new Random(bound);
+        int[] indices = new int[count];
+        for (int i = 0; i < count; i++) {
+            indices[i] = random.nextInt(bound);
+        }
+        return indices;
+    }
+}
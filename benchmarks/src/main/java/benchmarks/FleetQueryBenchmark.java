@@ -0,0 +1,105 @@
+package benchmarks;
+
+import models.FleetQuery;
+import models.FreightWagon;
+import models.Locomotive;
+import models.PassengerWagon;
+import models.Train;
+import models.Wagon;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures fleet-wide queries on a fleet of 10^6 wagons with 1, 2, 4 and 8 worker threads.
+ * The fleet consists of many short trains and a few very long consists, so the wagon queries
+ * only scale when long trains are split as well; the speedup per thread count is the ratio
+ * of the scores against parallelism 1.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class FleetQueryBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private List<Train> trains;
+    private ForkJoinPool pool;
+    private FleetQuery query;
+
+    @Setup
+    public void setup() {
+        trains = new ArrayList<>();
+        int id = 1;
+        for (int t = 0; t < 10000; t++) {
+            boolean freight = t % 2 == 0;
+            trains.add(train(t, freight, id, 50));
+            id += 50;
+        }
+        for (int t = 0; t < 4; t++) {
+            trains.add(train(10000 + t, true, id, 125000));
+            id += 125000;
+        }
+        pool = new ForkJoinPool(parallelism);
+        query = new FleetQuery(trains, pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private static Train train(int locNumber, boolean freight, int firstId, int numberOfWagons) {
+        Train train = new Train(new Locomotive(locNumber, numberOfWagons), "Origin " + locNumber % 20, "Destination " + locNumber % 7);
+        Wagon first = null, last = null;
+        for (int id = firstId; id < firstId + numberOfWagons; id++) {
+            Wagon wagon = freight ? new FreightWagon(id, 1000 + id % 500) : new PassengerWagon(id, 20 + id % 40);
+            if (last == null) {
+                first = wagon;
+            } else {
+                wagon.attachTo(last);
+            }
+            last = wagon;
+        }
+        train.setFirstWagon(first);
+        return train;
+    }
+
+    @Benchmark
+    public long totalNumberOfSeats() {
+        return query.getTotalNumberOfSeats();
+    }
+
+    @Benchmark
+    public Object totalMaxWeightByRoute() {
+        return query.getTotalMaxWeightByRoute();
+    }
+
+    @Benchmark
+    public long heavyFreightWagons() {
+        return query.countWagons(wagon -> wagon instanceof FreightWagon && ((FreightWagon) wagon).getMaxWeight() > 1250);
+    }
+
+    /**
+     * The same count as heavyFreightWagons in a plain loop, as a baseline for the speedup
+     */
+    @Benchmark
+    public long sequentialHeavyFreightWagons() {
+        long count = 0;
+        for (Train train : trains) {
+            for (Wagon wagon : train) {
+                if (wagon instanceof FreightWagon && ((FreightWagon) wagon).getMaxWeight() > 1250) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import models.Locomotive;
+import models.PassengerWagon;
+import models.Train;
+import models.Wagon;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures iterating over a passenger train and summing its seats:
+ * walking the links by hand (the cost of the original iterator), the fail-fast iterator,
+ * and snapshot iteration, both with an unchanged train (shared snapshot)
+ * and with a change before every iteration (a new snapshot every time).
+ * The fail-fast iterator should be as fast as walking the links.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IterationBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int numberOfWagons;
+
+    private Train train;
+    private Train snapshotTrain;
+
+    @Setup
+    public void setup() {
+        train = train();
+        snapshotTrain = train();
+        snapshotTrain.setSnapshotIteration(true);
+    }
+
+    private Train train() {
+        Train train = new Train(new Locomotive(1, numberOfWagons), "Amsterdam", "Paris");
+        Wagon first = new PassengerWagon(1, 20), last = first;
+        for (int id = 2; id <= numberOfWagons; id++) {
+            Wagon wagon = new PassengerWagon(id, 20 + id % 30);
+            wagon.attachTo(last);
+            last = wagon;
+        }
+        train.setFirstWagon(first);
+        return train;
+    }
+
+    @Benchmark
+    public int linkWalk() {
+        int seats = 0;
+        for (Wagon wagon = train.getFirstWagon(); wagon != null; wagon = wagon.getNextWagon()) {
+            seats += ((PassengerWagon) wagon).getNumberOfSeats();
+        }
+        return seats;
+    }
+
+    @Benchmark
+    public int failFastIterator() {
+        int seats = 0;
+        for (Wagon wagon : train) {
+            seats += ((PassengerWagon) wagon).getNumberOfSeats();
+        }
+        return seats;
+    }
+
+    @Benchmark
+    public int sharedSnapshotIterator() {
+        int seats = 0;
+        for (Wagon wagon : snapshotTrain) {
+            seats += ((PassengerWagon) wagon).getNumberOfSeats();
+        }
+        return seats;
+    }
+
+    @Benchmark
+    public int newSnapshotIterator() {
+        snapshotTrain.reverse();
+        int seats = 0;
+        for (Wagon wagon : snapshotTrain) {
+            seats += ((PassengerWagon) wagon).getNumberOfSeats();
+        }
+        return seats;
+    }
+}
@@ -0,0 +1,123 @@
+package benchmarks;
+
+import models.FreightWagon;
+import models.Locomotive;
+import models.Train;
+import models.TrainJournal;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures journaling shunting operations between a few trains, committed in groups of commitEvery records,
+ * and rebuilding the trains by replaying a journal of 10^6 records.
+ * Replay throughput in operations per second is 10^6 divided by the replay time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class JournalBenchmark {
+    private static final int OPERATIONS = 1_000_000;
+    private static final int TRAINS = 8;
+    private static final int WAGONS_PER_TRAIN = 1000;
+
+    @Param({"1000", "100000"})
+    public int commitEvery;
+
+    private Path recorded;
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void record() throws IOException {
+        recorded = Files.createTempDirectory("journal-replay");
+        try (TrainJournal journal = TrainJournal.open(recorded)) {
+            journal.setSnapshotInterval(Long.MAX_VALUE);
+            write(journal, 1000);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteDirectory() {
+        delete(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteRecorded() {
+        delete(recorded);
+    }
+
+    @Benchmark
+    public long append() throws IOException {
+        try (TrainJournal journal = TrainJournal.open(directory)) {
+            journal.setSnapshotInterval(Long.MAX_VALUE);
+            write(journal, commitEvery);
+            return journal.getNumberOfRecords();
+        }
+    }
+
+    @Benchmark
+    public long replay() throws IOException {
+        try (TrainJournal journal = TrainJournal.open(recorded)) {
+            return journal.getNumberOfRecords();
+        }
+    }
+
+    /**
+     * Adds the trains, then moves wagons and splits and reverses trains until the journal holds OPERATIONS records
+     */
+    private static void write(TrainJournal journal, int commitEvery) throws IOException {
+        int id = 0;
+        for (int t = 0; t < TRAINS; t++) {
+            Train train = new Train(new Locomotive(t, TRAINS * WAGONS_PER_TRAIN), "Yard", "Destination " + t);
+            for (int w = 0; w < WAGONS_PER_TRAIN; w++) {
+                train.attachToRear(new FreightWagon(id++, 1000 + w));
+            }
+            journal.addTrain(t, train);
+        }
+        for (int i = TRAINS; i < OPERATIONS; i++) {
+            int from = i % TRAINS, to = (i * 5 + 3) % TRAINS;
+            Train train = journal.getTrain(from);
+            if (i % 64 == 0) {
+                journal.reverse(from);
+            } else if (i % 97 == 0 && train.getNumberOfWagons() > 1) {
+                journal.splitAtPosition(from, train.getNumberOfWagons() / 2 + 1, to);
+            } else if (train.hasWagons() && to != from) {
+                journal.moveOneWagon(from, train.getFirstWagon().getId(), to);
+            } else {
+                journal.attachToRear(from, new FreightWagon(id++, 1000));
+            }
+            if (i % commitEvery == 0) {
+                journal.commit();
+            }
+        }
+        journal.commit();
+    }
+
+    private static void delete(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package benchmarks;
+
+import models.Locomotive;
+import models.Train;
+import models.TrainEvent;
+import models.Wagon;
+import models.WagonPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of train listeners on a cycle of an attach, an insert and a move of pooled wagons,
+ * without listeners and with a listener on both trains that keeps their lengths up to date from the events.
+ * The listeners run on a direct executor, so the cost of creating and delivering the events is included.
+ * Without listeners the cycle should cost the same as before listeners existed.
+ *
+ *      java -jar target/benchmarks.jar ListenerBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerBenchmark {
+    private static final int MAX_WAGONS = 1000;
+
+    @Param({"false", "true"})
+    public boolean listening;
+
+    private final WagonPool pool = new WagonPool();
+    private Train yard;
+    private Train outbound;
+    private int nextId;
+    private long length;
+
+    @Setup
+    public void setup() {
+        pool.reserve(0, 2 * MAX_WAGONS);
+        yard = new Train(new Locomotive(1, MAX_WAGONS), "Yard", "Yard");
+        outbound = new Train(new Locomotive(2, MAX_WAGONS), "Yard", "Rotterdam");
+        if (listening) {
+            for (Train train : new Train[] { yard, outbound }) {
+                train.addListener((changed, events) -> {
+                    for (TrainEvent event : events) {
+                        if (event.getType() == TrainEvent.Type.ADDED) {
+                            length += event.getNumberOfWagons();
+                        } else if (event.getType() == TrainEvent.Type.REMOVED) {
+                            length -= event.getNumberOfWagons();
+                        }
+                    }
+                }, Runnable::run);
+            }
+        }
+        nextId = 1;
+    }
+
+    @Benchmark
+    public long attachInsertMove() {
+        int id = nextId;
+        nextId += 2;
+        yard.attachToRear(pool.freightWagon(id, 1000));
+        yard.insertAtFront(pool.freightWagon(id + 1, 1200));
+        yard.moveOneWagon(id, outbound);
+        if (outbound.getNumberOfWagons() >= MAX_WAGONS / 2) {
+            Wagon departed = outbound.getFirstWagon();
+            outbound.setFirstWagon(null);
+            pool.release(departed);
+        }
+        if (yard.getNumberOfWagons() >= MAX_WAGONS / 2) {
+            Wagon departed = yard.getFirstWagon();
+            yard.setFirstWagon(null);
+            pool.release(departed);
+        }
+        return yard.getNumberOfWagons() + length;
+    }
+}
@@ -0,0 +1,70 @@
+package benchmarks;
+
+import models.Locomotive;
+import models.Train;
+import models.TrainMetrics;
+import models.Wagon;
+import models.WagonPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of the train metrics on a cycle of an attach, an insert and a move of pooled wagons,
+ * with the metrics disabled and enabled. Disabled metrics should be indistinguishable from no metrics.
+ * Run with -t 4 to see the cost of the striped counters under contention.
+ *
+ *      java -jar target/benchmarks.jar MetricsBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    private static final int MAX_WAGONS = 1000;
+
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    private final WagonPool pool = new WagonPool();
+    private Train yard;
+    private Train outbound;
+    private int nextId;
+
+    @Setup
+    public void setup() {
+        TrainMetrics.setEnabled(enabled);
+        pool.reserve(0, 2 * MAX_WAGONS);
+        yard = new Train(new Locomotive(1, MAX_WAGONS), "Yard", "Yard");
+        outbound = new Train(new Locomotive(2, MAX_WAGONS), "Yard", "Rotterdam");
+        nextId = 1;
+    }
+
+    @TearDown
+    public void tearDown() {
+        TrainMetrics.setEnabled(false);
+        TrainMetrics.reset();
+    }
+
+    @Benchmark
+    public int attachInsertMove() {
+        int id = nextId;
+        nextId += 2;
+        yard.attachToRear(pool.freightWagon(id, 1000));
+        yard.insertAtFront(pool.freightWagon(id + 1, 1200));
+        yard.moveOneWagon(id, outbound);
+        if (outbound.getNumberOfWagons() >= MAX_WAGONS / 2) {
+            Wagon departed = outbound.getFirstWagon();
+            outbound.setFirstWagon(null);
+            pool.release(departed);
+        }
+        if (yard.getNumberOfWagons() >= MAX_WAGONS / 2) {
+            Wagon departed = yard.getFirstWagon();
+            yard.setFirstWagon(null);
+            pool.release(departed);
+        }
+        return yard.getNumberOfWagons();
+    }
+}
@@ -0,0 +1,81 @@
+package benchmarks;
+
+import models.FreightWagon;
+import models.Locomotive;
+import models.Train;
+import models.Wagon;
+import models.YardReclassifier;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reclassifying a hump yard of 10^6 wagons (1000 inbound trains of 1000 wagons)
+ * into outbound trains by destination, with the batch engine and with one moveOneWagon per wagon.
+ * The yard is rebuilt before every invocation, because reclassification consumes the inbound trains.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ReclassificationBenchmark {
+    private static final int INBOUND_TRAINS = 1000;
+    private static final int WAGONS_PER_TRAIN = 1000;
+
+    @Param({"4", "64"})
+    public int numberOfDestinations;
+
+    private List<Train> inbound;
+    private Train[] outbound;
+    private final YardReclassifier reclassifier = new YardReclassifier();
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        inbound = new ArrayList<>(INBOUND_TRAINS);
+        int id = 1;
+        for (int t = 0; t < INBOUND_TRAINS; t++) {
+            Wagon first = new FreightWagon(id++, 1000), last = first;
+            for (int w = 1; w < WAGONS_PER_TRAIN; w++) {
+                Wagon wagon = new FreightWagon(id++, 1000);
+                wagon.attachTo(last);
+                last = wagon;
+            }
+            Train train = new Train(new Locomotive(t, WAGONS_PER_TRAIN), "Origin " + t, "Yard");
+            train.setFirstWagon(first);
+            inbound.add(train);
+        }
+        outbound = new Train[numberOfDestinations];
+        for (int d = 0; d < numberOfDestinations; d++) {
+            outbound[d] = new Train(new Locomotive(INBOUND_TRAINS + d, INBOUND_TRAINS * WAGONS_PER_TRAIN),
+                    "Yard", "Destination " + d);
+        }
+    }
+
+    private Train destinationOf(Wagon wagon) {
+        // consecutive wagons often share a destination, as in real consists
+        return outbound[(wagon.getId() / 8 * 0x9E3779B1 >>> 8) % numberOfDestinations];
+    }
+
+    @Benchmark
+    public int batchReclassification() {
+        return reclassifier.reclassify(inbound, this::destinationOf);
+    }
+
+    @Benchmark
+    public int wagonByWagon() {
+        int moved = 0;
+        for (Train train : inbound) {
+            while (train.hasWagons()) {
+                Wagon wagon = train.findWagonAtPosition(1);
+                if (train.moveOneWagon(wagon.getId(), destinationOf(wagon))) {
+                    moved++;
+                }
+            }
+        }
+        return moved;
+    }
+}
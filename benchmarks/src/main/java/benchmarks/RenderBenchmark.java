@@ -0,0 +1,65 @@
+package benchmarks;
+
+import models.Train;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering a passenger train: toString(), appendTo into a reused StringBuilder and into a reused
+ * CharBuffer, all truncated at 100 wagons, and the complete consist into a reused StringBuilder.
+ * Run with the gc profiler to see the allocation per rendering (gc.alloc.rate.norm):
+ * rendering into a reused builder or buffer should allocate nothing, toString() only its builder and result.
+ *
+ *      java -jar target/benchmarks.jar RenderBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    private static final int MAX_WAGONS = 100;
+
+    @Param({"10", "1000", "100000"})
+    public int numberOfWagons;
+
+    private Train train;
+    private StringBuilder builder;
+    private CharBuffer buffer;
+
+    @Setup
+    public void setup() {
+        train = Consists.train(Consists.Mix.PASSENGER, 1, numberOfWagons, 1, numberOfWagons);
+        builder = new StringBuilder();
+        buffer = CharBuffer.allocate(16 * numberOfWagons + 128);
+        train.appendTo(builder, numberOfWagons);        // grows the builder to its final capacity once
+    }
+
+    @Benchmark
+    public String toStringTruncated() {
+        return train.toString();
+    }
+
+    @Benchmark
+    public int appendToReusedBuilder() {
+        builder.setLength(0);
+        return train.appendTo(builder, MAX_WAGONS).length();
+    }
+
+    @Benchmark
+    public int appendToReusedCharBuffer() throws IOException {
+        buffer.clear();
+        train.appendTo(buffer, MAX_WAGONS);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public int appendCompleteConsist() {
+        builder.setLength(0);
+        return train.appendTo(builder, numberOfWagons).length();
+    }
+}
@@ -0,0 +1,50 @@
+package benchmarks;
+
+import models.FreightWagon;
+import models.Locomotive;
+import models.Train;
+import models.Wagon;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning a consist around at a terminal: reverse the train and look up its new first and last wagon.
+ * Eager reversal relinks every wagon, so its time grows linearly with the number of wagons;
+ * lazy reversal only flips the orientation of the train and should stay flat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReversalBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int numberOfWagons;
+
+    @Param({"false", "true"})
+    public boolean lazyReversal;
+
+    private Train train;
+
+    @Setup
+    public void setup() {
+        train = new Train(new Locomotive(1, numberOfWagons), "Amsterdam", "Rotterdam");
+        Wagon first = new FreightWagon(1, 1000), last = first;
+        for (int id = 2; id <= numberOfWagons; id++) {
+            Wagon wagon = new FreightWagon(id, 1000);
+            wagon.attachTo(last);
+            last = wagon;
+        }
+        train.setFirstWagon(first);
+        train.setLazyReversal(lazyReversal);
+    }
+
+    @Benchmark
+    public int reverseAtTerminal() {
+        train.reverse();
+        return train.findWagonAtPosition(1).getId() + train.getLastWagonAttached().getId();
+    }
+}
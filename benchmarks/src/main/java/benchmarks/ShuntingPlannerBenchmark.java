@@ -0,0 +1,75 @@
+package benchmarks;
+
+import models.FreightWagon;
+import models.Locomotive;
+import models.ShuntingPlan;
+import models.ShuntingPlanner;
+import models.Train;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures planning the rearrangement of a long train into a shuffled target order,
+ * and replaying the plan on the train.
+ * The displacement parameter is the fraction of wagons, in percent, that is swapped with a nearby wagon.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ShuntingPlannerBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int length;
+
+    @Param({"1", "50"})
+    public int displacement;
+
+    private final ShuntingPlanner planner = new ShuntingPlanner();
+    private int[] target;
+    private Train train;
+    private ShuntingPlan plan;
+
+    @Setup(Level.Trial)
+    public void setupTarget() {
+        Random random = new Random(42);
+        target = new int[length];
+        for (int i = 0; i < length; i++) {
+            target[i] = i;
+        }
+        for (long k = (long) length * displacement / 100; k > 0; k--) {
+            int a = random.nextInt(length), b = Math.min(length - 1, a + random.nextInt(64));
+            int swap = target[a];
+            target[a] = target[b];
+            target[b] = swap;
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupTrain() {
+        train = new Train(new Locomotive(1, length), "Yard", "Yard");
+        FreightWagon first = new FreightWagon(0, 1000), last = first;
+        for (int i = 1; i < length; i++) {
+            FreightWagon wagon = new FreightWagon(i, 1000);
+            wagon.attachTo(last);
+            last = wagon;
+        }
+        train.setFirstWagon(first);
+        plan = planner.plan(train, target);
+    }
+
+    @Benchmark
+    public ShuntingPlan plan() {
+        return planner.plan(train, target);
+    }
+
+    @Benchmark
+    public boolean replay() {
+        Train siding = new Train(new Locomotive(2, plan.getSidingCapacity()), "Yard", "Yard");
+        return plan.applyTo(train, siding);
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import models.Locomotive;
+import models.PassengerWagon;
+import models.Train;
+import models.Wagon;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+/**
+ * Measures summing the seats of a long passenger train with stream pipelines:
+ * through the unsized spliterator of the iterator with boxed values (the old way),
+ * and through the sized, splittable seatCounts view, sequentially and in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int numberOfWagons;
+
+    private Train train;
+
+    @Setup
+    public void setup() {
+        train = new Train(new Locomotive(1, numberOfWagons), "Amsterdam", "Paris");
+        Wagon first = new PassengerWagon(1, 20), last = first;
+        for (int id = 2; id <= numberOfWagons; id++) {
+            Wagon wagon = new PassengerWagon(id, 20 + id % 30);
+            wagon.attachTo(last);
+            last = wagon;
+        }
+        train.setFirstWagon(first);
+    }
+
+    @Benchmark
+    public int boxedIteratorStream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(train.iterator(), 0), true)
+                .map(wagon -> ((PassengerWagon) wagon).getNumberOfSeats())
+                .reduce(0, Integer::sum);
+    }
+
+    @Benchmark
+    public int sequentialSeatCounts() {
+        return train.seatCounts(false).sum();
+    }
+
+    @Benchmark
+    public int parallelSeatCounts() {
+        return train.seatCounts(true).sum();
+    }
+}
@@ -0,0 +1,150 @@
+package benchmarks;
+
+import models.Train;
+import models.Wagon;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every public operation of Train on consists of 10 to 10^6 wagons of either type.
+ *
+ * Every benchmark performs a single call of the operation. Operations that change the train
+ * work on two trains a and b that exchange wagons, so both trains keep (about) their original length:
+ * the attach and insert benchmarks take the last wagon of the other train, moveOneWagon moves
+ * the last wagon to the other train, and splitAtPosition alternately splits a in half and moves the half back.
+ * Lookups cycle through precomputed random ids and positions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class TrainOperationsBenchmark {
+    private static final int LOOKUPS = 1024;        // a power of two
+
+    @Param({"10", "100", "1000", "10000", "100000", "1000000"})
+    public int length;
+
+    @Param({"PASSENGER", "FREIGHT"})
+    public String mix;
+
+    private Train a, b;
+    private Train lazy;             // reversed lazily
+    private int[] ids, positions;
+    private int lookup;
+    private boolean toA;            // the direction of the next exchange
+    private int splitLength;        // the length of b before the wagons split off a were attached to it (0 if a is whole)
+
+    @Setup
+    public void setup() {
+        Consists.Mix wagons = Consists.Mix.valueOf(mix);
+        a = Consists.train(wagons, 1, 2 * length, 1, length);
+        b = Consists.train(wagons, 2, 2 * length, 1 + length, length);
+        lazy = Consists.train(wagons, 3, length, 1 + 2 * length, length);
+        lazy.setLazyReversal(true);
+        ids = Consists.randomIndices(LOOKUPS, length);
+        positions = Consists.randomIndices(LOOKUPS, length);
+        for (int i = 0; i < LOOKUPS; i++) {
+            ids[i] += 1;
+            positions[i] += 1;
+        }
+    }
+
+    private int nextLookup() {
+        lookup = (lookup + 1) & (LOOKUPS - 1);
+        return lookup;
+    }
+
+    private Train to() {
+        toA = !toA;
+        return toA ? a : b;
+    }
+
+    private Train from() {
+        return toA ? b : a;
+    }
+
+    @Benchmark
+    public boolean attachToRear() {
+        Train to = to();
+        return to.attachToRear(from().getLastWagonAttached());
+    }
+
+    @Benchmark
+    public boolean insertAtFront() {
+        Train to = to();
+        return to.insertAtFront(from().getLastWagonAttached());
+    }
+
+    @Benchmark
+    public boolean insertAtPosition() {
+        Train to = to();
+        return to.insertAtPosition(1 + to.getNumberOfWagons() / 2, from().getLastWagonAttached());
+    }
+
+    @Benchmark
+    public boolean moveOneWagon() {
+        Train to = to();
+        Train from = from();
+        return from.moveOneWagon(from.getLastWagonAttached().getId(), to);
+    }
+
+    @Benchmark
+    public boolean splitAtPosition() {
+        if (splitLength == 0) {
+            splitLength = b.getNumberOfWagons();
+            return a.splitAtPosition(1 + a.getNumberOfWagons() / 2, b);
+        }
+        int position = splitLength + 1;
+        splitLength = 0;
+        return b.splitAtPosition(position, a);
+    }
+
+    @Benchmark
+    public Train reverse() {
+        a.reverse();
+        return a;
+    }
+
+    @Benchmark
+    public Train lazyReverse() {
+        lazy.reverse();
+        return lazy;
+    }
+
+    @Benchmark
+    public Wagon findWagonById() {
+        return a.findWagonById(ids[nextLookup()]);
+    }
+
+    @Benchmark
+    public Wagon findWagonAtPosition() {
+        return a.findWagonAtPosition(positions[nextLookup()]);
+    }
+
+    @Benchmark
+    public int findPositionById() {
+        return a.findPositionById(ids[nextLookup()]);
+    }
+
+    @Benchmark
+    public long aggregates() {
+        return (long) a.getNumberOfWagons() + a.getTotalNumberOfSeats() + a.getTotalMaxWeight();
+    }
+
+    @Benchmark
+    public long iterate() {
+        long sum = 0;
+        for (Wagon wagon : a) {
+            sum += wagon.getId();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long seatAndWeightStreams() {
+        return a.seatCounts(false).sum() + a.maxWeights(false).sum();
+    }
+}
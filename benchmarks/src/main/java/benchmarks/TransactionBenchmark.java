@@ -0,0 +1,50 @@
+package benchmarks;
+
+import models.Locomotive;
+import models.PassengerWagon;
+import models.ShuntingTransaction;
+import models.Train;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures evaluating a candidate shunting plan: applying it in a transaction and rolling it back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionBenchmark {
+
+    @Param({"20", "1000"})
+    public int numberOfWagons;
+
+    private Train train1, train2, train3;
+    private final ShuntingTransaction transaction = new ShuntingTransaction();
+
+    @Setup
+    public void setup() {
+        train1 = new Train(new Locomotive(1, 3 * numberOfWagons), "Amsterdam", "Paris");
+        train2 = new Train(new Locomotive(2, 3 * numberOfWagons), "Amsterdam", "London");
+        train3 = new Train(new Locomotive(3, 3 * numberOfWagons), "Amsterdam", "Brussels");
+        for (int id = 1; id <= numberOfWagons; id++) {
+            train1.attachToRear(new PassengerWagon(id, 40));
+            train2.attachToRear(new PassengerWagon(numberOfWagons + id, 40));
+        }
+    }
+
+    @Benchmark
+    public int applyAndRollBackPlan() {
+        transaction.splitAtPosition(train1, numberOfWagons / 2, train3);
+        transaction.moveOneWagon(train2, numberOfWagons + 1, train1);
+        transaction.reverse(train3);
+        transaction.splitAtPosition(train2, numberOfWagons / 4, train3);
+        transaction.moveOneWagon(train3, numberOfWagons, train2);
+        int seats = train3.getTotalNumberOfSeats();
+        transaction.rollback();
+        return seats;
+    }
+}
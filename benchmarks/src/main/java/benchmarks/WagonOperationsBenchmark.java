@@ -0,0 +1,75 @@
+package benchmarks;
+
+import models.Wagon;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the public operations of Wagon on free sequences (not part of any train) of 10 to 10^6 wagons.
+ * Operations that change the sequence are paired with their inverse, so the sequence is the same
+ * before every invocation; the reported time is that of the pair.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class WagonOperationsBenchmark {
+
+    @Param({"10", "100", "1000", "10000", "100000", "1000000"})
+    public int length;
+
+    @Param({"PASSENGER", "FREIGHT"})
+    public String mix;
+
+    private Wagon first;
+    private Wagon middle;
+    private Wagon last;
+
+    @Setup
+    public void setup() {
+        first = Consists.sequence(Consists.Mix.valueOf(mix), 1, length);
+        middle = first;
+        for (int i = 0; i < length / 2; i++) {
+            middle = middle.getNextWagon();
+        }
+        last = first.getLastWagonAttached();
+    }
+
+    @Benchmark
+    public Wagon getLastWagonAttached() {
+        return first.getLastWagonAttached();
+    }
+
+    @Benchmark
+    public int getSequenceLength() {
+        return first.getSequenceLength();
+    }
+
+    @Benchmark
+    public Wagon detachAndAttach() {
+        Wagon previous = middle.getPreviousWagon();
+        middle.detachFromPrevious();
+        middle.attachTo(previous);
+        return middle;
+    }
+
+    @Benchmark
+    public Wagon removeAndReattach() {
+        // take the last wagon out of the sequence and attach it at the rear again
+        Wagon previous = last.getPreviousWagon();
+        last.removeFromSequence();
+        last.reAttachTo(previous);
+        return last;
+    }
+
+    @Benchmark
+    public Wagon reverseSequence() {
+        Wagon reversed = first.reverseSequence();
+        last = first;
+        first = reversed;
+        return reversed;
+    }
+}
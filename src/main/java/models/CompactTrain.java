@@ -0,0 +1,494 @@
+package models;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A train that stores its wagons in parallel primitive arrays instead of a linked sequence of Wagon objects.
+ * It offers the same operations as Train, but only keeps the id, type and capacity of every wagon,
+ * which takes a fraction of the memory of a Wagon object and can be scanned sequentially.
+ * Wagon objects are only created on demand, as detached copies of the stored wagon data:
+ * they are read-only snapshots in effect, because changes made to them (setNumberOfSeats, setMaxWeight, setId,
+ * or linking them to other wagons) are not written back to this train.
+ * Lookups by id scan the array of ids, so findPositionById and findWagonById take O(n) time;
+ * an index from id to position would have to be updated for every wagon that shifts on an insertion,
+ * a removal or a reversal, and would cost more memory than the arrays themselves.
+ */
+public class CompactTrain implements Iterable<Wagon> {
+    static final byte PASSENGER = 1;
+    static final byte FREIGHT = 2;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private String origin;
+    private String destination;
+    private Locomotive engine;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] capacities = new int[INITIAL_CAPACITY];  // number of seats or max weight, depending on the type
+    private int numberOfWagons;
+    private int totalNumberOfSeats;
+    private int totalMaxWeight;
+    private final IntHashSet wagonIds = new IntHashSet();
+    private final IntHashSet sequenceIds = new IntHashSet();   // scratch: the ids of a checked sequence
+
+    /* Representation invariants:
+        the wagon at position p is stored at index p - 1 of ids, types and capacities
+        ids.length == types.length == capacities.length >= numberOfWagons
+        wagonIds contains exactly ids[0 .. numberOfWagons - 1]
+        engine != null
+     */
+
+    public CompactTrain(Locomotive engine, String origin, String destination) {
+        this.engine = engine;
+        this.origin = origin;
+        this.destination = destination;
+    }
+
+    /**
+     * Creates a compact copy of the given train, holding the same wagons in the same order
+     * @param train
+     * @return  the compact train
+     */
+    public static CompactTrain copyOf(Train train) {
+        CompactTrain compactTrain = new CompactTrain(train.getEngine(), train.getOrigin(), train.getDestination());
+        compactTrain.ensureCapacity(train.getNumberOfWagons());
+        for (Wagon wagon : train) {
+            compactTrain.store(compactTrain.numberOfWagons++, wagon);
+        }
+        return compactTrain;
+    }
+
+    /**
+     * Creates a linked train holding new Wagon objects for all wagons of this train
+     * @return  the linked train
+     */
+    public Train toTrain() {
+        Train train = new Train(this.engine, this.origin, this.destination);
+        if (hasWagons()) {
+            Wagon first = wagonAt(0);
+            Wagon last = first;
+            for (int i = 1; i < this.numberOfWagons; i++) {
+                Wagon wagon = wagonAt(i);
+                wagon.attachTo(last);
+                last = wagon;
+            }
+            train.setFirstWagon(first);
+        }
+        return train;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public Locomotive getEngine() {
+        return engine;
+    }
+
+    public void setEngine(Locomotive engine) {
+        this.engine = engine;
+    }
+
+    public boolean hasWagons() {
+        return this.numberOfWagons > 0;
+    }
+
+    public boolean isPassengerTrain() {
+        return hasWagons() && this.types[0] == PASSENGER;
+    }
+
+    public boolean isFreightTrain() {
+        return hasWagons() && this.types[0] == FREIGHT;
+    }
+
+    /**
+     * @return  the number of Wagons connected to the train
+     */
+    public int getNumberOfWagons() {
+        return this.numberOfWagons;
+    }
+
+    /**
+     * @return  the total number of seats on a passenger train
+     *          (return 0 for a freight train)
+     */
+    public int getTotalNumberOfSeats() {
+        return isPassengerTrain() ? this.totalNumberOfSeats : 0;
+    }
+
+    /**
+     * @return  the total maximum weight of a freight train
+     *          (return 0 for a passenger train)
+     */
+    public int getTotalMaxWeight() {
+        return isFreightTrain() ? this.totalMaxWeight : 0;
+    }
+
+    /**
+     * @param position  a valid position in this train (starting at 1 for the first wagon)
+     * @return  the id of the wagon at the given position
+     */
+    public int getWagonIdAt(int position) {
+        checkPosition(position);
+        return this.ids[position - 1];
+    }
+
+    /**
+     * @param position  a valid position in this train (starting at 1 for the first wagon)
+     * @return  the number of seats of the wagon at the given position (0 for a freight wagon)
+     */
+    public int getNumberOfSeatsAt(int position) {
+        checkPosition(position);
+        return this.types[position - 1] == PASSENGER ? this.capacities[position - 1] : 0;
+    }
+
+    /**
+     * @param position  a valid position in this train (starting at 1 for the first wagon)
+     * @return  the max weight of the wagon at the given position (0 for a passenger wagon)
+     */
+    public int getMaxWeightAt(int position) {
+        checkPosition(position);
+        return this.types[position - 1] == FREIGHT ? this.capacities[position - 1] : 0;
+    }
+
+    /**
+     * Finds the wagon at the given position (starting at 1 for the first wagon of the train)
+     * @param position
+     * @return  a detached copy of the wagon found at the given position, whose changes do not affect this train
+     *          (return null if the position is not valid for this train)
+     */
+    public Wagon findWagonAtPosition(int position) {
+        if (position < 1 || position > this.numberOfWagons) {
+            return null;
+        }
+        return wagonAt(position - 1);
+    }
+
+    /**
+     * Finds the wagon with a given wagonId, in O(n) time
+     * @param wagonId
+     * @return  a detached copy of the wagon found, whose changes do not affect this train
+     *          (return null if no wagon was found with the given wagonId)
+     */
+    public Wagon findWagonById(int wagonId) {
+        int position = findPositionById(wagonId);
+        return position > 0 ? wagonAt(position - 1) : null;
+    }
+
+    /**
+     * Finds the position of the wagon with a given wagonId (starting at 1 for the first wagon of the train)
+     * Ids that are not in the train are rejected by a hash lookup; the position of an id in the train is found
+     * by a sequential scan of the ids, in O(n) time
+     * @param wagonId
+     * @return  the position of the wagon found
+     *          (return 0 if no wagon was found with the given wagonId)
+     */
+    public int findPositionById(int wagonId) {
+        if (!this.wagonIds.contains(wagonId)) {
+            return 0;
+        }
+        int[] ids = this.ids;
+        for (int i = 0; i < this.numberOfWagons; i++) {
+            if (ids[i] == wagonId) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Determines if the given sequence of wagons can be attached to the train
+     * Verifies that the type of wagons match the type of train (Passenger or Freight)
+     * Verifies that the capacity of the engine is sufficient to pull the additional wagons
+     * Verifies that none of the wagons already is in the train and that no id occurs twice in the sequence
+     * @param sequence
+     * @return
+     */
+    public boolean canAttach(Wagon sequence) {
+        if (sequence == null) {
+            return false;
+        }
+        int count = 0;
+        try {
+            for (Wagon wagon = sequence; wagon != null; wagon = wagon.getNextWagon()) {
+                if (this.wagonIds.contains(wagon.getId()) || !this.sequenceIds.add(wagon.getId())) {
+                    return false;
+                }
+                count++;
+            }
+        } finally {
+            this.sequenceIds.clear();
+        }
+        return canAttach(typeOf(sequence), count);
+    }
+
+    private boolean canAttach(byte type, int count) {
+        return this.numberOfWagons + count <= this.engine.getMaxWagons()
+                && (!hasWagons() || this.types[0] == type);
+    }
+
+    /**
+     * Tries to attach a copy of the given sequence of wagons to the rear of the train
+     * No change is made if the attachment cannot be made.
+     * (when the sequence is not compatible or the engine has insufficient capacity)
+     * @param sequence
+     * @return  whether the attachment could be completed successfully
+     */
+    public boolean attachToRear(Wagon sequence) {
+        return insertAtPosition(this.numberOfWagons + 1, sequence);
+    }
+
+    /**
+     * Tries to attach a passenger wagon with the given properties to the rear of the train,
+     * without creating a Wagon object
+     * @param wagonId
+     * @param numberOfSeats
+     * @return  whether the attachment could be completed successfully
+     */
+    public boolean attachPassengerWagon(int wagonId, int numberOfSeats) {
+        return attachToRear(PASSENGER, wagonId, numberOfSeats);
+    }
+
+    /**
+     * Tries to attach a freight wagon with the given properties to the rear of the train,
+     * without creating a Wagon object
+     * @param wagonId
+     * @param maxWeight
+     * @return  whether the attachment could be completed successfully
+     */
+    public boolean attachFreightWagon(int wagonId, int maxWeight) {
+        return attachToRear(FREIGHT, wagonId, maxWeight);
+    }
+
+    private boolean attachToRear(byte type, int wagonId, int capacity) {
+        if (!canAttach(type, 1) || this.wagonIds.contains(wagonId)) {
+            return false;
+        }
+        ensureCapacity(this.numberOfWagons + 1);
+        store(this.numberOfWagons++, type, wagonId, capacity);
+        return true;
+    }
+
+    /**
+     * Tries to insert a copy of the given sequence of wagons at the front of the train
+     * No change is made if the insertion cannot be made.
+     * (when the sequence is not compatible or the engine has insufficient capacity)
+     * @param sequence
+     * @return  whether the insertion could be completed successfully
+     */
+    public boolean insertAtFront(Wagon sequence) {
+        return insertAtPosition(1, sequence);
+    }
+
+    /**
+     * Tries to insert a copy of the given sequence of wagons at the given wagon position in the train
+     * No change is made if the insertion cannot be made.
+     * (when the sequence is not compatible of the engine has insufficient capacity
+     * or the given position is not valid in this train)
+     * @param position
+     * @param sequence
+     * @return  whether the insertion could be completed successfully
+     */
+    public boolean insertAtPosition(int position, Wagon sequence) {
+        if (position < 1 || position > this.numberOfWagons + 1 || !canAttach(sequence)) {
+            return false;
+        }
+        int count = sequence.getSequenceLength();
+        openGap(position - 1, count);
+        int index = position - 1;
+        for (Wagon wagon = sequence; wagon != null; wagon = wagon.getNextWagon()) {
+            store(index++, wagon);
+        }
+        return true;
+    }
+
+    /**
+     * Tries to remove one Wagon with the given wagonId from this train
+     * and attach it at the rear of the given toTrain
+     * No change is made if the removal or attachment cannot be made
+     * (when the wagon cannot be found, or the trains are not compatible
+     * or the engine of toTrain has insufficient capacity)
+     * @param wagonId
+     * @param toTrain
+     * @return  whether the move could be completed successfully
+     */
+    public boolean moveOneWagon(int wagonId, CompactTrain toTrain) {
+        int position = findPositionById(wagonId);
+        if (position == 0 || toTrain == this) {
+            return false;
+        }
+        int index = position - 1;
+        if (!toTrain.attachToRear(this.types[index], wagonId, this.capacities[index])) {
+            return false;
+        }
+        forget(index);
+        closeGap(index, 1);
+        return true;
+    }
+
+    /**
+     * Tries to split this train and move the complete sequence of wagons from the given position
+     * to the rear of toTrain
+     * No change is made if the split or re-attachment cannot be made
+     * (when the position is not valid for this train, or the trains are not compatible
+     * or the engine of toTrain has insufficient capacity)
+     * @param position
+     * @param toTrain
+     * @return  whether the move could be completed successfully
+     */
+    public boolean splitAtPosition(int position, CompactTrain toTrain) {
+        if (position < 1 || position > this.numberOfWagons || toTrain == this) {
+            return false;
+        }
+        int from = position - 1;
+        int count = this.numberOfWagons - from;
+        if (!toTrain.canAttach(this.types[from], count)) {
+            return false;
+        }
+        for (int i = from; i < this.numberOfWagons; i++) {
+            if (toTrain.wagonIds.contains(this.ids[i])) {
+                return false;
+            }
+        }
+        int to = toTrain.numberOfWagons;
+        toTrain.ensureCapacity(to + count);
+        for (int i = from; i < this.numberOfWagons; i++) {
+            toTrain.store(to++, this.types[i], this.ids[i], this.capacities[i]);
+            forget(i);
+        }
+        toTrain.numberOfWagons = to;
+        this.numberOfWagons = from;
+        return true;
+    }
+
+    /**
+     * Reverses the sequence of wagons in this train (if any)
+     * (No change if the train has no wagons or only one wagon)
+     */
+    public void reverse() {
+        for (int i = 0, j = this.numberOfWagons - 1; i < j; i++, j--) {
+            int id = this.ids[i];
+            this.ids[i] = this.ids[j];
+            this.ids[j] = id;
+            byte type = this.types[i];
+            this.types[i] = this.types[j];
+            this.types[j] = type;
+            int capacity = this.capacities[i];
+            this.capacities[i] = this.capacities[j];
+            this.capacities[j] = capacity;
+        }
+    }
+
+    /**
+     * Iterates over detached copies of the wagons of this train, whose changes do not affect this train
+     */
+    @Override
+    public Iterator<Wagon> iterator() {
+        return new Iterator<Wagon>() {
+            int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < numberOfWagons;
+            }
+
+            @Override
+            public Wagon next() {
+                if (index >= numberOfWagons) {
+                    throw new NoSuchElementException();
+                }
+                return wagonAt(index++);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("from %s to %s", origin, destination);
+    }
+
+    private static byte typeOf(Wagon wagon) {
+        return wagon instanceof PassengerWagon ? PASSENGER : FREIGHT;
+    }
+
+    private Wagon wagonAt(int index) {
+        if (this.types[index] == PASSENGER) {
+            return new PassengerWagon(this.ids[index], this.capacities[index]);
+        }
+        return new FreightWagon(this.ids[index], this.capacities[index]);
+    }
+
+    private void store(int index, Wagon wagon) {
+        if (wagon instanceof PassengerWagon) {
+            store(index, PASSENGER, wagon.getId(), ((PassengerWagon) wagon).getNumberOfSeats());
+        } else {
+            store(index, FREIGHT, wagon.getId(), ((FreightWagon) wagon).getMaxWeight());
+        }
+    }
+
+    private void store(int index, byte type, int wagonId, int capacity) {
+        this.ids[index] = wagonId;
+        this.types[index] = type;
+        this.capacities[index] = capacity;
+        this.wagonIds.add(wagonId);
+        if (type == PASSENGER) {
+            this.totalNumberOfSeats += capacity;
+        } else {
+            this.totalMaxWeight += capacity;
+        }
+    }
+
+    private void forget(int index) {
+        this.wagonIds.remove(this.ids[index]);
+        if (this.types[index] == PASSENGER) {
+            this.totalNumberOfSeats -= this.capacities[index];
+        } else {
+            this.totalMaxWeight -= this.capacities[index];
+        }
+    }
+
+    private void openGap(int index, int count) {
+        ensureCapacity(this.numberOfWagons + count);
+        int tail = this.numberOfWagons - index;
+        System.arraycopy(this.ids, index, this.ids, index + count, tail);
+        System.arraycopy(this.types, index, this.types, index + count, tail);
+        System.arraycopy(this.capacities, index, this.capacities, index + count, tail);
+        this.numberOfWagons += count;
+    }
+
+    private void closeGap(int index, int count) {
+        int tail = this.numberOfWagons - index - count;
+        System.arraycopy(this.ids, index + count, this.ids, index, tail);
+        System.arraycopy(this.types, index + count, this.types, index, tail);
+        System.arraycopy(this.capacities, index + count, this.capacities, index, tail);
+        this.numberOfWagons -= count;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > this.ids.length) {
+            int newLength = Math.max(capacity, this.ids.length * 2);
+            this.ids = Arrays.copyOf(this.ids, newLength);
+            this.types = Arrays.copyOf(this.types, newLength);
+            this.capacities = Arrays.copyOf(this.capacities, newLength);
+        }
+    }
+
+    private void checkPosition(int position) {
+        if (position < 1 || position > this.numberOfWagons) {
+            throw new IndexOutOfBoundsException("no wagon at position " + position);
+        }
+    }
+}
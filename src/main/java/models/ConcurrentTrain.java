@@ -0,0 +1,335 @@
+package models;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A thread-safe train. Every concurrent train guards its own Train with its own lock,
+ * so operations on different trains run in parallel.
+ * Operations that involve two trains (moveOneWagon, splitAtPosition) lock both trains
+ * in the order in which the trains were created, so they cannot deadlock.
+ * The cumulative properties are read without locking, with an optimistic read that is only
+ * retried under a read lock when a write happened concurrently.
+ *
+ * Wagons can only enter a concurrent train when they are not part of any train yet;
+ * wagons are moved between concurrent trains with moveOneWagon and splitAtPosition.
+ * Every wagon that is taken in is claimed first, by a compare-and-set of its own claim flag,
+ * so two threads cannot attach the same wagons to different trains without sharing a lock.
+ * Claims never wait: a sequence that another thread is taking at the same time is refused.
+ * Wagons of a concurrent train must not be modified directly, and the train must not be part of a Fleet.
+ */
+public class ConcurrentTrain {
+    private static final AtomicLong NEXT_LOCK_ORDER = new AtomicLong();
+    private static final AtomicIntegerFieldUpdater<Wagon> CLAIMED =
+            AtomicIntegerFieldUpdater.newUpdater(Wagon.class, "claimed");
+
+    private final Train train;
+    private final StampedLock lock = new StampedLock();
+    private final long lockOrder = NEXT_LOCK_ORDER.getAndIncrement();     // trains are locked in increasing order
+
+    public ConcurrentTrain(Locomotive engine, String origin, String destination) {
+        this.train = new Train(engine, origin, destination);
+    }
+
+    public String getOrigin() {
+        long stamp = lock.readLock();
+        try {
+            return train.getOrigin();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public String getDestination() {
+        long stamp = lock.readLock();
+        try {
+            return train.getDestination();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public Locomotive getEngine() {
+        long stamp = lock.readLock();
+        try {
+            return train.getEngine();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int getNumberOfWagons() {
+        long stamp = lock.tryOptimisticRead();
+        int numberOfWagons = train.getNumberOfWagons();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                numberOfWagons = train.getNumberOfWagons();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return numberOfWagons;
+    }
+
+    public int getTotalNumberOfSeats() {
+        long stamp = lock.tryOptimisticRead();
+        int seats = train.getTotalNumberOfSeats();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                seats = train.getTotalNumberOfSeats();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return seats;
+    }
+
+    public int getTotalMaxWeight() {
+        long stamp = lock.tryOptimisticRead();
+        int maxWeight = train.getTotalMaxWeight();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                maxWeight = train.getTotalMaxWeight();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return maxWeight;
+    }
+
+    /**
+     * @param wagonId
+     * @return  the position of the wagon with the given id
+     *          (return 0 if no wagon was found with the given wagonId)
+     */
+    public int findPositionById(int wagonId) {
+        long stamp = lock.readLock();
+        try {
+            return train.findPositionById(wagonId);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @param position
+     * @return  the id of the wagon at the given position
+     *          (return 0 if the position is not valid for this train)
+     */
+    public int findWagonIdAtPosition(int position) {
+        long stamp = lock.readLock();
+        try {
+            Wagon wagon = train.findWagonAtPosition(position);
+            return wagon != null ? wagon.getId() : 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return  a snapshot of the ids of all wagons, in the order of the train
+     */
+    public int[] getWagonIds() {
+        long stamp = lock.readLock();
+        try {
+            int[] ids = new int[train.getNumberOfWagons()];
+            int i = 0;
+            for (Wagon wagon = train.getFirstWagon(); wagon != null; wagon = wagon.getNextWagon()) {
+                ids[i++] = wagon.getId();
+            }
+            return ids;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Calls the action for every wagon, in the order of the train, while holding the read lock
+     * The action must not modify the wagons or any train.
+     * @param action
+     */
+    public void forEachWagon(Consumer<Wagon> action) {
+        long stamp = lock.readLock();
+        try {
+            for (Wagon wagon = train.getFirstWagon(); wagon != null; wagon = wagon.getNextWagon()) {
+                action.accept(wagon);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void setEngine(Locomotive engine) {
+        long stamp = lock.writeLock();
+        try {
+            train.setEngine(engine);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Tries to attach the given sequence of wagons, which is not part of any train, to the rear of the train
+     * @see Train#attachToRear(Wagon)
+     */
+    public boolean attachToRear(Wagon sequence) {
+        return attachFree(sequence, train::attachToRear);
+    }
+
+    /**
+     * Tries to insert the given sequence of wagons, which is not part of any train, at the front of the train
+     * @see Train#insertAtFront(Wagon)
+     */
+    public boolean insertAtFront(Wagon sequence) {
+        return attachFree(sequence, train::insertAtFront);
+    }
+
+    /**
+     * Tries to insert the given sequence of wagons, which is not part of any train, at the given position
+     * @see Train#insertAtPosition(int, Wagon)
+     */
+    public boolean insertAtPosition(int position, Wagon sequence) {
+        return attachFree(sequence, free -> train.insertAtPosition(position, free));
+    }
+
+    /**
+     * Claims the given sequence for this train with the given operation, if it is not part of any train.
+     * All wagons of the sequence are claimed before the operation runs under the lock of this train,
+     * and so is the wagon in front of the sequence while the operation detaches the sequence from it,
+     * so another thread cannot take or relink the same wagons in between.
+     * @param sequence
+     * @param operation the operation of the guarded train that attaches the sequence
+     * @return  whether the sequence was free and the operation succeeded
+     */
+    private boolean attachFree(Wagon sequence, Predicate<Wagon> operation) {
+        if (sequence == null) {
+            return false;
+        }
+        Wagon previous = sequence.getPreviousWagon();
+        if (previous != null && !CLAIMED.compareAndSet(previous, 0, 1)) {
+            return false;
+        }
+        try {
+            if (!claim(sequence)) {
+                return false;
+            }
+            boolean attached;
+            long stamp = lock.writeLock();
+            try {
+                attached = sequence.train == null && operation.test(sequence);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            if (!attached) {
+                release(sequence, null);
+            }
+            return attached;
+        } finally {
+            if (previous != null) {
+                CLAIMED.set(previous, 0);
+            }
+        }
+    }
+
+    /**
+     * Claims all wagons of the sequence, or none of them when another thread holds one of them
+     * The links of a claimed wagon can only be changed by the thread that claimed it,
+     * so the sequence cannot change while it is being claimed.
+     * @param sequence
+     * @return  whether all wagons were claimed
+     */
+    private static boolean claim(Wagon sequence) {
+        for (Wagon wagon = sequence; wagon != null; wagon = wagon.getNextWagon()) {
+            if (!CLAIMED.compareAndSet(wagon, 0, 1)) {
+                release(sequence, wagon);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Releases the claimed wagons of the sequence up to (not including) the given end
+     * @param sequence
+     * @param end   the first wagon that is not released (null for the whole sequence)
+     */
+    private static void release(Wagon sequence, Wagon end) {
+        for (Wagon wagon = sequence; wagon != end; wagon = wagon.getNextWagon()) {
+            CLAIMED.set(wagon, 0);
+        }
+    }
+
+    /**
+     * @see Train#reverse()
+     */
+    public void reverse() {
+        long stamp = lock.writeLock();
+        try {
+            train.reverse();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Tries to move one wagon to the rear of toTrain, holding the locks of both trains
+     * @see Train#moveOneWagon(int, Train)
+     */
+    public boolean moveOneWagon(int wagonId, ConcurrentTrain toTrain) {
+        if (toTrain == this) {
+            return false;
+        }
+        ConcurrentTrain first = lockOrder < toTrain.lockOrder ? this : toTrain;
+        ConcurrentTrain second = first == this ? toTrain : this;
+        long firstStamp = first.lock.writeLock();
+        try {
+            long secondStamp = second.lock.writeLock();
+            try {
+                return train.moveOneWagon(wagonId, toTrain.train);
+            } finally {
+                second.lock.unlockWrite(secondStamp);
+            }
+        } finally {
+            first.lock.unlockWrite(firstStamp);
+        }
+    }
+
+    /**
+     * Tries to move all wagons from the given position to the rear of toTrain, holding the locks of both trains
+     * @see Train#splitAtPosition(int, Train)
+     */
+    public boolean splitAtPosition(int position, ConcurrentTrain toTrain) {
+        if (toTrain == this) {
+            return false;
+        }
+        ConcurrentTrain first = lockOrder < toTrain.lockOrder ? this : toTrain;
+        ConcurrentTrain second = first == this ? toTrain : this;
+        long firstStamp = first.lock.writeLock();
+        try {
+            long secondStamp = second.lock.writeLock();
+            try {
+                return train.splitAtPosition(position, toTrain.train);
+            } finally {
+                second.lock.unlockWrite(secondStamp);
+            }
+        } finally {
+            first.lock.unlockWrite(firstStamp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        long stamp = lock.readLock();
+        try {
+            return train.toString();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package models;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Loads trains from consist files, one consist per line:
+ *
+ *      locNumber,maxWagons,origin,destination,wagon,wagon,...
+ *
+ * where every wagon is written as P{id}:{numberOfSeats} or F{id}:{maxWeight}, e.g.
+ *
+ *      24531,7,Amsterdam,Paris,P8001:32,P8002:32,P8003:18
+ *
+ * Empty lines and lines starting with # are skipped.
+ * The file is read line by line and every train is handed to the consumer as soon as it is complete,
+ * so memory use does not depend on the size of the file.
+ * Every consist is validated once while it is parsed (engine capacity, wagon types, duplicate ids)
+ * and its wagons are then linked into the train in a single pass, instead of attaching them one by one.
+ * Invalid lines are reported to the error handler and skipped; loading continues with the next line.
+ */
+public class ConsistLoader {
+
+    /**
+     * Receives the lines that could not be loaded
+     */
+    public interface ErrorHandler {
+        void lineRejected(long lineNumber, String line, String reason);
+    }
+
+    private final Consumer<Train> trainConsumer;
+    private final ErrorHandler errorHandler;
+    private final IntHashSet wagonIds = new IntHashSet();      // ids of the consist being parsed
+    private long linesRead;
+    private long trainsLoaded;
+    private long linesRejected;
+
+    public ConsistLoader(Consumer<Train> trainConsumer, ErrorHandler errorHandler) {
+        this.trainConsumer = trainConsumer;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Loads all consists from the given UTF-8 file
+     * @param file
+     * @throws IOException  if the file cannot be read (invalid lines do not throw)
+     */
+    public void load(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            load(reader);
+        }
+    }
+
+    /**
+     * Loads all consists from the given reader
+     * @param reader
+     * @throws IOException  if the reader fails (invalid lines do not throw)
+     */
+    public void load(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            linesRead++;
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            Train train;
+            try {
+                train = parseConsist(line);
+            } catch (IllegalArgumentException e) {
+                linesRejected++;
+                errorHandler.lineRejected(linesRead, line, e.getMessage());
+                continue;
+            }
+            trainsLoaded++;
+            trainConsumer.accept(train);
+        }
+    }
+
+    /**
+     * Parses a single consist definition
+     * @param line
+     * @return  the train with all its wagons
+     * @throws IllegalArgumentException if the line is not a valid consist
+     */
+    public Train parseConsist(String line) {
+        int end = nextComma(line, 0);
+        int locNumber = parseInt(line, 0, end, "locNumber");
+        int start = end + 1;
+        end = nextComma(line, start);
+        int maxWagons = parseInt(line, start, end, "maxWagons");
+        start = end + 1;
+        end = nextComma(line, start);
+        String origin = line.substring(start, end);
+        start = end + 1;
+        end = nextComma(line, start);
+        String destination = line.substring(start, end);
+
+        Train train = new Train(new Locomotive(locNumber, maxWagons), origin, destination);
+        wagonIds.clear();
+        Wagon first = null, last = null;
+        int numberOfWagons = 0;
+        for (start = end + 1; start <= line.length() && end < line.length(); start = end + 1) {
+            end = nextComma(line, start);
+            Wagon wagon = parseWagon(line, start, end);
+            if (++numberOfWagons > maxWagons) {
+                throw new IllegalArgumentException("more than " + maxWagons + " wagons");
+            }
+            if (last != null && wagon.getClass() != last.getClass()) {
+                throw new IllegalArgumentException("wagon " + wagon.getId() + " has a different type");
+            }
+            if (!wagonIds.add(wagon.getId())) {
+                throw new IllegalArgumentException("duplicate wagon " + wagon.getId());
+            }
+            if (last == null) {
+                first = wagon;
+            } else {
+                wagon.attachTo(last);
+            }
+            last = wagon;
+        }
+        train.setFirstWagon(first);
+        return train;
+    }
+
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    public long getTrainsLoaded() {
+        return trainsLoaded;
+    }
+
+    public long getLinesRejected() {
+        return linesRejected;
+    }
+
+    private static Wagon parseWagon(String line, int start, int end) {
+        int colon = line.indexOf(':', start);
+        if (end - start < 4 || colon < 0 || colon >= end) {
+            throw new IllegalArgumentException("invalid wagon '" + line.substring(start, end) + "'");
+        }
+        int id = parseInt(line, start + 1, colon, "wagon id");
+        int capacity = parseInt(line, colon + 1, end, "wagon capacity");
+        switch (line.charAt(start)) {
+            case 'P':
+                return new PassengerWagon(id, capacity);
+            case 'F':
+                return new FreightWagon(id, capacity);
+            default:
+                throw new IllegalArgumentException("invalid wagon type '" + line.charAt(start) + "'");
+        }
+    }
+
+    private static int nextComma(String line, int start) {
+        if (start > line.length()) {
+            throw new IllegalArgumentException("missing fields");
+        }
+        int comma = line.indexOf(',', start);
+        return comma >= 0 ? comma : line.length();
+    }
+
+    private static int parseInt(String line, int start, int end, String field) {
+        try {
+            return Integer.parseInt(line, start, end, 10);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + field + " '" + line.substring(start, end) + "'");
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package models;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Forms new trains from a pool of available wagons and locomotives, so that every route gets
+ * at least the number of seats (passenger routes) or the maximum weight (freight routes) it demands,
+ * with as little surplus capacity as possible.
+ *
+ * Locomotives are assigned first: the routes that need the most wagons, estimated from the average capacity
+ * of the available wagons of their type, get the locomotives that can pull the most wagons.
+ * In the same order, a greedy pass over the capacities (sorted into primitive arrays) reserves wagons for
+ * every route: each next wagon is the smallest free wagon that covers its share of the remaining demand.
+ * The wagons that are left are then dealt out over the routes, and every route improves its consist
+ * independently, in parallel, with a branch-and-bound search over its reserved and dealt wagons.
+ * The search of a route is limited to a fixed number of nodes, after which the best consist found is taken,
+ * so a pool of 100,000 wagons is solved within seconds.
+ *
+ * The available wagons must have unique ids, must not have a negative capacity
+ * and must not be part of a train or linked to other wagons.
+ */
+public class ConsistSolver {
+    private static final int SEARCH_NODES = 1 << 22;    // search nodes per route
+
+    /**
+     * The seats or the maximum weight demanded for one route
+     */
+    public static final class Route {
+        private final String origin;
+        private final String destination;
+        private final boolean freight;
+        private final int demand;
+
+        /**
+         * @param origin
+         * @param destination
+         * @param freight   whether the demand is a maximum weight for a freight train (or a number of seats)
+         * @param demand    the number of seats or the maximum weight, at least 1
+         */
+        public Route(String origin, String destination, boolean freight, int demand) {
+            if (demand < 1) {
+                throw new IllegalArgumentException("demand must be at least 1");
+            }
+            this.origin = origin;
+            this.destination = destination;
+            this.freight = freight;
+            this.demand = demand;
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public boolean isFreight() {
+            return freight;
+        }
+
+        public int getDemand() {
+            return demand;
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    public ConsistSolver() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool  the pool that runs the searches of the routes
+     */
+    public ConsistSolver(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Forms a train for every route that can be served with the given locomotives and wagons
+     * Wagons that are not needed are left unchanged.
+     * @param routes
+     * @param locomotives   the available locomotives
+     * @param wagons        the available wagons
+     * @return  the new trains, at the same index as their route
+     *          (null for a route that cannot be served)
+     * @throws IllegalArgumentException if a wagon is not available, repeats an id or has a negative capacity
+     */
+    public Train[] solve(List<Route> routes, List<Locomotive> locomotives, Collection<? extends Wagon> wagons) {
+        IntHashSet ids = new IntHashSet();
+        for (Wagon wagon : wagons) {
+            if (wagon.train != null || wagon.hasPreviousWagon() || wagon.hasNextWagon()) {
+                throw new IllegalArgumentException("wagon " + wagon.getId() + " is not available");
+            }
+            if (!ids.add(wagon.getId())) {
+                throw new IllegalArgumentException("wagon id " + wagon.getId() + " is not unique");
+            }
+            if (Stock.capacityOf(wagon) < 0) {
+                throw new IllegalArgumentException("wagon " + wagon.getId() + " has a negative capacity");
+            }
+        }
+        Stock passengerWagons = new Stock(wagons, false);
+        Stock freightWagons = new Stock(wagons, true);
+
+        // the routes in order of decreasing estimated number of wagons
+        long[] estimates = new long[routes.size()];
+        for (int r = 0; r < routes.size(); r++) {
+            Route route = routes.get(r);
+            Stock stock = route.freight ? freightWagons : passengerWagons;
+            long average = stock.size == 0 ? 0 : Math.max(1, stock.totalCapacity / stock.size);
+            long estimate = average == 0 ? 0 : (route.demand + average - 1) / average;
+            estimates[r] = -(Math.min(estimate, Integer.MAX_VALUE) << 32 | r);
+        }
+        Arrays.sort(estimates);
+        Locomotive[] engines = locomotives.toArray(new Locomotive[0]);
+        Arrays.sort(engines, (a, b) -> Integer.compare(b.getMaxWagons(), a.getMaxWagons()));
+
+        Consist[] consists = new Consist[routes.size()];
+        int e = 0;
+        for (long estimate : estimates) {
+            int r = (int) -estimate;
+            Route route = routes.get(r);
+            Stock stock = route.freight ? freightWagons : passengerWagons;
+            if (stock.size > 0 && e < engines.length) {
+                consists[r] = stock.reserve(route, engines[e]);
+                if (consists[r] != null) {
+                    e++;            // a locomotive that cannot serve this route stays available for the next
+                }
+            }
+        }
+        passengerWagons.deal(consists, false);
+        freightWagons.deal(consists, true);
+
+        this.pool.submit(() -> Arrays.stream(consists).parallel()
+                .filter(Objects::nonNull)
+                .forEach(Consist::improve)).join();
+
+        Train[] trains = new Train[routes.size()];
+        for (int r = 0; r < consists.length; r++) {
+            if (consists[r] != null && consists[r].best != null) {
+                trains[r] = consists[r].toTrain();
+            }
+        }
+        return trains;
+    }
+
+    /**
+     * The available wagons of one type, sorted by increasing capacity,
+     * with two disjoint-set forests to find the nearest free wagon above or below a capacity
+     */
+    private static final class Stock {
+        final Wagon[] wagons;
+        final int[] capacities;
+        final int size;
+        final long totalCapacity;
+        private final int[] nextFree;       // leads to the first free index >= i (size if none)
+        private final int[] previousFree;   // leads to 1 + the last free index <= i - 1 (0 if none)
+
+        Stock(Collection<? extends Wagon> available, boolean freight) {
+            Wagon[] all = available.toArray(new Wagon[0]);
+            long[] keys = new long[all.length];
+            int size = 0;
+            long totalCapacity = 0;
+            for (int i = 0; i < all.length; i++) {
+                if (freight ? all[i] instanceof FreightWagon : all[i] instanceof PassengerWagon) {
+                    int capacity = capacityOf(all[i]);
+                    keys[size++] = (long) capacity << 32 | i;
+                    totalCapacity += capacity;
+                }
+            }
+            keys = Arrays.copyOf(keys, size);
+            Arrays.sort(keys);
+            this.size = size;
+            this.totalCapacity = totalCapacity;
+            this.wagons = new Wagon[size];
+            this.capacities = new int[size];
+            this.nextFree = new int[size + 1];
+            this.previousFree = new int[size + 1];
+            for (int i = 0; i < size; i++) {
+                this.wagons[i] = all[(int) keys[i]];
+                this.capacities[i] = (int) (keys[i] >>> 32);
+            }
+            for (int i = 0; i <= size; i++) {
+                this.nextFree[i] = i;
+                this.previousFree[i] = i;
+            }
+        }
+
+        private static int capacityOf(Wagon wagon) {
+            return wagon instanceof FreightWagon ? ((FreightWagon) wagon).getMaxWeight()
+                    : ((PassengerWagon) wagon).getNumberOfSeats();
+        }
+
+        /**
+         * @return  the first free index at or after i (size if there is none)
+         */
+        private int freeFrom(int i) {
+            while (this.nextFree[i] != i) {
+                this.nextFree[i] = this.nextFree[this.nextFree[i]];
+                i = this.nextFree[i];
+            }
+            return i;
+        }
+
+        /**
+         * @return  the last free index at or before i (-1 if there is none)
+         */
+        private int freeUpTo(int i) {
+            i++;
+            while (this.previousFree[i] != i) {
+                this.previousFree[i] = this.previousFree[this.previousFree[i]];
+                i = this.previousFree[i];
+            }
+            return i - 1;
+        }
+
+        private void take(int i) {
+            this.nextFree[i] = i + 1;
+            this.previousFree[i + 1] = i;
+        }
+
+        /**
+         * Reserves wagons for a route with the greedy rule
+         * @return  the consist of the route (with no best selection if the demand could not be met)
+         *          (return null if even the largest free wagons cannot meet the demand)
+         */
+        Consist reserve(Route route, Locomotive engine) {
+            int maxWagons = engine.getMaxWagons();
+            long reach = 0;
+            for (int i = freeUpTo(this.size - 1), n = 0; i >= 0 && n < maxWagons; i = freeUpTo(i - 1), n++) {
+                reach += this.capacities[i];
+            }
+            if (reach < route.demand) {
+                return null;
+            }
+            Consist consist = new Consist(route, engine, this);
+            long sum = 0;
+            while (sum < route.demand && consist.size < maxWagons) {
+                long need = route.demand - sum;
+                int slots = maxWagons - consist.size;
+                long threshold = (need + slots - 1) / slots;
+                int i = freeFrom(lowerBound(threshold));
+                if (i == this.size) {
+                    i = freeUpTo(this.size - 1);
+                }
+                if (i < 0) {
+                    break;
+                }
+                take(i);
+                consist.add(i);
+                sum += this.capacities[i];
+            }
+            if (sum >= route.demand) {
+                consist.best = Arrays.copyOf(consist.candidates, consist.size);
+                consist.bestCapacity = sum;
+            }
+            return consist;
+        }
+
+        /**
+         * Deals the free wagons out over the consists of this type, from the largest to the smallest
+         */
+        void deal(Consist[] consists, boolean freight) {
+            Consist[] takers = Arrays.stream(consists)
+                    .filter(consist -> consist != null && consist.route.freight == freight)
+                    .toArray(Consist[]::new);
+            if (takers.length == 0) {
+                return;
+            }
+            int t = 0;
+            for (int i = freeUpTo(this.size - 1); i >= 0; i = freeUpTo(i - 1)) {
+                take(i);
+                takers[t].add(i);
+                t = (t + 1) % takers.length;
+            }
+        }
+
+        /**
+         * @return  the first index with at least the given capacity (size if there is none)
+         */
+        private int lowerBound(long capacity) {
+            int low = 0, high = this.size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (this.capacities[middle] < capacity) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * The wagons reserved for and dealt to one route, and the best selection among them
+     */
+    private static final class Consist {
+        final Route route;
+        final Locomotive engine;
+        final Stock stock;
+        int[] candidates = new int[16];     // indices into the stock
+        int size;
+        int[] best;                         // the selected indices into the stock (null if none meets the demand)
+        long bestCapacity = Long.MAX_VALUE;
+
+        // search state, over the candidates in order of decreasing capacity
+        private int[] order;
+        private int[] capacities;
+        private long[] prefix;              // prefix[j]: the sum of the first j capacities
+        private int[] path;
+        private int nodes;
+        private long target;                // the least total capacity any selection can have
+
+        Consist(Route route, Locomotive engine, Stock stock) {
+            this.route = route;
+            this.engine = engine;
+            this.stock = stock;
+        }
+
+        void add(int index) {
+            if (this.size == this.candidates.length) {
+                this.candidates = Arrays.copyOf(this.candidates, 2 * this.size);
+            }
+            this.candidates[this.size++] = index;
+        }
+
+        /**
+         * Searches the candidates for a selection with less surplus capacity than the greedy selection
+         */
+        void improve() {
+            int n = this.size;
+            Arrays.sort(this.candidates, 0, n);     // stock indices are in order of increasing capacity
+            this.order = new int[n];
+            this.capacities = new int[n];
+            this.prefix = new long[n + 1];
+            for (int j = 0; j < n; j++) {
+                this.order[j] = this.candidates[n - 1 - j];
+                this.capacities[j] = this.stock.capacities[this.order[j]];
+                this.prefix[j + 1] = this.prefix[j] + this.capacities[j];
+            }
+            // every total is a multiple of the greatest common divisor of the capacities
+            int divisor = 0;
+            for (int j = 0; j < n && divisor != 1; j++) {
+                divisor = gcd(divisor, this.capacities[j]);
+            }
+            this.target = divisor == 0 ? this.route.demand
+                    : (this.route.demand + (long) divisor - 1) / divisor * divisor;
+            this.path = new int[Math.max(1, this.engine.getMaxWagons())];
+            if (n > 0 && this.engine.getMaxWagons() > 0) {
+                search(0, 0, 0);
+            }
+            this.order = null;
+            this.capacities = null;
+            this.prefix = null;
+            this.path = null;
+        }
+
+        /**
+         * Extends the current selection of count wagons, with total capacity sum below the demand,
+         * with one more wagon from position start onwards
+         */
+        private void search(int start, int count, long sum) {
+            int n = this.size;
+            int maxWagons = this.engine.getMaxWagons();
+            int previous = -1;
+            for (int j = start; j < n && this.bestCapacity > this.target; j++) {
+                if (++this.nodes > SEARCH_NODES) {
+                    return;
+                }
+                int capacity = this.capacities[j];
+                if (capacity == previous) {
+                    continue;       // the same selections as with the previous wagon of equal capacity
+                }
+                previous = capacity;
+                int end = (int) Math.min(n, (long) j + maxWagons - count);
+                if (sum + this.prefix[end] - this.prefix[j] < this.route.demand) {
+                    return;         // the following wagons are smaller and reach even less
+                }
+                long total = sum + capacity;
+                this.path[count] = j;
+                if (total >= this.route.demand) {
+                    if (total < this.bestCapacity || total == this.bestCapacity && count + 1 < this.best.length) {
+                        this.bestCapacity = total;
+                        this.best = new int[count + 1];
+                        for (int k = 0; k <= count; k++) {
+                            this.best[k] = this.order[this.path[k]];
+                        }
+                    }
+                } else if (count + 1 < maxWagons && total + this.capacities[n - 1] <= this.bestCapacity) {
+                    search(j + 1, count + 1, total);
+                }
+            }
+        }
+
+        private static int gcd(int a, int b) {
+            while (b != 0) {
+                int r = a % b;
+                a = b;
+                b = r;
+            }
+            return a;
+        }
+
+        Train toTrain() {
+            Train train = new Train(this.engine, this.route.origin, this.route.destination);
+            for (int index : this.best) {
+                if (!train.attachToRear(this.stock.wagons[index])) {
+                    throw new IllegalStateException("train rejected an available wagon");
+                }
+            }
+            return train;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A registry of trains that keeps track of which train every wagon belongs to.
+ * Trains keep the registry up to date while wagons are attached, moved and split,
+ * so a wagon and its train can be found by wagon id in constant time.
+ */
+public class Fleet {
+    private final List<Train> trains = new ArrayList<>();
+    private final IntHashMap<Wagon> wagonsById = new IntHashMap<>();   // all wagons in registered trains by id
+
+    /* Representation invariants:
+        every train in trains has train.fleet == this
+        wagonsById contains exactly the wagons of the registered trains
+     */
+
+    /**
+     * Registers a train and all its wagons in this fleet
+     * @param train     a train that is not yet part of a fleet
+     * @throws IllegalStateException if the train already is part of a fleet
+     * @throws IllegalArgumentException if a wagon id of the train is already used in this fleet
+     */
+    public void addTrain(Train train) {
+        if (train.fleet != null) {
+            throw new IllegalStateException("train is already part of a fleet");
+        }
+        for (Wagon wagon : train) {
+            if (this.wagonsById.containsKey(wagon.getId())) {
+                throw new IllegalArgumentException("wagon " + wagon.getId() + " is already part of this fleet");
+            }
+        }
+        for (Wagon wagon : train) {
+            this.wagonsById.put(wagon.getId(), wagon);
+        }
+        train.fleet = this;
+        this.trains.add(train);
+    }
+
+    /**
+     * Removes a train and all its wagons from this fleet
+     * @param train
+     * @return  whether the train was part of this fleet
+     */
+    public boolean removeTrain(Train train) {
+        if (train.fleet != this) {
+            return false;
+        }
+        for (Wagon wagon : train) {
+            this.wagonsById.remove(wagon.getId());
+        }
+        train.fleet = null;
+        this.trains.remove(train);
+        return true;
+    }
+
+    /**
+     * @return  the trains registered in this fleet (unmodifiable)
+     */
+    public List<Train> getTrains() {
+        return Collections.unmodifiableList(this.trains);
+    }
+
+    /**
+     * @return  the total number of wagons in all trains of this fleet
+     */
+    public int getNumberOfWagons() {
+        return this.wagonsById.size();
+    }
+
+    /**
+     * Finds the wagon with a given wagonId in any train of this fleet
+     * @param wagonId
+     * @return  the wagon found
+     *          (return null if no wagon was found with the given wagonId)
+     */
+    public Wagon findWagonById(int wagonId) {
+        return this.wagonsById.get(wagonId);
+    }
+
+    /**
+     * Finds the train that holds the wagon with a given wagonId
+     * @param wagonId
+     * @return  the train found
+     *          (return null if no wagon was found with the given wagonId)
+     */
+    public Train findTrainOfWagon(int wagonId) {
+        Wagon wagon = this.wagonsById.get(wagonId);
+        return wagon != null ? wagon.train : null;
+    }
+
+    /**
+     * Finds the position of the wagon with a given wagonId within its train
+     * @param wagonId
+     * @return  the position of the wagon (starting at 1 for the first wagon of its train)
+     *          (return 0 if no wagon was found with the given wagonId)
+     */
+    public int findPositionOfWagon(int wagonId) {
+        Wagon wagon = this.wagonsById.get(wagonId);
+        return wagon != null ? wagon.train.findPositionById(wagonId) : 0;
+    }
+
+    /**
+     * @param wagon
+     * @return  whether another wagon with the same id as the given wagon is part of this fleet
+     */
+    boolean hasOtherWagonWithId(Wagon wagon) {
+        return hasOtherWagonWithId(wagon.getId(), wagon);
+    }
+
+    /**
+     * @param wagonId
+     * @param wagon
+     * @return  whether a wagon other than the given wagon with the given id is part of this fleet
+     */
+    boolean hasOtherWagonWithId(int wagonId, Wagon wagon) {
+        Wagon registered = this.wagonsById.get(wagonId);
+        return registered != null && registered != wagon;
+    }
+
+    void register(Wagon wagon) {
+        this.wagonsById.put(wagon.getId(), wagon);
+    }
+
+    void unregister(Wagon wagon) {
+        if (this.wagonsById.get(wagon.getId()) == wagon) {
+            this.wagonsById.remove(wagon.getId());
+        }
+    }
+
+    void idChanged(Wagon wagon, int oldId) {
+        this.wagonsById.remove(oldId);
+        this.wagonsById.put(wagon.getId(), wagon);
+    }
+}
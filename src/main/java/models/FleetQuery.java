@@ -0,0 +1,155 @@
+package models;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Fleet-wide aggregate queries, run in parallel on a fork/join pool.
+ *
+ * Queries over trains use the cumulative properties that every train maintains and split the set of trains.
+ * Queries over individual wagons also split long trains, through the position-based Train.spliterator(),
+ * so a few very long consists are spread over all worker threads as well.
+ * The trains must not be changed while a query runs.
+ */
+public class FleetQuery {
+    private static final int SEQUENTIAL_WAGONS = 4096;     // wagons per task below which a task is not split
+
+    private final Train[] trains;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param trains    the trains to query (the collection is copied)
+     */
+    public FleetQuery(Collection<Train> trains) {
+        this(trains, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param trains    the trains to query (the collection is copied)
+     * @param pool      the pool that runs the queries, which determines the number of worker threads
+     */
+    public FleetQuery(Collection<Train> trains, ForkJoinPool pool) {
+        this.trains = trains.toArray(new Train[0]);
+        this.pool = pool;
+    }
+
+    /**
+     * @return  the total number of seats on all passenger trains
+     */
+    public long getTotalNumberOfSeats() {
+        return this.pool.submit(() -> Arrays.stream(this.trains).parallel()
+                .mapToLong(Train::getTotalNumberOfSeats).sum()).join();
+    }
+
+    /**
+     * @return  the total maximum weight of all freight trains
+     */
+    public long getTotalMaxWeight() {
+        return this.pool.submit(() -> Arrays.stream(this.trains).parallel()
+                .mapToLong(Train::getTotalMaxWeight).sum()).join();
+    }
+
+    /**
+     * @return  the total maximum weight of the freight trains by origin and then by destination
+     */
+    public Map<String, Map<String, Long>> getTotalMaxWeightByRoute() {
+        return this.pool.submit(() -> Arrays.stream(this.trains).parallel()
+                .filter(Train::isFreightTrain)
+                .collect(Collectors.groupingBy(Train::getOrigin,
+                        Collectors.groupingBy(Train::getDestination,
+                                Collectors.summingLong(Train::getTotalMaxWeight))))).join();
+    }
+
+    /**
+     * Counts the wagons per class of locomotive, where the class of a locomotive is its maximum number of wagons
+     * @return  the number of wagons by maximum number of wagons of the engine that pulls them
+     */
+    public Map<Integer, Long> getNumberOfWagonsByLocomotiveClass() {
+        return this.pool.submit(() -> Arrays.stream(this.trains).parallel()
+                .collect(Collectors.groupingBy(train -> train.getEngine().getMaxWagons(),
+                        Collectors.summingLong(Train::getNumberOfWagons)))).join();
+    }
+
+    /**
+     * @param condition
+     * @return  the number of wagons in all trains that meet the given condition
+     */
+    public long countWagons(Predicate<? super Wagon> condition) {
+        return sumOverWagons(wagon -> condition.test(wagon) ? 1 : 0);
+    }
+
+    /**
+     * @param value
+     * @return  the sum of the given value over the wagons in all trains
+     */
+    public long sumOverWagons(ToLongFunction<? super Wagon> value) {
+        return this.pool.invoke(new TrainsTask(0, this.trains.length, value));
+    }
+
+    /**
+     * Sums a value over the wagons of a range of trains, splitting the range in halves
+     */
+    private final class TrainsTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+        private final ToLongFunction<? super Wagon> value;
+
+        TrainsTask(int from, int to, ToLongFunction<? super Wagon> value) {
+            this.from = from;
+            this.to = to;
+            this.value = value;
+        }
+
+        @Override
+        protected Long compute() {
+            if (this.to - this.from == 1) {
+                return new WagonsTask(trains[this.from].spliterator(), this.value).compute();
+            }
+            if (this.to == this.from) {
+                return 0L;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            TrainsTask front = new TrainsTask(this.from, middle, this.value);
+            front.fork();
+            long sum = new TrainsTask(middle, this.to, this.value).compute();
+            return sum + front.join();
+        }
+    }
+
+    /**
+     * Sums a value over the wagons of one train, splitting long ranges of positions
+     */
+    private static final class WagonsTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Spliterator<Wagon> wagons;
+        private final ToLongFunction<? super Wagon> value;
+
+        WagonsTask(Spliterator<Wagon> wagons, ToLongFunction<? super Wagon> value) {
+            this.wagons = wagons;
+            this.value = value;
+        }
+
+        @Override
+        protected Long compute() {
+            Spliterator<Wagon> prefix;
+            if (this.wagons.estimateSize() > SEQUENTIAL_WAGONS && (prefix = this.wagons.trySplit()) != null) {
+                WagonsTask front = new WagonsTask(prefix, this.value);
+                front.fork();
+                long sum = compute();
+                return sum + front.join();
+            }
+            long[] sum = new long[1];
+            this.wagons.forEachRemaining(wagon -> sum[0] += this.value.applyAsLong(wagon));
+            return sum[0];
+        }
+    }
+}
@@ -0,0 +1,567 @@
+package models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A persistent store of wagons and trains, kept off-heap in a memory-mapped file.
+ * Wagons and trains are fixed-width records that refer to each other by record number,
+ * and all train operations work directly on the mapped records, so opening a store
+ * does not read or convert any records and the fleet does not occupy the Java heap.
+ * A hash index of wagon ids is stored in the file as well.
+ *
+ * Wagons and trains are identified by their record number as returned by addPassengerWagon,
+ * addFreightWagon and addTrain; NONE (-1) denotes the absence of a record.
+ * The capacity for wagons and trains is fixed when the store is created.
+ *
+ * File layout:
+ *  header:     magic, version, wagonCapacity, trainCapacity, numberOfWagons, numberOfTrains, indexSlots
+ *  wagons:     wagonCapacity records of id, type, capacity (seats or max weight), next, previous, train
+ *  trains:     trainCapacity records of locNumber, maxWagons, first, last, numberOfWagons,
+ *              totalNumberOfSeats, totalMaxWeight, origin, destination
+ *  index:      indexSlots slots holding a wagon record number + 1, or 0 if the slot is empty
+ */
+public class FleetStore implements Closeable {
+    public static final int NONE = -1;
+
+    private static final int MAGIC = 0x464C5431;        // "FLT1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int NUMBER_OF_WAGONS_OFFSET = 16;
+    private static final int NUMBER_OF_TRAINS_OFFSET = 20;
+
+    private static final int WAGON_RECORD_SIZE = 24;
+    private static final int WAGON_ID = 0, WAGON_TYPE = 4, WAGON_CAPACITY = 8,
+            WAGON_NEXT = 12, WAGON_PREVIOUS = 16, WAGON_TRAIN = 20;
+    private static final int PASSENGER = 1, FREIGHT = 2;
+
+    private static final int NAME_SIZE = 32;            // length byte followed by at most 31 bytes of UTF-8
+    private static final int TRAIN_RECORD_SIZE = 96;
+    private static final int TRAIN_LOC_NUMBER = 0, TRAIN_MAX_WAGONS = 4, TRAIN_FIRST = 8, TRAIN_LAST = 12,
+            TRAIN_NUMBER_OF_WAGONS = 16, TRAIN_SEATS = 20, TRAIN_MAX_WEIGHT = 24,
+            TRAIN_ORIGIN = 28, TRAIN_DESTINATION = TRAIN_ORIGIN + NAME_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int wagonCapacity;
+    private final int trainCapacity;
+    private final int indexSlots;
+    private final int trainsOffset;
+    private final int indexOffset;
+
+    private FleetStore(FileChannel channel, MappedByteBuffer buffer,
+                       int wagonCapacity, int trainCapacity, int indexSlots) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.wagonCapacity = wagonCapacity;
+        this.trainCapacity = trainCapacity;
+        this.indexSlots = indexSlots;
+        this.trainsOffset = HEADER_SIZE + wagonCapacity * WAGON_RECORD_SIZE;
+        this.indexOffset = trainsOffset + trainCapacity * TRAIN_RECORD_SIZE;
+    }
+
+    /**
+     * Creates a new, empty store in the given file, replacing any existing contents
+     * @param file
+     * @param wagonCapacity     the maximum number of wagons in the store
+     * @param trainCapacity     the maximum number of trains in the store
+     * @return  the store
+     * @throws IOException
+     */
+    public static FleetStore create(Path file, int wagonCapacity, int trainCapacity) throws IOException {
+        int indexSlots = Integer.highestOneBit(Math.max(wagonCapacity, 1)) * 4;
+        long size = HEADER_SIZE + (long) wagonCapacity * WAGON_RECORD_SIZE
+                + (long) trainCapacity * TRAIN_RECORD_SIZE + (long) indexSlots * 4;
+        if (wagonCapacity < 0 || trainCapacity < 0 || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("unsupported store capacity");
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, wagonCapacity);
+        buffer.putInt(12, trainCapacity);
+        buffer.putInt(NUMBER_OF_WAGONS_OFFSET, 0);
+        buffer.putInt(NUMBER_OF_TRAINS_OFFSET, 0);
+        buffer.putInt(24, indexSlots);
+        return new FleetStore(channel, buffer, wagonCapacity, trainCapacity, indexSlots);
+    }
+
+    /**
+     * Opens an existing store, without reading any of its records
+     * @param file
+     * @return  the store
+     * @throws IOException  if the file cannot be opened or is not a fleet store
+     */
+    public static FleetStore open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = null;
+        if (channel.size() >= HEADER_SIZE && channel.size() <= Integer.MAX_VALUE) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        if (buffer == null || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException(file + " is not a fleet store");
+        }
+        return new FleetStore(channel, buffer, buffer.getInt(8), buffer.getInt(12), buffer.getInt(24));
+    }
+
+    /**
+     * Writes all changes to the file
+     */
+    public void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    public int getNumberOfWagons() {
+        return buffer.getInt(NUMBER_OF_WAGONS_OFFSET);
+    }
+
+    public int getNumberOfTrains() {
+        return buffer.getInt(NUMBER_OF_TRAINS_OFFSET);
+    }
+
+    /**
+     * Adds a passenger wagon that is not part of any train
+     * @param wagonId
+     * @param numberOfSeats
+     * @return  the record number of the wagon
+     * @throws IllegalArgumentException if a wagon with the given id already is in the store
+     * @throws IllegalStateException if the store is full
+     */
+    public int addPassengerWagon(int wagonId, int numberOfSeats) {
+        return addWagon(wagonId, PASSENGER, numberOfSeats);
+    }
+
+    /**
+     * Adds a freight wagon that is not part of any train
+     * @param wagonId
+     * @param maxWeight
+     * @return  the record number of the wagon
+     * @throws IllegalArgumentException if a wagon with the given id already is in the store
+     * @throws IllegalStateException if the store is full
+     */
+    public int addFreightWagon(int wagonId, int maxWeight) {
+        return addWagon(wagonId, FREIGHT, maxWeight);
+    }
+
+    private int addWagon(int wagonId, int type, int capacity) {
+        int wagon = getNumberOfWagons();
+        if (wagon == wagonCapacity) {
+            throw new IllegalStateException("the store is full");
+        }
+        int slot = indexSlot(wagonId);
+        if (buffer.getInt(slot) != 0) {
+            throw new IllegalArgumentException("wagon " + wagonId + " already is in the store");
+        }
+        int offset = wagonOffset(wagon);
+        buffer.putInt(offset + WAGON_ID, wagonId);
+        buffer.putInt(offset + WAGON_TYPE, type);
+        buffer.putInt(offset + WAGON_CAPACITY, capacity);
+        buffer.putInt(offset + WAGON_NEXT, NONE);
+        buffer.putInt(offset + WAGON_PREVIOUS, NONE);
+        buffer.putInt(offset + WAGON_TRAIN, NONE);
+        buffer.putInt(slot, wagon + 1);
+        buffer.putInt(NUMBER_OF_WAGONS_OFFSET, wagon + 1);
+        return wagon;
+    }
+
+    /**
+     * Adds a train without wagons
+     * @param engine
+     * @param origin        at most 31 bytes when encoded as UTF-8
+     * @param destination   at most 31 bytes when encoded as UTF-8
+     * @return  the record number of the train
+     * @throws IllegalStateException if the store is full
+     */
+    public int addTrain(Locomotive engine, String origin, String destination) {
+        int train = getNumberOfTrains();
+        if (train == trainCapacity) {
+            throw new IllegalStateException("the store is full");
+        }
+        int offset = trainOffset(train);
+        buffer.putInt(offset + TRAIN_LOC_NUMBER, engine.getLocNumber());
+        buffer.putInt(offset + TRAIN_MAX_WAGONS, engine.getMaxWagons());
+        buffer.putInt(offset + TRAIN_FIRST, NONE);
+        buffer.putInt(offset + TRAIN_LAST, NONE);
+        buffer.putInt(offset + TRAIN_NUMBER_OF_WAGONS, 0);
+        buffer.putInt(offset + TRAIN_SEATS, 0);
+        buffer.putInt(offset + TRAIN_MAX_WEIGHT, 0);
+        putName(offset + TRAIN_ORIGIN, origin);
+        putName(offset + TRAIN_DESTINATION, destination);
+        buffer.putInt(NUMBER_OF_TRAINS_OFFSET, train + 1);
+        return train;
+    }
+
+    /**
+     * @param wagonId
+     * @return  the record number of the wagon with the given id
+     *          (return NONE if no wagon was found with the given wagonId)
+     */
+    public int findWagon(int wagonId) {
+        return buffer.getInt(indexSlot(wagonId)) - 1;
+    }
+
+    public int getWagonId(int wagon) {
+        return buffer.getInt(wagonOffset(wagon) + WAGON_ID);
+    }
+
+    public boolean isPassengerWagon(int wagon) {
+        return buffer.getInt(wagonOffset(wagon) + WAGON_TYPE) == PASSENGER;
+    }
+
+    /**
+     * @return  the number of seats of the wagon (0 for a freight wagon)
+     */
+    public int getNumberOfSeats(int wagon) {
+        return isPassengerWagon(wagon) ? buffer.getInt(wagonOffset(wagon) + WAGON_CAPACITY) : 0;
+    }
+
+    /**
+     * @return  the max weight of the wagon (0 for a passenger wagon)
+     */
+    public int getMaxWeight(int wagon) {
+        return isPassengerWagon(wagon) ? 0 : buffer.getInt(wagonOffset(wagon) + WAGON_CAPACITY);
+    }
+
+    public int getNextWagon(int wagon) {
+        return buffer.getInt(wagonOffset(wagon) + WAGON_NEXT);
+    }
+
+    public int getPreviousWagon(int wagon) {
+        return buffer.getInt(wagonOffset(wagon) + WAGON_PREVIOUS);
+    }
+
+    /**
+     * @return  the record number of the train the wagon is part of (NONE if it is not part of a train)
+     */
+    public int getTrainOfWagon(int wagon) {
+        return buffer.getInt(wagonOffset(wagon) + WAGON_TRAIN);
+    }
+
+    public Locomotive getEngine(int train) {
+        int offset = trainOffset(train);
+        return new Locomotive(buffer.getInt(offset + TRAIN_LOC_NUMBER), buffer.getInt(offset + TRAIN_MAX_WAGONS));
+    }
+
+    public String getOrigin(int train) {
+        return getName(trainOffset(train) + TRAIN_ORIGIN);
+    }
+
+    public String getDestination(int train) {
+        return getName(trainOffset(train) + TRAIN_DESTINATION);
+    }
+
+    public int getFirstWagon(int train) {
+        return buffer.getInt(trainOffset(train) + TRAIN_FIRST);
+    }
+
+    public int getLastWagon(int train) {
+        return buffer.getInt(trainOffset(train) + TRAIN_LAST);
+    }
+
+    public int getNumberOfWagons(int train) {
+        return buffer.getInt(trainOffset(train) + TRAIN_NUMBER_OF_WAGONS);
+    }
+
+    /**
+     * @return  the total number of seats of a passenger train (0 for a freight train)
+     */
+    public int getTotalNumberOfSeats(int train) {
+        return buffer.getInt(trainOffset(train) + TRAIN_SEATS);
+    }
+
+    /**
+     * @return  the total max weight of a freight train (0 for a passenger train)
+     */
+    public int getTotalMaxWeight(int train) {
+        return buffer.getInt(trainOffset(train) + TRAIN_MAX_WEIGHT);
+    }
+
+    /**
+     * Finds the wagon at the given position (starting at 1 for the first wagon of the train)
+     * @return  the record number of the wagon found
+     *          (return NONE if the position is not valid for this train)
+     */
+    public int findWagonAtPosition(int train, int position) {
+        int numberOfWagons = getNumberOfWagons(train);
+        if (position < 1 || position > numberOfWagons) {
+            return NONE;
+        }
+        // walk from the nearest end of the train
+        if (position <= numberOfWagons / 2) {
+            int wagon = getFirstWagon(train);
+            for (int i = 1; i < position; i++) {
+                wagon = getNextWagon(wagon);
+            }
+            return wagon;
+        }
+        int wagon = getLastWagon(train);
+        for (int i = numberOfWagons; i > position; i--) {
+            wagon = getPreviousWagon(wagon);
+        }
+        return wagon;
+    }
+
+    /**
+     * Tries to attach the wagon with the given id, which is not part of any train, to the rear of the train
+     * @return  whether the attachment could be completed successfully
+     */
+    public boolean attachToRear(int train, int wagonId) {
+        return insertAtPosition(train, getNumberOfWagons(train) + 1, wagonId);
+    }
+
+    /**
+     * Tries to insert the wagon with the given id, which is not part of any train, at the front of the train
+     * @return  whether the insertion could be completed successfully
+     */
+    public boolean insertAtFront(int train, int wagonId) {
+        return insertAtPosition(train, 1, wagonId);
+    }
+
+    /**
+     * Tries to insert the wagon with the given id, which is not part of any train,
+     * at the given position in the train
+     * No change is made if the insertion cannot be made
+     * (when the wagon cannot be found or is part of a train, the wagon is not compatible,
+     * the engine has insufficient capacity or the position is not valid in this train)
+     * @return  whether the insertion could be completed successfully
+     */
+    public boolean insertAtPosition(int train, int position, int wagonId) {
+        int wagon = findWagon(wagonId);
+        if (wagon == NONE || getTrainOfWagon(wagon) != NONE
+                || position < 1 || position > getNumberOfWagons(train) + 1
+                || !canAttach(train, wagon, 1)) {
+            return false;
+        }
+        int next = findWagonAtPosition(train, position);
+        int previous = next != NONE ? getPreviousWagon(next) : getLastWagon(train);
+        link(train, previous, wagon, wagon, next);
+        adopt(train, wagon, wagon, 1);
+        return true;
+    }
+
+    /**
+     * Tries to remove the wagon with the given id from the train
+     * and attach it at the rear of the given toTrain
+     * @return  whether the move could be completed successfully
+     */
+    public boolean moveOneWagon(int train, int wagonId, int toTrain) {
+        int wagon = findWagon(wagonId);
+        if (wagon == NONE || getTrainOfWagon(wagon) != train || toTrain == train || !canAttach(toTrain, wagon, 1)) {
+            return false;
+        }
+        unlink(train, wagon, wagon);
+        release(train, wagon, wagon, 1);
+        link(toTrain, getLastWagon(toTrain), wagon, wagon, NONE);
+        adopt(toTrain, wagon, wagon, 1);
+        return true;
+    }
+
+    /**
+     * Tries to split the train and move the complete sequence of wagons from the given position
+     * to the rear of toTrain
+     * @return  whether the move could be completed successfully
+     */
+    public boolean splitAtPosition(int train, int position, int toTrain) {
+        int first = findWagonAtPosition(train, position);
+        int count = getNumberOfWagons(train) - position + 1;
+        if (first == NONE || toTrain == train || !canAttach(toTrain, first, count)) {
+            return false;
+        }
+        int last = getLastWagon(train);
+        unlink(train, first, last);
+        release(train, first, last, count);
+        link(toTrain, getLastWagon(toTrain), first, last, NONE);
+        adopt(toTrain, first, last, count);
+        return true;
+    }
+
+    /**
+     * Reverses the sequence of wagons in the train
+     */
+    public void reverse(int train) {
+        int wagon = getFirstWagon(train);
+        while (wagon != NONE) {
+            int offset = wagonOffset(wagon);
+            int next = buffer.getInt(offset + WAGON_NEXT);
+            buffer.putInt(offset + WAGON_NEXT, buffer.getInt(offset + WAGON_PREVIOUS));
+            buffer.putInt(offset + WAGON_PREVIOUS, next);
+            wagon = next;
+        }
+        int offset = trainOffset(train);
+        int first = buffer.getInt(offset + TRAIN_FIRST);
+        buffer.putInt(offset + TRAIN_FIRST, buffer.getInt(offset + TRAIN_LAST));
+        buffer.putInt(offset + TRAIN_LAST, first);
+    }
+
+    /**
+     * Creates a heap Train holding new Wagon objects for all wagons of the stored train
+     * @return  the train
+     */
+    public Train toTrain(int train) {
+        Train result = new Train(getEngine(train), getOrigin(train), getDestination(train));
+        Wagon first = null, last = null;
+        for (int wagon = getFirstWagon(train); wagon != NONE; wagon = getNextWagon(wagon)) {
+            Wagon copy = isPassengerWagon(wagon)
+                    ? new PassengerWagon(getWagonId(wagon), getNumberOfSeats(wagon))
+                    : new FreightWagon(getWagonId(wagon), getMaxWeight(wagon));
+            if (last == null) {
+                first = copy;
+            } else {
+                copy.attachTo(last);
+            }
+            last = copy;
+        }
+        result.setFirstWagon(first);
+        return result;
+    }
+
+    /**
+     * Checks the engine capacity, the wagon types and that the wagons are not part of the train yet
+     * (wagon ids are unique within the store, so there can be no duplicates otherwise)
+     */
+    private boolean canAttach(int train, int firstWagon, int count) {
+        int offset = trainOffset(train);
+        int numberOfWagons = buffer.getInt(offset + TRAIN_NUMBER_OF_WAGONS);
+        if (numberOfWagons + count > buffer.getInt(offset + TRAIN_MAX_WAGONS)
+                || getTrainOfWagon(firstWagon) == train) {
+            return false;
+        }
+        int first = buffer.getInt(offset + TRAIN_FIRST);
+        return numberOfWagons == 0 || isPassengerWagon(first) == isPassengerWagon(firstWagon);
+    }
+
+    /**
+     * Links the sequence first..last between previous and next in the train
+     */
+    private void link(int train, int previous, int first, int last, int next) {
+        buffer.putInt(wagonOffset(first) + WAGON_PREVIOUS, previous);
+        buffer.putInt(wagonOffset(last) + WAGON_NEXT, next);
+        if (previous != NONE) {
+            buffer.putInt(wagonOffset(previous) + WAGON_NEXT, first);
+        } else {
+            buffer.putInt(trainOffset(train) + TRAIN_FIRST, first);
+        }
+        if (next != NONE) {
+            buffer.putInt(wagonOffset(next) + WAGON_PREVIOUS, last);
+        } else {
+            buffer.putInt(trainOffset(train) + TRAIN_LAST, last);
+        }
+    }
+
+    /**
+     * Unlinks the sequence first..last from the train
+     */
+    private void unlink(int train, int first, int last) {
+        int previous = getPreviousWagon(first);
+        int next = getNextWagon(last);
+        if (previous != NONE) {
+            buffer.putInt(wagonOffset(previous) + WAGON_NEXT, next);
+        } else {
+            buffer.putInt(trainOffset(train) + TRAIN_FIRST, next);
+        }
+        if (next != NONE) {
+            buffer.putInt(wagonOffset(next) + WAGON_PREVIOUS, previous);
+        } else {
+            buffer.putInt(trainOffset(train) + TRAIN_LAST, previous);
+        }
+        buffer.putInt(wagonOffset(first) + WAGON_PREVIOUS, NONE);
+        buffer.putInt(wagonOffset(last) + WAGON_NEXT, NONE);
+    }
+
+    private void adopt(int train, int first, int last, int count) {
+        updateTrain(train, first, last, count, train, 1);
+    }
+
+    private void release(int train, int first, int last, int count) {
+        updateTrain(train, first, last, count, NONE, -1);
+    }
+
+    /**
+     * Updates the wagon count and capacity totals of the train and the train of the wagons first..last
+     */
+    private void updateTrain(int train, int first, int last, int count, int newTrain, int sign) {
+        int seats = 0, maxWeight = 0;
+        for (int wagon = first; ; wagon = getNextWagon(wagon)) {
+            int offset = wagonOffset(wagon);
+            if (buffer.getInt(offset + WAGON_TYPE) == PASSENGER) {
+                seats += buffer.getInt(offset + WAGON_CAPACITY);
+            } else {
+                maxWeight += buffer.getInt(offset + WAGON_CAPACITY);
+            }
+            buffer.putInt(offset + WAGON_TRAIN, newTrain);
+            if (wagon == last) {
+                break;
+            }
+        }
+        int offset = trainOffset(train);
+        buffer.putInt(offset + TRAIN_NUMBER_OF_WAGONS, buffer.getInt(offset + TRAIN_NUMBER_OF_WAGONS) + sign * count);
+        buffer.putInt(offset + TRAIN_SEATS, buffer.getInt(offset + TRAIN_SEATS) + sign * seats);
+        buffer.putInt(offset + TRAIN_MAX_WEIGHT, buffer.getInt(offset + TRAIN_MAX_WEIGHT) + sign * maxWeight);
+    }
+
+    /**
+     * @return  the byte offset of the index slot that holds the wagon with the given id,
+     *          or of the empty slot where it would be stored
+     */
+    private int indexSlot(int wagonId) {
+        int mask = indexSlots - 1;
+        int h = wagonId * 0x9E3779B9;
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (true) {
+            int offset = indexOffset + slot * 4;
+            int wagon = buffer.getInt(offset) - 1;
+            if (wagon == NONE || getWagonId(wagon) == wagonId) {
+                return offset;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int wagonOffset(int wagon) {
+        if (wagon < 0 || wagon >= wagonCapacity) {
+            throw new IndexOutOfBoundsException("no wagon record " + wagon);
+        }
+        return HEADER_SIZE + wagon * WAGON_RECORD_SIZE;
+    }
+
+    private int trainOffset(int train) {
+        if (train < 0 || train >= trainCapacity) {
+            throw new IndexOutOfBoundsException("no train record " + train);
+        }
+        return trainsOffset + train * TRAIN_RECORD_SIZE;
+    }
+
+    private void putName(int offset, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NAME_SIZE) {
+            throw new IllegalArgumentException("name too long: " + name);
+        }
+        buffer.put(offset, (byte) bytes.length);
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset + 1);
+        slice.put(bytes);
+    }
+
+    private String getName(int offset) {
+        byte[] bytes = new byte[buffer.get(offset)];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset + 1);
+        slice.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
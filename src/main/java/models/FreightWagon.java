@@ -10,6 +10,9 @@ public class FreightWagon extends Wagon {
     }
 
     public void setMaxWeight(int maxWeight) {
+        if (train != null) {
+            train.capacityChanged(0, maxWeight - this.maxWeight);
+        }
         this.maxWeight = maxWeight;
     }
 
@@ -19,6 +22,6 @@ public class FreightWagon extends Wagon {
 
     @Override
     public String toString() {
-        return "Wagon-"+ id +"";
+        return "[Wagon-"+ id +"]";
     }
 }
@@ -0,0 +1,84 @@
+package models;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of non-negative long values with log-linear buckets, in the style of HdrHistogram:
+ * values below 64 are counted exactly, larger values in 32 buckets per power of two,
+ * i.e. with a relative error of at most about 3%. Recording is a single atomic increment.
+ */
+final class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int EXACT_VALUES = 2 << SUB_BUCKET_BITS;      // values below this have their own bucket
+    static final int NUMBER_OF_BUCKETS = bucketOf(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+
+    void record(long value) {
+        this.counts.getAndIncrement(bucketOf(Math.max(value, 0)));
+    }
+
+    /**
+     * @return  a copy of the counts per bucket
+     */
+    long[] counts() {
+        long[] copy = new long[NUMBER_OF_BUCKETS];
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            copy[i] = this.counts.get(i);
+        }
+        return copy;
+    }
+
+    void reset() {
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            this.counts.set(i, 0);
+        }
+    }
+
+    static int bucketOf(long value) {
+        if (value < EXACT_VALUES) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        // the top SUB_BUCKET_BITS + 1 bits of the value select the bucket within its power of two
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - (1 << SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @return  the largest value that is counted in the given bucket
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < EXACT_VALUES) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long mantissa = (bucket & ((1 << SUB_BUCKET_BITS) - 1)) + (1 << SUB_BUCKET_BITS);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * @param counts        counts per bucket
+     * @param percentile    from 0 up to and including 100
+     * @return  the value at the given percentile (at most the highest value of its bucket)
+     *          (return 0 if no values were recorded)
+     */
+    static long valueAtPercentile(long[] counts, double percentile) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return highestValueIn(bucket);
+            }
+        }
+        return highestValueIn(counts.length - 1);
+    }
+}
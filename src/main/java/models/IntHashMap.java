@@ -0,0 +1,154 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive int keys to values, used to index wagons by their id
+ * without boxing the keys.
+ * Uses open addressing with linear probing; removal shifts the following entries back
+ * so no tombstones are needed.
+ * @param <V>   the type of the values
+ */
+final class IntHashMap<V> {
+    private static final int INITIAL_CAPACITY = 16;     // must be a power of two
+
+    private int[] keys;
+    private Object[] values;        // values[i] == null marks an empty slot
+    private int size;
+
+    /* Representation invariants:
+        keys.length == values.length and is a power of two
+        size < keys.length * 3 / 4
+        every key is found by probing from its home slot without passing an empty slot
+     */
+
+    IntHashMap() {
+        this.keys = new int[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return  the number of keys in the map
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param key
+     * @return  the value stored for the given key
+     *          (return null if the key is not in the map)
+     */
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param key
+     * @return  whether a value is stored for the given key
+     */
+    boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Stores the given value for the given key, replacing any previous value
+     * @param key
+     * @param value     the value to store (not null)
+     * @return  the previous value stored for the key
+     *          (return null if the key was not in the map)
+     */
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null values cannot be stored");
+        }
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= keys.length * 3 / 4) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the given key from the map
+     * @param key
+     * @return  the value that was stored for the key
+     *          (return null if the key was not in the map)
+     */
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == null) {
+            return null;
+        }
+        V removed = (V) values[slot];
+
+        // shift back any following entries that would no longer be reachable across the gap
+        int gap = slot;
+        for (slot = (gap + 1) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            int home = hash(keys[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        values[gap] = null;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Removes all keys from the map
+     */
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;       // spreads sequential wagon ids over the table
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,111 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * A hash set of primitive int values, used to check wagon ids for duplicates without boxing.
+ * Uses the same open addressing scheme as IntHashMap.
+ */
+final class IntHashSet {
+    private static final int INITIAL_CAPACITY = 16;     // must be a power of two
+
+    private int[] values;
+    private boolean[] used;
+    private int size;
+
+    IntHashSet() {
+        this.values = new int[INITIAL_CAPACITY];
+        this.used = new boolean[INITIAL_CAPACITY];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int value) {
+        int mask = values.length - 1;
+        for (int slot = hash(value) & mask; used[slot]; slot = (slot + 1) & mask) {
+            if (values[slot] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param value
+     * @return  whether the value was added (false if it already was in the set)
+     */
+    boolean add(int value) {
+        int mask = values.length - 1;
+        int slot = hash(value) & mask;
+        while (used[slot]) {
+            if (values[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        values[slot] = value;
+        used[slot] = true;
+        if (++size >= values.length * 3 / 4) {
+            resize(values.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * @param value
+     * @return  whether the value was removed (false if it was not in the set)
+     */
+    boolean remove(int value) {
+        int mask = values.length - 1;
+        int slot = hash(value) & mask;
+        while (used[slot] && values[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        if (!used[slot]) {
+            return false;
+        }
+
+        // shift back any following values that would no longer be reachable across the gap
+        int gap = slot;
+        for (slot = (gap + 1) & mask; used[slot]; slot = (slot + 1) & mask) {
+            int home = hash(values[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        used[gap] = false;
+        size--;
+        return true;
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        values = new int[capacity];
+        used = new boolean[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldUsed[i]) {
+                int slot = hash(oldValues[i]) & mask;
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                values[slot] = oldValues[i];
+                used[slot] = true;
+            }
+        }
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
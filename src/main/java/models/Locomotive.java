@@ -10,12 +10,16 @@ public class Locomotive {
         this.maxWagons = maxWagons;
     }
 
+    public int getLocNumber() {
+        return locNumber;
+    }
+
     public int getMaxWagons() {
         return maxWagons;
     }
 
     @Override
     public String toString() {
-        return String.format("{Locomotive %d", locNumber);
+        return String.format("[Loc-%d]", locNumber);
     }
 }
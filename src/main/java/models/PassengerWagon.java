@@ -12,6 +12,9 @@ public class PassengerWagon extends Wagon{
     }
 
     public void setNumberOfSeats(int numberOfSeats) {
+        if (train != null) {
+            train.capacityChanged(numberOfSeats - this.numberOfSeats, 0);
+        }
         this.numberOfSeats = numberOfSeats;
     }
 
@@ -0,0 +1,422 @@
+package models;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An immutable train for what-if planning.
+ * Every operation returns a new version of the train and leaves the original unchanged.
+ * The versions share all unchanged parts of their wagon sequences, so exploring many alternatives
+ * from one base train costs O(log n) memory per operation instead of a copy of the whole sequence.
+ *
+ * The wagons are kept in a persistent implicit treap with path copying: a balanced binary tree
+ * ordered by position, whose nodes are never modified after construction.
+ * Nodes hold the wagon data (id, type, capacity) rather than Wagon objects, because Wagon objects
+ * carry the links of a single sequence and cannot be shared between versions.
+ * Attach, insert, split (head/tail), concat and remove take O(log n) (plus O(k) for k new wagons),
+ * reverse takes O(1) by flipping a lazy orientation flag.
+ *
+ * Operations that cannot be performed (incompatible wagons, insufficient engine capacity, invalid position)
+ * return this same version. Wagon ids are not checked for duplicates.
+ */
+public final class PersistentTrain implements Iterable<Wagon> {
+    private final String origin;
+    private final String destination;
+    private final Locomotive engine;
+    private final Node root;
+
+    private static final class Node {
+        final int wagonId;
+        final boolean freight;
+        final int capacity;         // number of seats or max weight
+        final Node left, right;
+        final boolean reversed;     // the order of the subtree is reversed: children are swapped and flipped
+        final int size;
+        final int totalNumberOfSeats;
+        final int totalMaxWeight;
+
+        Node(int wagonId, boolean freight, int capacity, Node left, Node right, boolean reversed) {
+            this.wagonId = wagonId;
+            this.freight = freight;
+            this.capacity = capacity;
+            this.left = left;
+            this.right = right;
+            this.reversed = reversed;
+            this.size = 1 + size(left) + size(right);
+            this.totalNumberOfSeats = (freight ? 0 : capacity) + seats(left) + seats(right);
+            this.totalMaxWeight = (freight ? capacity : 0) + maxWeight(left) + maxWeight(right);
+        }
+
+        Node with(Node left, Node right) {
+            return new Node(wagonId, freight, capacity, left, right, false);
+        }
+    }
+
+    private PersistentTrain(Locomotive engine, String origin, String destination, Node root) {
+        this.engine = engine;
+        this.origin = origin;
+        this.destination = destination;
+        this.root = root;
+    }
+
+    /**
+     * @return  a train without wagons
+     */
+    public static PersistentTrain empty(Locomotive engine, String origin, String destination) {
+        return new PersistentTrain(engine, origin, destination, null);
+    }
+
+    /**
+     * @return  an immutable copy of the given train
+     */
+    public static PersistentTrain copyOf(Train train) {
+        return new PersistentTrain(train.getEngine(), train.getOrigin(), train.getDestination(),
+                build(train.getFirstWagon(), train.getNumberOfWagons()));
+    }
+
+    /**
+     * @return  a new mutable train holding new Wagon objects for all wagons of this train
+     */
+    public Train toTrain() {
+        Train train = new Train(engine, origin, destination);
+        Wagon first = null, last = null;
+        for (Wagon wagon : this) {
+            if (last == null) {
+                first = wagon;
+            } else {
+                wagon.attachTo(last);
+            }
+            last = wagon;
+        }
+        train.setFirstWagon(first);
+        return train;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public Locomotive getEngine() {
+        return engine;
+    }
+
+    public PersistentTrain withEngine(Locomotive engine) {
+        return new PersistentTrain(engine, origin, destination, root);
+    }
+
+    public boolean hasWagons() {
+        return root != null;
+    }
+
+    public boolean isPassengerTrain() {
+        return root != null && !dataAt(1).freight;
+    }
+
+    public boolean isFreightTrain() {
+        return root != null && dataAt(1).freight;
+    }
+
+    public int getNumberOfWagons() {
+        return size(root);
+    }
+
+    /**
+     * @return  the total number of seats on a passenger train
+     *          (return 0 for a freight train)
+     */
+    public int getTotalNumberOfSeats() {
+        return isPassengerTrain() ? seats(root) : 0;
+    }
+
+    /**
+     * @return  the total maximum weight of a freight train
+     *          (return 0 for a passenger train)
+     */
+    public int getTotalMaxWeight() {
+        return isFreightTrain() ? maxWeight(root) : 0;
+    }
+
+    /**
+     * @param position  starting at 1 for the first wagon
+     * @return  a detached copy of the wagon at the given position
+     *          (return null if the position is not valid for this train)
+     */
+    public Wagon findWagonAtPosition(int position) {
+        if (position < 1 || position > size(root)) {
+            return null;
+        }
+        return toWagon(dataAt(position));
+    }
+
+    /**
+     * @return  the position of the wagon with the given id
+     *          (return 0 if no wagon was found with the given wagonId)
+     */
+    public int findPositionById(int wagonId) {
+        int position = 0;
+        for (Wagon wagon : this) {
+            position++;
+            if (wagon.getId() == wagonId) {
+                return position;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return  a version with copies of the given sequence of wagons attached at the rear
+     */
+    public PersistentTrain attachToRear(Wagon sequence) {
+        return insertAtPosition(size(root) + 1, sequence);
+    }
+
+    /**
+     * @return  a version with copies of the given sequence of wagons inserted at the front
+     */
+    public PersistentTrain insertAtFront(Wagon sequence) {
+        return insertAtPosition(1, sequence);
+    }
+
+    /**
+     * @return  a version with copies of the given sequence of wagons inserted at the given position
+     */
+    public PersistentTrain insertAtPosition(int position, Wagon sequence) {
+        if (sequence == null) {
+            return this;
+        }
+        int count = sequence.getSequenceLength();
+        if (!canAttach(sequence instanceof FreightWagon, count) || position < 1 || position > size(root) + 1) {
+            return this;
+        }
+        Split split = split(root, position - 1);
+        return withRoot(merge(merge(split.front, build(sequence, count)), split.rear));
+    }
+
+    /**
+     * @return  a version with the wagons of the given train attached at the rear
+     */
+    public PersistentTrain concat(PersistentTrain rear) {
+        if (rear.root == null || !canAttach(rear.isFreightTrain(), rear.getNumberOfWagons())) {
+            return this;
+        }
+        return withRoot(merge(root, rear.root));
+    }
+
+    /**
+     * @return  a version with only the first numberOfWagons wagons
+     */
+    public PersistentTrain head(int numberOfWagons) {
+        if (numberOfWagons < 0 || numberOfWagons > size(root)) {
+            return this;
+        }
+        return withRoot(split(root, numberOfWagons).front);
+    }
+
+    /**
+     * @return  a version with only the wagons from the given position up to the end of the train
+     */
+    public PersistentTrain tail(int position) {
+        if (position < 1 || position > size(root) + 1) {
+            return this;
+        }
+        return withRoot(split(root, position - 1).rear);
+    }
+
+    /**
+     * @return  a version without the wagon at the given position
+     */
+    public PersistentTrain removeAtPosition(int position) {
+        if (position < 1 || position > size(root)) {
+            return this;
+        }
+        Split front = split(root, position - 1);
+        Split rear = split(front.rear, 1);
+        return withRoot(merge(front.front, rear.rear));
+    }
+
+    /**
+     * @return  a version with the wagons in reverse order
+     */
+    public PersistentTrain reverse() {
+        return root == null ? this : withRoot(flipped(root));
+    }
+
+    /**
+     * Iterates over detached copies of the wagons of this version
+     */
+    @Override
+    public Iterator<Wagon> iterator() {
+        return new Iterator<Wagon>() {
+            // in-order traversal; a node is pushed with its effective orientation
+            private final Deque<Node> nodes = new ArrayDeque<>();
+            private final Deque<Boolean> orientations = new ArrayDeque<>();
+
+            {
+                pushLeft(root, false);
+            }
+
+            private void pushLeft(Node node, boolean flipped) {
+                while (node != null) {
+                    flipped ^= node.reversed;
+                    nodes.push(node);
+                    orientations.push(flipped);
+                    node = flipped ? node.right : node.left;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !nodes.isEmpty();
+            }
+
+            @Override
+            public Wagon next() {
+                if (nodes.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node node = nodes.pop();
+                boolean flipped = orientations.pop();
+                pushLeft(flipped ? node.left : node.right, flipped);
+                return toWagon(node);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("from %s to %s", origin, destination);
+    }
+
+    private boolean canAttach(boolean freight, int count) {
+        return size(root) + count <= engine.getMaxWagons() && (root == null || dataAt(1).freight == freight);
+    }
+
+    private PersistentTrain withRoot(Node newRoot) {
+        return new PersistentTrain(engine, origin, destination, newRoot);
+    }
+
+    private Node dataAt(int position) {
+        Node node = root;
+        boolean flipped = false;
+        while (true) {
+            flipped ^= node.reversed;
+            Node left = flipped ? node.right : node.left;
+            int leftSize = size(left);
+            if (position <= leftSize) {
+                node = left;
+            } else if (position == leftSize + 1) {
+                return node;
+            } else {
+                position -= leftSize + 1;
+                node = flipped ? node.left : node.right;
+            }
+        }
+    }
+
+    private static Wagon toWagon(Node node) {
+        return node.freight ? new FreightWagon(node.wagonId, node.capacity) : new PassengerWagon(node.wagonId, node.capacity);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int seats(Node node) {
+        return node == null ? 0 : node.totalNumberOfSeats;
+    }
+
+    private static int maxWeight(Node node) {
+        return node == null ? 0 : node.totalMaxWeight;
+    }
+
+    private static Node flipped(Node node) {
+        return node == null ? null
+                : new Node(node.wagonId, node.freight, node.capacity, node.left, node.right, !node.reversed);
+    }
+
+    /**
+     * @return  an equivalent node whose children are in their effective order
+     */
+    private static Node normalized(Node node) {
+        return node.reversed ? node.with(flipped(node.right), flipped(node.left)) : node;
+    }
+
+    /**
+     * Concatenates two trees, choosing the root with a probability proportional to the subtree sizes,
+     * which keeps the result balanced without priorities (shared nodes make priorities unreliable)
+     */
+    private static Node merge(Node front, Node rear) {
+        if (front == null) {
+            return rear;
+        }
+        if (rear == null) {
+            return front;
+        }
+        if (ThreadLocalRandom.current().nextInt(front.size + rear.size) < front.size) {
+            front = normalized(front);
+            return front.with(front.left, merge(front.right, rear));
+        }
+        rear = normalized(rear);
+        return rear.with(merge(front, rear.left), rear.right);
+    }
+
+    private static final class Split {
+        Node front, rear;
+    }
+
+    /**
+     * Splits a tree after its first count wagons
+     */
+    private static Split split(Node node, int count) {
+        Split result = new Split();
+        split(node, count, result);
+        return result;
+    }
+
+    private static void split(Node node, int count, Split result) {
+        if (node == null) {
+            result.front = null;
+            result.rear = null;
+            return;
+        }
+        node = normalized(node);
+        if (size(node.left) >= count) {
+            split(node.left, count, result);
+            result.rear = node.with(result.rear, node.right);
+        } else {
+            split(node.right, count - size(node.left) - 1, result);
+            result.front = node.with(node.left, result.front);
+        }
+    }
+
+    /**
+     * Builds a perfectly balanced tree from the first count wagons of a linked sequence
+     */
+    private static Node build(Wagon sequence, int count) {
+        Wagon[] wagons = new Wagon[count];
+        Wagon wagon = sequence;
+        for (int i = 0; i < count; i++, wagon = wagon.getNextWagon()) {
+            wagons[i] = wagon;
+        }
+        return build(wagons, 0, count);
+    }
+
+    private static Node build(Wagon[] wagons, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        Wagon wagon = wagons[middle];
+        boolean freight = wagon instanceof FreightWagon;
+        int capacity = freight ? ((FreightWagon) wagon).getMaxWeight() : ((PassengerWagon) wagon).getNumberOfSeats();
+        return new Node(wagon.getId(), freight, capacity,
+                build(wagons, from, middle), build(wagons, middle + 1, to), false);
+    }
+}
@@ -0,0 +1,20 @@
+package models;
+
+/**
+ * The reasons why a train can reject a wagon operation
+ */
+public enum Rejection {
+    /** the engine has insufficient capacity to pull the additional wagons */
+    CAPACITY_EXCEEDED,
+    /** the type of the wagons does not match the type of the train (Passenger or Freight) */
+    TYPE_MISMATCH,
+    /** a wagon with the same id is already part of the train (or of another train in its fleet),
+        or the sequence contains the same id twice */
+    DUPLICATE_ID,
+    /** the position is not valid for the train */
+    INVALID_POSITION,
+    /** no wagon was found with the given wagonId */
+    WAGON_NOT_FOUND,
+    /** no sequence of wagons was given */
+    NO_WAGONS
+}
@@ -0,0 +1,136 @@
+package models;
+
+/**
+ * A sequence of shunting steps that rearranges the wagons of one train into a target order,
+ * as computed by ShuntingPlanner.
+ *
+ * Wagons that must change places are moved one by one to the rear of a siding with moveOneWagon,
+ * and are inserted back with insertAtPosition in blocks of wagons that end up next to each other.
+ * The plan refers to wagons by id and to positions in the train, so it can be replayed
+ * on the train it was computed for (or on any train with the same wagon ids in the same order).
+ */
+public final class ShuntingPlan {
+
+    /**
+     * The kinds of steps in a plan
+     */
+    public enum Action {
+        /** reverse the train */
+        REVERSE,
+        /** move the wagon to the rear of the siding */
+        MOVE_TO_SIDING,
+        /** insert the wagon, together with all wagons behind it on the siding, at the position in the train */
+        INSERT_FROM_SIDING
+    }
+
+    private static final Action[] ACTIONS = Action.values();
+
+    // step i is ACTIONS[actions[i]] of the wagon wagonIds[i] (at positions[i])
+    private final byte[] actions;
+    private final int[] wagonIds;
+    private final int[] positions;
+    private final int size;
+    private final int sidingCapacity;
+
+    ShuntingPlan(byte[] actions, int[] wagonIds, int[] positions, int size, int sidingCapacity) {
+        this.actions = actions;
+        this.wagonIds = wagonIds;
+        this.positions = positions;
+        this.size = size;
+        this.sidingCapacity = sidingCapacity;
+    }
+
+    /**
+     * @return  the number of steps of the plan
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return  the number of wagons that the engine of the siding must be able to pull
+     */
+    public int getSidingCapacity() {
+        return sidingCapacity;
+    }
+
+    public Action getAction(int step) {
+        checkStep(step);
+        return ACTIONS[actions[step]];
+    }
+
+    /**
+     * @return  the id of the wagon that is moved or inserted in the given step
+     *          (return 0 for a reversal)
+     */
+    public int getWagonId(int step) {
+        checkStep(step);
+        return wagonIds[step];
+    }
+
+    /**
+     * @return  the position in the train at which the given step inserts wagons
+     *          (return 0 for other steps)
+     */
+    public int getPosition(int step) {
+        checkStep(step);
+        return positions[step];
+    }
+
+    /**
+     * Replays the plan on the given train, using the given siding as temporary storage
+     * The siding must hold no wagons of another type, and its engine must be able to pull
+     * getSidingCapacity() additional wagons.
+     * @param train
+     * @param siding
+     * @return  whether all steps could be completed
+     *          (return false at the first step that cannot be completed, leaving the trains as they are then)
+     */
+    public boolean applyTo(Train train, Train siding) {
+        for (int step = 0; step < size; step++) {
+            switch (ACTIONS[actions[step]]) {
+                case REVERSE:
+                    train.reverse();
+                    break;
+                case MOVE_TO_SIDING:
+                    if (!train.moveOneWagon(wagonIds[step], siding)) {
+                        return false;
+                    }
+                    break;
+                case INSERT_FROM_SIDING:
+                    Wagon wagon = siding.findWagonById(wagonIds[step]);
+                    if (wagon == null || !train.insertAtPosition(positions[step], wagon)) {
+                        return false;
+                    }
+                    break;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int step = 0; step < size; step++) {
+            switch (ACTIONS[actions[step]]) {
+                case REVERSE:
+                    text.append("reverse\n");
+                    break;
+                case MOVE_TO_SIDING:
+                    text.append("move ").append(wagonIds[step]).append(" to siding\n");
+                    break;
+                case INSERT_FROM_SIDING:
+                    text.append("insert ").append(wagonIds[step]).append(" from siding at ")
+                            .append(positions[step]).append('\n');
+                    break;
+            }
+        }
+        return text.toString();
+    }
+
+    private void checkStep(int step) {
+        if (step < 0 || step >= size) {
+            throw new IndexOutOfBoundsException("step " + step + " of " + size);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * Computes a short plan of shunting steps that puts the wagons of a train in a target order.
+ *
+ * The wagons that form a longest increasing subsequence of target positions, in the current order or,
+ * if that takes fewer steps, in the reversed order, keep their places relative to each other.
+ * All other wagons are moved to a siding and inserted back, where every run of them that is adjacent
+ * in the target order is inserted in a single step. Keeping a longest increasing subsequence minimises
+ * the number of wagons that have to be moved.
+ * Planning takes O(n log n) for a train of n wagons, and the plan takes at most 2(n - k) + 1 steps
+ * where k is the length of the longest increasing subsequence.
+ */
+public class ShuntingPlanner {
+
+    /**
+     * @param train
+     * @param targetOrder   the ids of all wagons of the train, in the order they should have
+     * @return  a plan that puts the wagons of the train in the target order
+     * @throws IllegalArgumentException if the target order is not an order of the wagons of the train
+     */
+    public ShuntingPlan plan(Train train, int[] targetOrder) {
+        int n = train.getNumberOfWagons();
+        if (targetOrder.length != n) {
+            throw new IllegalArgumentException("target order has " + targetOrder.length
+                    + " wagons, the train has " + n);
+        }
+
+        // the target position of every wagon, in current order, by binary search among the sorted target ids
+        long[] targetKeys = new long[n];
+        for (int t = 0; t < n; t++) {
+            targetKeys[t] = (long) targetOrder[t] << 32 | t;
+        }
+        Arrays.sort(targetKeys);
+        for (int t = 1; t < n; t++) {
+            if (targetKeys[t] >> 32 == targetKeys[t - 1] >> 32) {
+                throw new IllegalArgumentException("wagon " + (targetKeys[t] >> 32) + " occurs twice in target order");
+            }
+        }
+        int[] targets = new int[n];
+        int i = 0;
+        for (Wagon wagon : train) {
+            int slot = Arrays.binarySearch(targetKeys, (long) wagon.getId() << 32);
+            slot = slot >= 0 ? slot : -slot - 1;
+            if (slot == n || targetKeys[slot] >> 32 != wagon.getId()) {
+                throw new IllegalArgumentException("wagon " + wagon.getId() + " is missing in target order");
+            }
+            targets[i++] = (int) targetKeys[slot];
+        }
+
+        boolean[] kept = keptTargets(targets, false);
+        boolean[] keptReversed = keptTargets(targets, true);
+        boolean reverse = 1 + numberOfSteps(keptReversed) < numberOfSteps(kept);
+        return buildPlan(targetOrder, reverse ? keptReversed : kept, reverse);
+    }
+
+    /**
+     * @param targets   the target position of every wagon, in current order
+     * @param reversed  whether the wagons are taken in reversed order
+     * @return  for every target position, whether its wagon is part of a longest increasing subsequence
+     */
+    private static boolean[] keptTargets(int[] targets, boolean reversed) {
+        int n = targets.length;
+        int[] tails = new int[n];           // tails[k]: the smallest target ending an increasing subsequence of k + 1
+        int[] predecessors = new int[n];    // by target: the previous target in its subsequence (-1 if none)
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            int target = targets[reversed ? n - 1 - i : i];
+            int low = 0, high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (tails[middle] < target) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            predecessors[target] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = target;
+            if (low == length) {
+                length++;
+            }
+        }
+        boolean[] kept = new boolean[n];
+        for (int target = length > 0 ? tails[length - 1] : -1; target >= 0; target = predecessors[target]) {
+            kept[target] = true;
+        }
+        return kept;
+    }
+
+    /**
+     * @return  the number of moves and insertions needed when the given target positions are kept
+     */
+    private static int numberOfSteps(boolean[] kept) {
+        int steps = 0;
+        for (int t = 0; t < kept.length; t++) {
+            if (!kept[t]) {
+                steps += t == 0 || kept[t - 1] ? 2 : 1;
+            }
+        }
+        return steps;
+    }
+
+    private static ShuntingPlan buildPlan(int[] targetOrder, boolean[] kept, boolean reverse) {
+        int n = targetOrder.length;
+        int steps = (reverse ? 1 : 0) + numberOfSteps(kept);
+        byte[] actions = new byte[steps];
+        int[] wagonIds = new int[steps];
+        int[] positions = new int[steps];
+        int step = 0;
+        if (reverse) {
+            actions[step++] = (byte) ShuntingPlan.Action.REVERSE.ordinal();
+        }
+
+        // move the runs of wagons to the siding from the last run to the first, each run in target order,
+        // so the siding ends with the first run
+        int moved = 0;
+        for (int end = n; end > 0; ) {
+            if (kept[end - 1]) {
+                end--;
+                continue;
+            }
+            int start = end - 1;
+            while (start > 0 && !kept[start - 1]) {
+                start--;
+            }
+            for (int t = start; t < end; t++) {
+                actions[step] = (byte) ShuntingPlan.Action.MOVE_TO_SIDING.ordinal();
+                wagonIds[step++] = targetOrder[t];
+                moved++;
+            }
+            end = start;
+        }
+
+        // insert the runs back from the first to the last, each at its target position,
+        // when all wagons in front of it are in place already
+        for (int t = 0; t < n; t++) {
+            if (!kept[t] && (t == 0 || kept[t - 1])) {
+                actions[step] = (byte) ShuntingPlan.Action.INSERT_FROM_SIDING.ordinal();
+                wagonIds[step] = targetOrder[t];
+                positions[step++] = t + 1;
+            }
+        }
+        return new ShuntingPlan(actions, wagonIds, positions, steps, moved);
+    }
+}
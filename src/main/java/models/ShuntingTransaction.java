@@ -0,0 +1,204 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * Applies a batch of shunting operations across any number of trains all-or-nothing.
+ *
+ * Every operation is applied to the trains immediately and its inverse is recorded in an undo log.
+ * As soon as one operation cannot be completed, the transaction is failed: later operations are
+ * ignored and commit() rolls back all operations that were applied, in reverse order, and returns false.
+ * rollback() undoes all operations explicitly, e.g. after evaluating a candidate plan.
+ *
+ * The undo log consists of preallocated arrays, so a transaction can be reused for many plans
+ * without allocating; after commit() or rollback() it is empty and ready for the next plan.
+ * Wagon sequences that are inserted must not be part of any train, so undoing an insertion
+ * can turn them back into a separate sequence.
+ * The trains must not be changed outside the transaction until it completes: an operation that can then
+ * no longer be undone makes the rollback throw an IllegalStateException, with the trains partially restored.
+ */
+public class ShuntingTransaction {
+    private static final int INSERT = 1, MOVE = 2, SPLIT = 3, REVERSE = 4;
+    private static final int INITIAL_CAPACITY = 16;
+
+    // undo log: entry i is the operation kinds[i] applied to trains[2i] (and trains[2i+1]) with arguments[2i], arguments[2i+1]
+    private int[] kinds = new int[INITIAL_CAPACITY];
+    private Train[] trains = new Train[2 * INITIAL_CAPACITY];
+    private int[] arguments = new int[2 * INITIAL_CAPACITY];
+    private int size;
+    private boolean failed;
+
+    /**
+     * @return  the number of operations applied in this transaction so far
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return  whether an operation of this transaction could not be completed
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * @see Train#attachToRear(Wagon)
+     */
+    public boolean attachToRear(Train train, Wagon sequence) {
+        return insertAtPosition(train, train.getNumberOfWagons() + 1, sequence);
+    }
+
+    /**
+     * @see Train#insertAtFront(Wagon)
+     */
+    public boolean insertAtFront(Train train, Wagon sequence) {
+        return insertAtPosition(train, 1, sequence);
+    }
+
+    /**
+     * @see Train#insertAtPosition(int, Wagon)
+     */
+    public boolean insertAtPosition(Train train, int position, Wagon sequence) {
+        if (failed || sequence == null || sequence.train != null) {
+            return fail();
+        }
+        int numberOfWagons = train.getNumberOfWagons();
+        if (!train.insertAtPosition(position, sequence)) {
+            return fail();
+        }
+        log(INSERT, train, null, position, train.getNumberOfWagons() - numberOfWagons);
+        return true;
+    }
+
+    /**
+     * @see Train#moveOneWagon(int, Train)
+     */
+    public boolean moveOneWagon(Train from, int wagonId, Train to) {
+        int position = failed ? 0 : from.findPositionById(wagonId);
+        if (position == 0 || !from.moveOneWagon(wagonId, to)) {
+            return fail();
+        }
+        log(MOVE, from, to, wagonId, position);
+        return true;
+    }
+
+    /**
+     * @see Train#splitAtPosition(int, Train)
+     */
+    public boolean splitAtPosition(Train from, int position, Train to) {
+        if (failed) {
+            return fail();
+        }
+        int numberOfWagons = to.getNumberOfWagons();
+        if (!from.splitAtPosition(position, to)) {
+            return fail();
+        }
+        log(SPLIT, from, to, position, numberOfWagons);
+        return true;
+    }
+
+    /**
+     * @see Train#reverse()
+     */
+    public boolean reverse(Train train) {
+        if (failed) {
+            return fail();
+        }
+        train.reverse();
+        log(REVERSE, train, null, 0, 0);
+        return true;
+    }
+
+    /**
+     * Completes the transaction
+     * @return  whether all operations were applied
+     *          (if not, they have all been rolled back)
+     * @throws IllegalStateException    if the rollback of a failed transaction cannot undo an operation
+     */
+    public boolean commit() {
+        if (failed) {
+            rollback();
+            return false;
+        }
+        clear();
+        return true;
+    }
+
+    /**
+     * Undoes all operations of this transaction, in reverse order
+     * @throws IllegalStateException    if an operation cannot be undone because the trains were changed
+     *                                  outside the transaction; the operations after it have been undone,
+     *                                  the others have not, and the transaction is empty
+     */
+    public void rollback() {
+        for (int i = size - 1; i >= 0; i--) {
+            Train train = trains[2 * i];
+            Train other = trains[2 * i + 1];
+            int first = arguments[2 * i];
+            int second = arguments[2 * i + 1];
+            switch (kinds[i]) {
+                case INSERT:
+                    if (first + second - 1 > train.getNumberOfWagons()) {
+                        throw undoFailed(i, "the inserted wagons are no longer in the train");
+                    }
+                    train.removeSequence(first, second);
+                    break;
+                case MOVE:
+                    // the wagon is the last wagon of other; put it back at its original position
+                    Wagon wagon = other.findWagonById(first);
+                    if (wagon == null || !train.insertAtPosition(second, wagon)) {
+                        throw undoFailed(i, "wagon " + first + " cannot be moved back");
+                    }
+                    break;
+                case SPLIT:
+                    // the split off wagons follow the original second wagons of other
+                    if (!other.splitAtPosition(second + 1, train)) {
+                        throw undoFailed(i, "the split off wagons cannot be moved back");
+                    }
+                    break;
+                case REVERSE:
+                    train.reverse();
+                    break;
+                default:
+                    throw new IllegalStateException("corrupt undo log");
+            }
+        }
+        clear();
+    }
+
+    /**
+     * Empties the undo log after a failed undo
+     * @return  the exception to throw for operation i
+     */
+    private IllegalStateException undoFailed(int i, String reason) {
+        clear();
+        return new IllegalStateException("cannot undo operation " + (i + 1) + ": " + reason
+                + "; the trains were changed outside the transaction and are partially rolled back");
+    }
+
+    private boolean fail() {
+        failed = true;
+        return false;
+    }
+
+    private void log(int kind, Train train, Train other, int first, int second) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, 2 * size);
+            trains = Arrays.copyOf(trains, 4 * size);
+            arguments = Arrays.copyOf(arguments, 4 * size);
+        }
+        kinds[size] = kind;
+        trains[2 * size] = train;
+        trains[2 * size + 1] = other;
+        arguments[2 * size] = first;
+        arguments[2 * size + 1] = second;
+        size++;
+    }
+
+    private void clear() {
+        Arrays.fill(trains, 0, 2 * size, null);
+        size = 0;
+        failed = false;
+    }
+}
@@ -1,17 +1,57 @@
 package models;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import models.TrainMetrics.Operation;
 
 public class Train  implements Iterable<Wagon>{
+    private static final int TO_STRING_MAX_WAGONS = 100;    // wagons rendered by toString() before it truncates
+
     private String origin;
     private String destination;
     private Locomotive engine;
     private Wagon firstWagon;
+    private Wagon lastWagon;            // the last wagon of the sequence starting at firstWagon
+    private int numberOfWagons;         // number of wagons in the sequence starting at firstWagon
+    private int totalNumberOfSeats;     // sum of the seats of all passenger wagons in the sequence
+    private int totalMaxWeight;         // sum of the max weights of all freight wagons in the sequence
+    private final IntHashMap<Wagon> wagonsById = new IntHashMap<>();    // all wagons in the sequence by id
+    private final WagonTree positions = new WagonTree();                // all wagons in the sequence by position
+    private final IntHashSet sequenceIds = new IntHashSet();            // scratch: the ids of a checked free sequence
+    private boolean lazyReversal;       // whether reverse() only flips the orientation of the train
+    private boolean reversed;           // the wagons of the train are in the reverse order of the linked sequence
+    private int modCount;               // the number of structural changes, to let iterators fail fast
+    private boolean snapshotIteration;  // whether iterator() iterates over a copy of the wagons
+    private Wagon[] snapshot;           // the wagons in order at modification snapshotModCount, shared by snapshot iterators
+    private int snapshotModCount;
+    private Subscription[] subscriptions;   // the registered listeners, null if there are none
+    Fleet fleet;                        // the fleet this train is registered in, maintained by Fleet
 
     /* Representation invariants:
         firstWagon == null || firstWagon.previousWagon == null
+        lastWagon == (firstWagon == null ? null : firstWagon.getLastWagonAttached())
         engine != null
+        numberOfWagons == (firstWagon == null ? 0 : firstWagon.getSequenceLength())
+        totalNumberOfSeats and totalMaxWeight match the wagons in the sequence
+        every wagon in the sequence has wagon.train == this
+        wagonsById contains exactly the wagons in the sequence
+        positions holds exactly the wagons in the sequence, in the same order
+        reversed implies lazyReversal
+        the train consists of the wagons of the sequence in order if !reversed, and in reverse order if reversed
      */
 
     public Train(Locomotive engine, String origin, String destination) {
@@ -65,39 +105,82 @@ public class Train  implements Iterable<Wagon>{
         return engine;
     }
 
+    /**
+     * @return  the first wagon of the train
+     *          (in lazy reversal mode, the wagons are first relinked in the order of the train if needed)
+     */
     public Wagon getFirstWagon() {
+        normalize();
         return this.firstWagon;
     }
 
+    /**
+     * @return  whether reverse() only flips the orientation of the train
+     */
+    public boolean isLazyReversal() {
+        return this.lazyReversal;
+    }
+
+    /**
+     * Switches lazy reversal mode on or off.
+     * In lazy reversal mode reverse() takes constant time: the train only flips its orientation
+     * and iteration, positional lookup, getLastWagonAttached() and the attach and insert operations honour it.
+     * The links between the wagons are fixed up only when needed: by getFirstWagon(), splitAtPosition(),
+     * and when a sequence is taken out of the train by another train, or when the mode is switched off.
+     * Until then, getNextWagon() and getPreviousWagon() of the wagons of a reversed train follow the old order.
+     * @param lazyReversal
+     */
+    public void setLazyReversal(boolean lazyReversal) {
+        if (!lazyReversal) {
+            normalize();
+        }
+        this.lazyReversal = lazyReversal;
+    }
+
     /**
      * Replaces the current sequence of wagons (if any) in the train
      * by the given new sequence of wagons (if any)
      * (sustaining all representation invariants)
      * @param newSequence   the new sequence of wagons (can be null)
+     * @throws IllegalArgumentException if the new sequence repeats a wagon id,
+     *          or uses the id of a wagon in another train of the fleet (no change is made then)
      */
     public void setFirstWagon(Wagon newSequence) {
-        this.firstWagon = newSequence;
+        if (newSequence != null && !hasUniqueIds(newSequence)) {
+            throw new IllegalArgumentException("the sequence repeats a wagon id or uses one of another train");
+        }
+        int removed = this.numberOfWagons;
+        if (this.firstWagon != null) {
+            release(this.firstWagon);
+        }
+        this.positions.clear();
+        this.firstWagon = null;
+        this.lastWagon = null;
+        this.reversed = false;
+        if (removed > 0) {
+            changed(TrainEvent.Type.REMOVED, 1, removed, null);
+        }
+        if (newSequence != null) {
+            Train from = newSequence.train;
+            detachFromOwner(newSequence);
+            this.lastWagon = adopt(newSequence, 1);
+            this.firstWagon = newSequence;
+            changed(TrainEvent.Type.ADDED, 1, this.numberOfWagons, from);
+        }
     }
 
     /**
      * @return  the number of Wagons connected to the train
      */
     public int getNumberOfWagons() {
-        int lengt;
-        if(hasWagons()== false){
-            lengt = 0;
-        }else {lengt = this.firstWagon.getSequenceLength();}
-
-     return lengt;
+        return this.numberOfWagons;
     }
 
     /**
      * @return  the last wagon attached to the train
      */
     public Wagon getLastWagonAttached() {
-        if(hasWagons()){
-       return this.firstWagon.getLastWagonAttached();}
-        else return null;
+        return this.reversed ? this.firstWagon : this.lastWagon;
     }
 
     /**
@@ -105,22 +188,10 @@ public class Train  implements Iterable<Wagon>{
      *          (return 0 for a freight train)
      */
     public int getTotalNumberOfSeats() {
-
-        int availableSeats = 0;
-        Wagon wagon = this.firstWagon;
-        if(firstWagon instanceof PassengerWagon){
-
-            while (wagon != null) {
-                availableSeats += ((PassengerWagon) wagon).getNumberOfSeats();
-                wagon = wagon.getNextWagon();
-            }
-            return availableSeats ;
-
+        if (isPassengerTrain()) {
+            return this.totalNumberOfSeats;
         }
-
-        else{
-            return 0;}
-
+        return 0;
     }
 
     /**
@@ -130,17 +201,10 @@ public class Train  implements Iterable<Wagon>{
      *
      */
     public int getTotalMaxWeight() {
-        int availableWeight= 0;
-        Wagon wagon = this.firstWagon;
-        if(firstWagon instanceof FreightWagon){
-            while (wagon.hasNextWagon()){
-                availableWeight +=((FreightWagon) wagon).getMaxWeight();
-                wagon = wagon.getNextWagon();
-            }
-            return availableWeight + ((FreightWagon)wagon).getMaxWeight();
-        }else {
-            return 0;}
-
+        if (isFreightTrain()) {
+            return this.totalMaxWeight;
+        }
+        return 0;
     }
 
      /**
@@ -150,23 +214,7 @@ public class Train  implements Iterable<Wagon>{
      *          (return null if the position is not valid for this train)
      */
     public Wagon findWagonAtPosition(int position) {
-        Wagon currentWagon = firstWagon;
-        int numberOfWagonsFound = 1;
-
-        if(firstWagon == null) return null;
-
-        for (int i = 1; i < position; i++) {
-            if (currentWagon.hasNextWagon()) {
-                currentWagon = currentWagon.getNextWagon();
-                numberOfWagonsFound++;
-            }
-        }
-
-        if (numberOfWagonsFound == position) {
-            return currentWagon;
-        } else {
-            return null;
-        }
+        return this.positions.get(this.reversed ? this.numberOfWagons - position + 1 : position);
     }
 
     /**
@@ -176,16 +224,22 @@ public class Train  implements Iterable<Wagon>{
      *          (return null if no wagon was found with the given wagonId)
      */
     public Wagon findWagonById(int wagonId) {
-        Wagon wagon = firstWagon;
-        if(wagon == null){return null;}
-
-       while(wagon !=null){
-           if (wagon.getId() == wagonId) return wagon;
-           else wagon = wagon.getNextWagon();
-       }
-
+        return this.wagonsById.get(wagonId);
+    }
 
-        return null;
+    /**
+     * Finds the position of the wagon with a given wagonId (starting at 1 for the first wagon of the train)
+     * @param wagonId
+     * @return  the position of the wagon found
+     *          (return 0 if no wagon was found with the given wagonId)
+     */
+    public int findPositionById(int wagonId) {
+        Wagon wagon = this.wagonsById.get(wagonId);
+        if (wagon == null) {
+            return 0;
+        }
+        int position = this.positions.positionOf(wagon);
+        return this.reversed ? this.numberOfWagons - position + 1 : position;
     }
 
     /**
@@ -196,10 +250,137 @@ public class Train  implements Iterable<Wagon>{
      * @return
      */
     public boolean canAttach(Wagon sequence) {
+        return checkAttach(sequence) == null;
+    }
 
-     if((getNumberOfWagons()+sequence.getSequenceLength()) <= getEngine().getMaxWagons()&& sequence instanceof PassengerWagon == firstWagon instanceof PassengerWagon && findWagonAtPosition(sequence.getId())==null||getNumberOfWagons()+sequence.getSequenceLength() <= getEngine().getMaxWagons()&& sequence instanceof FreightWagon == firstWagon instanceof FreightWagon && findWagonAtPosition(sequence.getId())==null){
-     return true; }
-        return false;
+    /**
+     * Determines if the given sequence of wagons can be attached to the train, as canAttach
+     * @param sequence
+     * @return  the reason why the given sequence of wagons cannot be attached to the train
+     *          (return null if it can be attached)
+     */
+    public Rejection checkAttach(Wagon sequence) {
+        if (!TrainMetrics.isEnabled()) {
+            return attachability(sequence);
+        }
+        long start = System.nanoTime();
+        return recorded(Operation.CAN_ATTACH, start, attachability(sequence), this);
+    }
+
+    /**
+     * Determines for each of the given candidate sequences if it can be attached to the train on its own
+     * (every sequence is checked against the current wagons of the train, not against the other candidates)
+     * @param sequences the candidate sequences
+     * @param results   receives the reason why each sequence cannot be attached
+     *                  (null if it can be attached), at the same index as the sequence
+     * @return  the number of sequences that can be attached
+     */
+    public int checkAttach(Wagon[] sequences, Rejection[] results) {
+        if (results.length < sequences.length) {
+            throw new IllegalArgumentException("results has fewer elements than sequences");
+        }
+        boolean enabled = TrainMetrics.isEnabled();
+        int attachable = 0;
+        for (int i = 0; i < sequences.length; i++) {
+            long start = enabled ? System.nanoTime() : 0;
+            Rejection rejection = attachability(sequences[i]);
+            if (enabled) {
+                recorded(Operation.CAN_ATTACH, start, rejection, this);
+            }
+            results[i] = rejection;
+            if (rejection == null) {
+                attachable++;
+            }
+        }
+        return attachable;
+    }
+
+    /**
+     * Checks the complete sequence, in the order of the train that holds it (if any)
+     * This is a query: a lazily reversed train that holds the sequence is not relinked
+     */
+    private Rejection attachability(Wagon sequence) {
+        if (sequence == null) {
+            return Rejection.NO_WAGONS;
+        }
+        Train owner = sequence.train;
+        if (owner != null && owner != this && owner.reversed) {
+            // the sequence is taken out of its train in the order of that train, which runs against the links
+            return attachability(sequence, owner.positions.positionOf(sequence), true);
+        }
+        return attachability(sequence, sequence.getSequenceLength(), false);
+    }
+
+    /**
+     * Determines if the given sequence can replace the wagons of the train:
+     * the wagons that will be taken (see attachability) must have distinct ids
+     * that no wagon of another train of the fleet uses
+     * @param sequence
+     * @return  whether the ids of the sequence are unique
+     */
+    private boolean hasUniqueIds(Wagon sequence) {
+        Train owner = sequence.train;
+        if (owner == this) {
+            return true;
+        }
+        boolean backwards = owner != null && owner.reversed;
+        int numberOfWagons = backwards ? owner.positions.positionOf(sequence) : sequence.getSequenceLength();
+        // a sequence that is taken out of a train has unique ids already
+        boolean free = owner == null && numberOfWagons > 1;
+        try {
+            Wagon wagon = sequence;
+            for (int i = 0; i < numberOfWagons; i++) {
+                if (free && !this.sequenceIds.add(wagon.getId())) {
+                    return false;
+                }
+                // the wagons of this train are released, so their ids may come back
+                Wagon registered = this.fleet != null ? this.fleet.findWagonById(wagon.getId()) : null;
+                if (registered != null && registered != wagon && registered.train != this) {
+                    return false;
+                }
+                wagon = backwards ? wagon.getPreviousWagon() : wagon.getNextWagon();
+            }
+            return true;
+        } finally {
+            if (free) {
+                this.sequenceIds.clear();
+            }
+        }
+    }
+
+    /**
+     * Determines if the first numberOfWagons wagons of the given sequence can be attached to the train
+     * @param sequence
+     * @param numberOfWagons    the number of wagons of the sequence that will be attached
+     * @param backwards         whether the wagons of the sequence follow each other through getPreviousWagon()
+     * @return  the reason why the wagons cannot be attached
+     *          (return null if they can be attached)
+     */
+    private Rejection attachability(Wagon sequence, int numberOfWagons, boolean backwards) {
+        if (this.numberOfWagons + numberOfWagons > this.engine.getMaxWagons()) {
+            return Rejection.CAPACITY_EXCEEDED;
+        }
+        if (hasWagons() && isPassengerTrain() != sequence instanceof PassengerWagon) {
+            return Rejection.TYPE_MISMATCH;
+        }
+        // a sequence that is taken out of a train has unique ids already
+        boolean free = numberOfWagons > 1 && sequence.train == null;
+        try {
+            Wagon wagon = sequence;
+            for (int i = 0; i < numberOfWagons; i++) {
+                if (wagon.train == this || this.wagonsById.containsKey(wagon.getId())
+                        || this.fleet != null && this.fleet.hasOtherWagonWithId(wagon)
+                        || free && !this.sequenceIds.add(wagon.getId())) {
+                    return Rejection.DUPLICATE_ID;
+                }
+                wagon = backwards ? wagon.getPreviousWagon() : wagon.getNextWagon();
+            }
+            return null;
+        } finally {
+            if (free) {
+                this.sequenceIds.clear();
+            }
+        }
     }
 
     /**
@@ -210,12 +391,42 @@ public class Train  implements Iterable<Wagon>{
      * @return  whether the attachment could be completed successfully
      */
     public boolean attachToRear(Wagon sequence) {
-        if(!hasWagons()){
-          setFirstWagon(sequence);
-        return true;}
-        else if (canAttach(sequence)) {sequence.attachTo(firstWagon.getLastWagonAttached());}
+        return tryAttachToRear(sequence) == null;
+    }
 
-   return false;
+    /**
+     * Attaches the given sequence of wagons to the rear of the train, as attachToRear
+     * @return  the reason why no change was made
+     *          (return null if the attachment could be completed successfully)
+     */
+    public Rejection tryAttachToRear(Wagon sequence) {
+        if (!TrainMetrics.isEnabled()) {
+            return doAttachToRear(sequence);
+        }
+        long start = System.nanoTime();
+        return recorded(Operation.ATTACH_TO_REAR, start, doAttachToRear(sequence), this);
+    }
+    private Rejection doAttachToRear(Wagon sequence) {
+        return doAttachToRear(sequence, sequence == null ? null : sequence.train);
+    }
+
+    /**
+     * @param from  the train the sequence comes from, to be reported to the listeners
+     */
+    private Rejection doAttachToRear(Wagon sequence, Train from) {
+        Rejection rejection = attachability(sequence);
+        if (rejection != null) {
+            return rejection;
+        }
+        int position = this.numberOfWagons + 1;
+        detachFromOwner(sequence);
+        if (this.reversed) {
+            linkAtFront(sequence.reverseSequence());
+        } else {
+            linkAtRear(sequence);
+        }
+        changed(TrainEvent.Type.ADDED, position, this.numberOfWagons - position + 1, from);
+        return null;
     }
 
     /**
@@ -226,15 +437,36 @@ public class Train  implements Iterable<Wagon>{
      * @return  whether the insertion could be completed successfully
      */
     public boolean insertAtFront(Wagon sequence) {
-       if (canAttach(sequence) && hasWagons()&& findWagonById(sequence.getId()) ==null){
-           sequence.reAttachTo(firstWagon.getLastWagonAttached());
-           return true;
-       } else if ( !hasWagons()){
-           setFirstWagon(sequence);
-           return true;
-       }
+        return tryInsertAtFront(sequence) == null;
+    }
 
-        return false;
+    /**
+     * Inserts the given sequence of wagons at the front of the train, as insertAtFront
+     * @return  the reason why no change was made
+     *          (return null if the insertion could be completed successfully)
+     */
+    public Rejection tryInsertAtFront(Wagon sequence) {
+        if (!TrainMetrics.isEnabled()) {
+            return doInsertAtFront(sequence);
+        }
+        long start = System.nanoTime();
+        return recorded(Operation.INSERT_AT_FRONT, start, doInsertAtFront(sequence), this);
+    }
+    private Rejection doInsertAtFront(Wagon sequence) {
+        Rejection rejection = attachability(sequence);
+        if (rejection != null) {
+            return rejection;
+        }
+        int numberOfWagons = this.numberOfWagons;
+        Train from = sequence.train;
+        detachFromOwner(sequence);
+        if (this.reversed) {
+            linkAtRear(sequence.reverseSequence());
+        } else {
+            linkAtFront(sequence);
+        }
+        changed(TrainEvent.Type.ADDED, 1, this.numberOfWagons - numberOfWagons, from);
+        return null;
     }
 
     /**
@@ -246,24 +478,46 @@ public class Train  implements Iterable<Wagon>{
      * @return  whether the insertion could be completed successfully
      */
     public boolean insertAtPosition(int position, Wagon sequence) {
-        Wagon temp = findWagonAtPosition(position);
-        if(getNumberOfWagons()+1 >= position) {
-            if (!hasWagons() && canAttach(sequence)) {
-                attachToRear(sequence);
-                return true;
-            } else if (canAttach(sequence)) {
-
-                Wagon newLast = temp.getPreviousWagon();
-                temp.detachFromPrevious();
-                sequence.attachTo(newLast);
-                temp.attachTo(sequence.getLastWagonAttached());
-                return true;
-            } else if (temp == firstWagon.getLastWagonAttached()) {
-                sequence.attachTo(temp);
-            }
-        }
+        return tryInsertAtPosition(position, sequence) == null;
+    }
 
-        return false;
+    /**
+     * Inserts the given sequence of wagons at the given position in the train, as insertAtPosition
+     * @return  the reason why no change was made
+     *          (return null if the insertion could be completed successfully)
+     */
+    public Rejection tryInsertAtPosition(int position, Wagon sequence) {
+        if (!TrainMetrics.isEnabled()) {
+            return doInsertAtPosition(position, sequence);
+        }
+        long start = System.nanoTime();
+        return recorded(Operation.INSERT_AT_POSITION, start, doInsertAtPosition(position, sequence), this);
+    }
+    private Rejection doInsertAtPosition(int position, Wagon sequence) {
+        if (position < 1 || position > this.numberOfWagons + 1) {
+            return Rejection.INVALID_POSITION;
+        }
+        if (position == 1) {
+            return doInsertAtFront(sequence);
+        }
+        if (position == this.numberOfWagons + 1) {
+            return doAttachToRear(sequence);
+        }
+        Rejection rejection = attachability(sequence);
+        if (rejection != null) {
+            return rejection;
+        }
+        int numberOfWagons = this.numberOfWagons;
+        Train from = sequence.train;
+        detachFromOwner(sequence);
+        if (this.reversed) {
+            // in the linked sequence, the wagon at the given position is followed by the inserted wagons in reverse
+            linkAt(this.numberOfWagons - position + 2, sequence.reverseSequence());
+        } else {
+            linkAt(position, sequence);
+        }
+        changed(TrainEvent.Type.ADDED, position, this.numberOfWagons - numberOfWagons, from);
+        return null;
     }
 
     /**
@@ -277,19 +531,43 @@ public class Train  implements Iterable<Wagon>{
      * @return  whether the move could be completed successfully
      */
     public boolean moveOneWagon(int wagonId, Train toTrain) {
-        Wagon temp = findWagonById(wagonId);
-        if(!toTrain.hasWagons()){
-            temp.removeFromSequence();
-            toTrain.attachToRear(temp);
-            return true;
-        }else if (temp instanceof PassengerWagon   ){
-            if (temp.hasPreviousWagon()){
-            temp.removeFromSequence();}
-            toTrain.attachToRear(temp);
-            return true;
+        return tryMoveOneWagon(wagonId, toTrain) == null;
+    }
+
+    /**
+     * Moves the wagon with the given wagonId to the rear of toTrain, as moveOneWagon
+     * @return  the reason why no change was made
+     *          (return null if the move could be completed successfully)
+     */
+    public Rejection tryMoveOneWagon(int wagonId, Train toTrain) {
+        if (!TrainMetrics.isEnabled()) {
+            return doMoveOneWagon(wagonId, toTrain);
         }
-        return false;
-     }
+        long start = System.nanoTime();
+        return recorded(Operation.MOVE_ONE_WAGON, start, doMoveOneWagon(wagonId, toTrain), toTrain);
+    }
+    private Rejection doMoveOneWagon(int wagonId, Train toTrain) {
+        Wagon wagon = findWagonById(wagonId);
+        if (wagon == null) {
+            return Rejection.WAGON_NOT_FOUND;
+        }
+        Rejection rejection = toTrain.attachability(wagon, 1, false);
+        if (rejection != null) {
+            return rejection;
+        }
+        int position = this.subscriptions != null ? findPositionById(wagonId) : 0;
+        if (wagon == this.firstWagon) {
+            this.firstWagon = wagon.getNextWagon();
+        }
+        if (wagon == this.lastWagon) {
+            this.lastWagon = wagon.getPreviousWagon();
+        }
+        this.positions.remove(wagon);
+        wagon.removeFromSequence();
+        release(wagon);
+        changed(TrainEvent.Type.REMOVED, position, 1, toTrain);
+        return toTrain.doAttachToRear(wagon, this);
+    }
 
     /**
      * Tries to split this train and move the complete sequence of wagons from the given position
@@ -302,13 +580,25 @@ public class Train  implements Iterable<Wagon>{
      * @return  whether the move could be completed successfully
      */
     public boolean splitAtPosition(int position, Train toTrain) {
-        if(firstWagon== null || !firstWagon.hasNextWagon()){
-            return false;
-        }else {
-           Wagon wagon2 = this.findWagonAtPosition(position);
-           wagon2.detachFromPrevious();
-           toTrain.insertAtFront(wagon2);
-           return true;}
+        return trySplitAtPosition(position, toTrain) == null;
+    }
+
+    /**
+     * Moves the wagons from the given position to the rear of toTrain, as splitAtPosition
+     * @return  the reason why no change was made
+     *          (return null if the move could be completed successfully)
+     */
+    public Rejection trySplitAtPosition(int position, Train toTrain) {
+        if (!TrainMetrics.isEnabled()) {
+            return doSplitAtPosition(position, toTrain);
+        }
+        long start = System.nanoTime();
+        return recorded(Operation.SPLIT_AT_POSITION, start, doSplitAtPosition(position, toTrain), toTrain);
+    }
+    private Rejection doSplitAtPosition(int position, Train toTrain) {
+        normalize();
+        Wagon wagon = findWagonAtPosition(position);
+        return wagon == null ? Rejection.INVALID_POSITION : toTrain.doAttachToRear(wagon);
     }
 
     /**
@@ -317,40 +607,733 @@ public class Train  implements Iterable<Wagon>{
      *      the previous wagon of the last wagon becomes the second wagon
      *      etc.
      * (No change if the train has no wagons or only one wagon)
+     * In lazy reversal mode only the orientation of the train is flipped, in constant time.
      */
     public void reverse() {
-        this.firstWagon.reverseSequence();
+        if (!TrainMetrics.isEnabled()) {
+            doReverse();
+            return;
+        }
+        long start = System.nanoTime();
+        doReverse();
+        recorded(Operation.REVERSE, start, null, this);
+    }
+
+    private void doReverse() {
+        this.modCount++;
+        if (this.lazyReversal) {
+            this.reversed = hasWagons() && !this.reversed;
+        } else if (hasWagons()) {
+            this.lastWagon = this.firstWagon;
+            this.firstWagon = this.firstWagon.reverseSequence();
+            this.positions.rebuild(this.firstWagon);
+        }
+        if (this.numberOfWagons > 1) {
+            changed(TrainEvent.Type.REVERSED, 1, this.numberOfWagons, null);
+        }
+    }
+
+    /**
+     * Records a call of an operation with the train metrics
+     * @param train     the train that received the wagons, whose length is recorded
+     * @return  the given rejection
+     */
+    private static Rejection recorded(Operation operation, long startNanos, Rejection rejection, Train train) {
+        TrainMetrics.record(operation, startNanos, rejection, train.numberOfWagons);
+        return rejection;
+    }
+
+    /**
+     * Removes count wagons starting at the given position from this train
+     * and returns them, in the order of the train, as a separate sequence that is not part of any train
+     * A lazily reversed train is not relinked: the wagons are cut out of the linked sequence
+     * and only the removed sequence is put in the order of the train.
+     * @param position  a valid position in this train
+     * @param count     the number of wagons to remove, at least 1 and at most getNumberOfWagons() - position + 1
+     * @return  the first wagon of the removed sequence
+     */
+    Wagon removeSequence(int position, int count) {
+        boolean backwards = this.reversed;
+        int linkPosition = backwards ? this.numberOfWagons - position - count + 2 : position;
+        Wagon first = this.positions.get(linkPosition);
+        Wagon last = this.positions.get(linkPosition + count - 1);
+        Wagon before = first.getPreviousWagon();
+        Wagon after = last.getNextWagon();
+        this.positions.removeRange(linkPosition, count);
+        first.detachFromPrevious();
+        if (after != null) {
+            after.detachFromPrevious();
+            if (before != null) {
+                after.attachTo(before);
+            }
+        }
+        if (first == this.firstWagon) {
+            this.firstWagon = after;
+        }
+        if (last == this.lastWagon) {
+            this.lastWagon = before;
+        }
+        release(first);
+        if (!hasWagons()) {
+            this.reversed = false;
+        }
+        changed(TrainEvent.Type.REMOVED, position, count, null);
+        return backwards ? first.reverseSequence() : first;
+    }
+
+    /**
+     * Links the given sequence, which is not part of any train, after the last wagon of the linked sequence
+     * @param sequence
+     */
+    private void linkAtRear(Wagon sequence) {
+        Wagon sequenceLast = adopt(sequence, this.numberOfWagons + 1);
+        if (hasWagons()) {
+            sequence.attachTo(this.lastWagon);
+        } else {
+            this.firstWagon = sequence;
+        }
+        this.lastWagon = sequenceLast;
+    }
+
+    /**
+     * Links the given sequence, which is not part of any train, before the first wagon of the linked sequence
+     * @param sequence
+     */
+    private void linkAtFront(Wagon sequence) {
+        Wagon sequenceLast = adopt(sequence, 1);
+        if (hasWagons()) {
+            this.firstWagon.attachTo(sequenceLast);
+        } else {
+            this.lastWagon = sequenceLast;
+        }
+        this.firstWagon = sequence;
+    }
+
+    /**
+     * Links the given sequence, which is not part of any train, before the wagon at the given position
+     * of the linked sequence
+     * @param position  a position in the linked sequence, other than the first
+     * @param sequence
+     */
+    private void linkAt(int position, Wagon sequence) {
+        Wagon next = this.positions.get(position);
+        Wagon previous = next.getPreviousWagon();
+        Wagon sequenceLast = adopt(sequence, position);
+        next.detachFromPrevious();
+        sequence.attachTo(previous);
+        next.attachTo(sequenceLast);
+    }
+
+    /**
+     * Relinks the wagons in the order of the train, if the train is reversed lazily
+     */
+    private void normalize() {
+        if (this.reversed) {
+            this.modCount++;
+            this.lastWagon = this.firstWagon;
+            this.firstWagon = this.firstWagon.reverseSequence();
+            this.positions.rebuild(this.firstWagon);
+            this.reversed = false;
+        }
+    }
+
+    /**
+     * Detaches the given sequence from the train or wagon it is currently attached to, if any,
+     * so it can become part of this train.
+     * @param sequence
+     */
+    private void detachFromOwner(Wagon sequence) {
+        Train owner = sequence.train;
+        if (owner != null) {
+            owner.normalize();
+            int numberOfWagons = owner.numberOfWagons;
+            int position = owner.subscriptions != null ? owner.positions.positionOf(sequence) : 0;
+            owner.cutOff(sequence);
+            owner.changed(TrainEvent.Type.REMOVED, position, numberOfWagons - owner.numberOfWagons, this);
+        } else {
+            sequence.detachFromPrevious();
+        }
+    }
+
+    /**
+     * Cuts the sequence of wagons starting at the given wagon off this train
+     * @param sequence  a wagon in this train
+     */
+    private void cutOff(Wagon sequence) {
+        this.positions.truncate(this.positions.positionOf(sequence));
+        this.lastWagon = sequence.getPreviousWagon();
+        if (sequence == this.firstWagon) {
+            this.firstWagon = null;
+        } else {
+            sequence.detachFromPrevious();
+        }
+        release(sequence);
+    }
+
+    /**
+     * Adds the given sequence of wagons, which is about to be linked into this train,
+     * to the wagon count, the capacity totals and the indices of the train
+     * @param sequence
+     * @param position  the position in the train where the sequence will be linked
+     * @return  the last wagon of the sequence
+     */
+    private Wagon adopt(Wagon sequence, int position) {
+        this.modCount++;
+        this.positions.insert(position, sequence);
+        Wagon last = sequence;
+        for (Wagon wagon = sequence; wagon != null; wagon = wagon.getNextWagon()) {
+            wagon.train = this;
+            this.numberOfWagons++;
+            updateCapacity(wagon, 1);
+            this.wagonsById.put(wagon.getId(), wagon);
+            if (this.fleet != null) {
+                this.fleet.register(wagon);
+            }
+            last = wagon;
+        }
+        return last;
+    }
+
+    /**
+     * Removes the given sequence of wagons, which has just been unlinked from this train,
+     * from the wagon count and the capacity totals of the train
+     * @param sequence
+     */
+    private void release(Wagon sequence) {
+        this.modCount++;
+        for (Wagon wagon = sequence; wagon != null; wagon = wagon.getNextWagon()) {
+            wagon.train = null;
+            this.numberOfWagons--;
+            updateCapacity(wagon, -1);
+            this.wagonsById.remove(wagon.getId());
+            if (this.fleet != null) {
+                this.fleet.unregister(wagon);
+            }
+        }
+    }
+
+    private void updateCapacity(Wagon wagon, int sign) {
+        if (wagon instanceof PassengerWagon) {
+            this.totalNumberOfSeats += sign * ((PassengerWagon) wagon).getNumberOfSeats();
+        } else if (wagon instanceof FreightWagon) {
+            this.totalMaxWeight += sign * ((FreightWagon) wagon).getMaxWeight();
+        }
+    }
+
+    /**
+     * Keeps the capacity totals up to date when the seats or max weight of a wagon in this train are changed
+     * @param seatsDelta
+     * @param maxWeightDelta
+     */
+    void capacityChanged(int seatsDelta, int maxWeightDelta) {
+        this.totalNumberOfSeats += seatsDelta;
+        this.totalMaxWeight += maxWeightDelta;
+    }
+
+    /**
+     * @param wagon     a wagon in this train
+     * @param wagonId
+     * @return  whether the id of the given wagon can be changed to the given id
+     *          without colliding with another wagon of this train or of its fleet
+     */
+    boolean isIdAvailable(Wagon wagon, int wagonId) {
+        Wagon other = this.wagonsById.get(wagonId);
+        return (other == null || other == wagon)
+                && (this.fleet == null || !this.fleet.hasOtherWagonWithId(wagonId, wagon));
+    }
+
+    /**
+     * Keeps the wagon index up to date when the id of a wagon in this train is changed
+     * @param wagon
+     * @param oldId
+     */
+    void idChanged(Wagon wagon, int oldId) {
+        this.wagonsById.remove(oldId);
+        this.wagonsById.put(wagon.getId(), wagon);
+        if (this.fleet != null) {
+            this.fleet.idChanged(wagon, oldId);
+        }
+    }
+
+    /**
+     * Registers a listener for the changes of the sequence of wagons of this train.
+     * The changes are collected in batches: a batch is handed to the executor when its first change is made,
+     * and takes all changes made until the executor runs it. The batches for one listener are delivered
+     * one at a time and in order, also on an executor with several threads.
+     * The listener of a train that is changed by another train (when wagons are moved or split off)
+     * is notified as well. With a direct executor (Runnable::run) the listener runs during the change,
+     * so it must not read or change the trains involved.
+     * @param listener
+     * @param executor  the executor that delivers the batches of changes to the listener
+     */
+    public void addListener(TrainListener listener, Executor executor) {
+        Subscription subscription = new Subscription(listener, executor);
+        if (this.subscriptions == null) {
+            this.subscriptions = new Subscription[] { subscription };
+        } else {
+            Subscription[] subscriptions = Arrays.copyOf(this.subscriptions, this.subscriptions.length + 1);
+            subscriptions[subscriptions.length - 1] = subscription;
+            this.subscriptions = subscriptions;
+        }
+    }
+
+    /**
+     * Unregisters all registrations of the given listener.
+     * Changes that are still waiting to be delivered to it are dropped.
+     * @param listener
+     * @return  whether the listener was registered
+     */
+    public boolean removeListener(TrainListener listener) {
+        if (this.subscriptions == null) {
+            return false;
+        }
+        int kept = 0;
+        for (Subscription subscription : this.subscriptions) {
+            if (subscription.listener == listener) {
+                subscription.cancelled = true;
+            } else {
+                this.subscriptions[kept++] = subscription;
+            }
+        }
+        if (kept == this.subscriptions.length) {
+            return false;
+        }
+        this.subscriptions = kept == 0 ? null : Arrays.copyOf(this.subscriptions, kept);
+        return true;
+    }
+
+    /**
+     * Publishes a change to the registered listeners, if any
+     */
+    private void changed(TrainEvent.Type type, int position, int numberOfWagons, Train otherTrain) {
+        if (this.subscriptions != null) {
+            TrainEvent event = new TrainEvent(type, position, numberOfWagons, otherTrain);
+            for (Subscription subscription : this.subscriptions) {
+                subscription.publish(event);
+            }
+        }
+    }
+
+    /**
+     * A registered listener with the changes that are waiting to be delivered to it.
+     * At most one delivery task is scheduled or running at any time, which keeps the batches in order.
+     */
+    private final class Subscription implements Runnable {
+        private final TrainListener listener;
+        private final Executor executor;
+        private List<TrainEvent> pending = new ArrayList<>();   // guarded by this
+        private boolean scheduled;                              // guarded by this
+        private volatile boolean cancelled;
+
+        Subscription(TrainListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        void publish(TrainEvent event) {
+            boolean schedule;
+            synchronized (this) {
+                this.pending.add(event);
+                schedule = !this.scheduled;
+                this.scheduled = true;
+            }
+            if (schedule) {
+                this.executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            List<TrainEvent> batch;
+            synchronized (this) {
+                batch = this.pending;
+                this.pending = new ArrayList<>();
+            }
+            try {
+                if (!this.cancelled) {
+                    this.listener.trainChanged(Train.this, Collections.unmodifiableList(batch));
+                }
+            } finally {
+                boolean more;
+                synchronized (this) {
+                    more = !this.pending.isEmpty();
+                    this.scheduled = more;
+                }
+                if (more) {
+                    this.executor.execute(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return  whether iterator() iterates over a snapshot of the wagons
+     */
+    public boolean isSnapshotIteration() {
+        return this.snapshotIteration;
+    }
 
+    /**
+     * Switches snapshot iteration on or off.
+     * By default iterators are fail-fast: they throw a ConcurrentModificationException
+     * as soon as the train has been changed structurally after the iterator was created
+     * (attach, insert, move, split, reverse, or relinking a lazily reversed train).
+     * With snapshot iteration, iterators traverse a copy of the wagons as they were when the iteration started,
+     * so the loop that iterates the train (or code it calls) can change the train. The copy is shared by all
+     * iterators that start before the next change, so it costs one array copy per change of the train.
+     * Like the rest of Train, neither mode makes it safe to iterate while another thread changes the train:
+     * use ConcurrentTrain.getWagonIds() or ConcurrentTrain.forEachWagon() for readers on other threads.
+     * @param snapshotIteration
+     */
+    public void setSnapshotIteration(boolean snapshotIteration) {
+        this.snapshotIteration = snapshotIteration;
+        this.snapshot = null;
     }
 
+    /**
+     * @return  a fail-fast iterator over the wagons of the train,
+     *          or an iterator over a snapshot of the wagons in snapshot iteration mode
+     */
     @Override
     public Iterator<Wagon> iterator() {
-        return new Iterator<Wagon>() {
+        if (this.snapshotIteration) {
+            return Arrays.asList(snapshot()).iterator();
+        }
+        return new WagonIterator();
+    }
+
+    /**
+     * @return  the wagons of the train in order, copied at most once per change of the train
+     *          (not synchronized, as the train is only changed and iterated by one thread at a time)
+     */
+    private Wagon[] snapshot() {
+        if (this.snapshot == null || this.snapshotModCount != this.modCount) {
+            Wagon[] wagons = new Wagon[this.numberOfWagons];
+            int i = 0;
+            for (Wagon wagon = this.reversed ? this.lastWagon : this.firstWagon; wagon != null;
+                    wagon = this.reversed ? wagon.getPreviousWagon() : wagon.getNextWagon()) {
+                wagons[i++] = wagon;
+            }
+            this.snapshot = wagons;
+            this.snapshotModCount = this.modCount;
+        }
+        return this.snapshot;
+    }
+
+    /**
+     * Follows the links between the wagons, failing fast when the train is changed
+     */
+    private class WagonIterator implements Iterator<Wagon> {
+        private final int expectedModCount = modCount;
+        private final boolean backwards = reversed;
+        private Wagon current = reversed ? lastWagon : firstWagon;
 
-            Wagon current = firstWagon;
+        @Override
+        public boolean hasNext() {
+            return this.current != null;
+        }
 
-            // Will return true if the current wagon in the iteration is not null
-            @Override
-            public boolean hasNext() {
-                return current != null;
+        @Override
+        public Wagon next() {
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Wagon wagon = this.current;
+            if (wagon == null) {
+                throw new NoSuchElementException();
             }
+            this.current = this.backwards ? wagon.getPreviousWagon() : wagon.getNextWagon();
+            return wagon;
+        }
+    }
+
+    /**
+     * @return  a sequential stream of the wagons of this train, in the order of the train
+     */
+    public Stream<Wagon> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return  a parallel stream of the wagons of this train, which splits long trains by position
+     */
+    public Stream<Wagon> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * @param parallel  whether the stream splits the train across threads
+     * @return  the number of seats of every wagon of a passenger train, in the order of the train
+     *          (an empty stream for a freight train)
+     */
+    public IntStream seatCounts(boolean parallel) {
+        if (!isPassengerTrain()) {
+            return IntStream.empty();
+        }
+        return StreamSupport.intStream(new CapacitySpliterator(new WagonSpliterator(1, this.numberOfWagons + 1, null)), parallel);
+    }
+
+    /**
+     * @param parallel  whether the stream splits the train across threads
+     * @return  the max weight of every wagon of a freight train, in the order of the train
+     *          (an empty stream for a passenger train)
+     */
+    public IntStream maxWeights(boolean parallel) {
+        if (!isFreightTrain()) {
+            return IntStream.empty();
+        }
+        return StreamSupport.intStream(new CapacitySpliterator(new WagonSpliterator(1, this.numberOfWagons + 1, null)), parallel);
+    }
+
+    /**
+     * Creates a spliterator over the wagons of this train, in the order of the train
+     * It splits a range of positions at its middle, locating the middle wagon in O(log n),
+     * so long trains can be processed in parallel.
+     * The train must not be changed while the spliterator is in use.
+     * @return  an ORDERED, SIZED, SUBSIZED and NONNULL spliterator
+     */
+    @Override
+    public Spliterator<Wagon> spliterator() {
+        return new WagonSpliterator(1, this.numberOfWagons + 1, null);
+    }
+
+    /**
+     * Traverses the wagons at a range of positions by following the links between the wagons
+     */
+    private class WagonSpliterator implements Spliterator<Wagon> {
+        private int position;           // the position of the next wagon to traverse
+        private final int end;          // the position after the last wagon of the range
+        private Wagon next;             // the wagon at position (null until it has been located)
+        private final int expectedModCount = modCount;
+
+        WagonSpliterator(int position, int end, Wagon next) {
+            this.position = position;
+            this.end = end;
+            this.next = next;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Wagon> action) {
+            Wagon wagon = advance();
+            if (wagon == null) {
+                return false;
+            }
+            action.accept(wagon);
+            return true;
+        }
+
+        /**
+         * @return  the next wagon of the range
+         *          (return null if all wagons of the range have been traversed)
+         */
+        Wagon advance() {
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (this.position >= this.end) {
+                return null;
+            }
+            if (this.next == null) {
+                this.next = findWagonAtPosition(this.position);
+            }
+            Wagon wagon = this.next;
+            this.next = reversed ? wagon.getPreviousWagon() : wagon.getNextWagon();
+            this.position++;
+            return wagon;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Wagon> action) {
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Wagon wagon = this.position < this.end && this.next == null ? findWagonAtPosition(this.position) : this.next;
+            for (; this.position < this.end; this.position++) {
+                Wagon current = wagon;
+                wagon = reversed ? wagon.getPreviousWagon() : wagon.getNextWagon();
+                action.accept(current);
+            }
+            this.next = null;
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
 
-            // Sets current wagon to the next wagon and returns the current wagon
-            @Override
-            public Wagon next() {
-                Wagon wagon = current;
-                current = current.getNextWagon();
-                return wagon;
+        @Override
+        public WagonSpliterator trySplit() {
+            int middle = this.position + (this.end - this.position) / 2;
+            if (middle == this.position) {
+                return null;
             }
-        };
+            WagonSpliterator prefix = new WagonSpliterator(this.position, middle, this.next);
+            this.position = middle;
+            this.next = null;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.end - this.position;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    /**
+     * Traverses the number of seats or max weight of the wagons at a range of positions, without boxing
+     */
+    private static class CapacitySpliterator implements Spliterator.OfInt {
+        private final WagonSpliterator wagons;
+
+        CapacitySpliterator(WagonSpliterator wagons) {
+            this.wagons = wagons;
+        }
+
+        private static int capacityOf(Wagon wagon) {
+            if (wagon instanceof PassengerWagon) {
+                return ((PassengerWagon) wagon).getNumberOfSeats();
+            }
+            return ((FreightWagon) wagon).getMaxWeight();
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            Wagon wagon = this.wagons.advance();
+            if (wagon == null) {
+                return false;
+            }
+            action.accept(capacityOf(wagon));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            for (Wagon wagon = this.wagons.advance(); wagon != null; wagon = this.wagons.advance()) {
+                action.accept(capacityOf(wagon));
+            }
+        }
+
+        @Override
+        public CapacitySpliterator trySplit() {
+            WagonSpliterator prefix = this.wagons.trySplit();
+            return prefix != null ? new CapacitySpliterator(prefix) : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.wagons.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
     }
 
+    /**
+     * Renders the complete consist, e.g.
+     *      [Loc-24531][Wagon-8001][Wagon-8002] with 2 wagons and 64 seats from Amsterdam to Paris
+     * Trains of more than 100 wagons are truncated, as by appendTo
+     */
     @Override
     public String toString() {
+        return appendTo(new StringBuilder(64 + 14 * Math.min(this.numberOfWagons, TO_STRING_MAX_WAGONS)),
+                TO_STRING_MAX_WAGONS).toString();
+    }
 
-// krijg dit niet voor elkaar om werkend te krijgen... zou niet het moeilijkste van de opdracht moeten zijn.
+    /**
+     * Renders the consist into the given builder, as appendTo(Appendable, int)
+     * @return  the given builder
+     */
+    public StringBuilder appendTo(StringBuilder out, int maxWagons) {
+        try {
+            appendTo((Appendable) out, maxWagons);
+        } catch (IOException e) {
+            throw new AssertionError(e);        // a StringBuilder does not throw IOException
+        }
+        return out;
+    }
 
-        return String.format("from %s to %s", origin, destination);
+    /**
+     * Renders the consist (locomotive, wagons in the order of the train, number of wagons, total capacity
+     * and route) into the given Appendable, without creating intermediate strings.
+     * A train of more than maxWagons wagons is truncated to its first and last wagons with a summary
+     * of the number of wagons left out in between, e.g. [Wagon-1][... 998 wagons ...][Wagon-1000] for maxWagons 2
+     * A java.nio.CharBuffer that is too small throws a BufferOverflowException.
+     * @param out
+     * @param maxWagons the maximum number of wagons to render, at least 0
+     * @return  the given Appendable
+     * @throws IOException  if the Appendable throws it
+     */
+    public Appendable appendTo(Appendable out, int maxWagons) throws IOException {
+        if (maxWagons < 0) {
+            throw new IllegalArgumentException("maxWagons must be at least 0: " + maxWagons);
+        }
+        out.append("[Loc-");
+        appendNumber(out, this.engine.getLocNumber());
+        out.append(']');
+        int front = this.numberOfWagons <= maxWagons ? this.numberOfWagons : (maxWagons + 1) / 2;
+        Wagon wagon = this.reversed ? this.lastWagon : this.firstWagon;
+        for (int i = 0; i < front; i++) {
+            appendWagon(out, wagon);
+            wagon = this.reversed ? wagon.getPreviousWagon() : wagon.getNextWagon();
+        }
+        if (front < this.numberOfWagons) {
+            int rear = maxWagons - front;
+            out.append("[... ");
+            appendNumber(out, this.numberOfWagons - front - rear);
+            out.append(" wagons ...]");
+            for (wagon = rear == 0 ? null : findWagonAtPosition(this.numberOfWagons - rear + 1); wagon != null;
+                    wagon = this.reversed ? wagon.getPreviousWagon() : wagon.getNextWagon()) {
+                appendWagon(out, wagon);
+            }
+        }
+        out.append(" with ");
+        appendNumber(out, this.numberOfWagons);
+        out.append(this.numberOfWagons == 1 ? " wagon" : " wagons");
+        if (isPassengerTrain()) {
+            out.append(" and ");
+            appendNumber(out, this.totalNumberOfSeats);
+            out.append(" seats");
+        } else if (isFreightTrain()) {
+            out.append(" and ");
+            appendNumber(out, this.totalMaxWeight);
+            out.append(" kg");
+        }
+        out.append(" from ").append(this.origin).append(" to ").append(this.destination);
+        return out;
+    }
+
+    private static void appendWagon(Appendable out, Wagon wagon) throws IOException {
+        out.append("[Wagon-");
+        appendNumber(out, wagon.getId());
+        out.append(']');
+    }
 
+    /**
+     * Appends the decimal digits of the given number one by one, which unlike Integer.toString does not allocate
+     * (a StringBuilder writes them into its own array)
+     */
+    private static void appendNumber(Appendable out, int number) throws IOException {
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(number);
+            return;
+        }
+        if (number < 0) {
+            out.append('-');
+        } else {
+            number = -number;               // negative numbers include Integer.MIN_VALUE
+        }
+        int divisor = 1;
+        while (number / divisor <= -10) {
+            divisor *= 10;
+        }
+        for (; divisor != 0; divisor /= 10) {
+            out.append((char) ('0' - number / divisor));
+            number %= divisor;
+        }
     }
 }
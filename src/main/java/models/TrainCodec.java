@@ -0,0 +1,369 @@
+package models;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding of trains, locomotives and wagon sequences.
+ *
+ * Format (all integers are variable-length, 7 bits per byte, least significant group first):
+ *  locomotive: locNumber, maxWagons
+ *  train:      locomotive, origin, destination, wagon sequence
+ *  string:     number of bytes, UTF-8 bytes
+ *  sequence:   number of wagons, then per wagon:
+ *                  zigzag(id - previous id) shifted left by one, with the lowest bit set for a freight wagon
+ *                  zigzag(capacity - previous capacity), where capacity is the number of seats or the max weight
+ * Consecutive wagons usually have nearby ids and equal capacities, so most wagons take two or three bytes.
+ *
+ * The static methods encode into and decode from a ByteBuffer that is large enough for the whole value.
+ * Writer and Reader stream any number of trains through a fixed-size buffer over a channel,
+ * e.g. a FileChannel or a SocketChannel.
+ */
+public class TrainCodec {
+    private static final int MAX_VARINT_BYTES = 10;
+    private static final int MAX_WAGON_BYTES = 2 * MAX_VARINT_BYTES;
+    private static final int FREIGHT_BIT = 1;
+
+    private TrainCodec() {
+    }
+
+    public static void encode(Locomotive engine, ByteBuffer buffer) {
+        putVarint(buffer, engine.getLocNumber());
+        putVarint(buffer, engine.getMaxWagons());
+    }
+
+    public static Locomotive decodeLocomotive(ByteBuffer buffer) {
+        return new Locomotive((int) getVarint(buffer), (int) getVarint(buffer));
+    }
+
+    /**
+     * Encodes the given train with all its wagons, in the order of the train
+     * The train is not changed: a lazily reversed train is not relinked.
+     * @param train
+     * @param buffer
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void encode(Train train, ByteBuffer buffer) {
+        encode(train.getEngine(), buffer);
+        putString(buffer, train.getOrigin());
+        putString(buffer, train.getDestination());
+        putVarint(buffer, train.getNumberOfWagons());
+        int previousId = 0, previousCapacity = 0;
+        for (Wagon wagon : train) {
+            encodeWagon(wagon, previousId, previousCapacity, buffer);
+            previousId = wagon.getId();
+            previousCapacity = capacityOf(wagon);
+        }
+    }
+
+    /**
+     * Decodes a train with all its wagons
+     * @param buffer
+     * @return  the train
+     * @throws IllegalArgumentException if the buffer does not hold a complete train,
+     *          or holds wagons the train cannot take (see attachDecoded)
+     */
+    public static Train decode(ByteBuffer buffer) {
+        try {
+            Train train = new Train(decodeLocomotive(buffer), getString(buffer), getString(buffer));
+            attachDecoded(train, decodeSequence(buffer));
+            return train;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("incomplete train", e);
+        }
+    }
+
+    /**
+     * Attaches the decoded wagons to the decoded train, with the checks of Train.attachToRear
+     * The encoded data comes from outside, so it is not trusted to describe a valid train.
+     * @param train     a train without wagons
+     * @param sequence  the decoded wagons (can be null)
+     * @throws IllegalArgumentException if the sequence mixes passenger and freight wagons, repeats an id,
+     *          or has more wagons than the engine of the train can pull
+     */
+    private static void attachDecoded(Train train, Wagon sequence) {
+        if (sequence == null) {
+            return;
+        }
+        boolean freight = sequence instanceof FreightWagon;
+        for (Wagon wagon = sequence.getNextWagon(); wagon != null; wagon = wagon.getNextWagon()) {
+            if (wagon instanceof FreightWagon != freight) {
+                throw new IllegalArgumentException("train mixes passenger and freight wagons");
+            }
+        }
+        Rejection rejection = train.tryAttachToRear(sequence);
+        if (rejection != null) {
+            throw new IllegalArgumentException("train cannot take its wagons: " + rejection);
+        }
+    }
+
+    /**
+     * Encodes the given sequence of wagons, from the given wagon up to the end of its sequence
+     * @param sequence  the first wagon of the sequence (can be null for an empty sequence)
+     * @param buffer
+     */
+    public static void encodeSequence(Wagon sequence, ByteBuffer buffer) {
+        putVarint(buffer, sequence != null ? sequence.getSequenceLength() : 0);
+        int previousId = 0, previousCapacity = 0;
+        for (Wagon wagon = sequence; wagon != null; wagon = wagon.getNextWagon()) {
+            encodeWagon(wagon, previousId, previousCapacity, buffer);
+            previousId = wagon.getId();
+            previousCapacity = capacityOf(wagon);
+        }
+    }
+
+    /**
+     * Decodes a sequence of wagons
+     * @param buffer
+     * @return  the first wagon of the decoded sequence (null for an empty sequence)
+     */
+    public static Wagon decodeSequence(ByteBuffer buffer) {
+        int numberOfWagons = (int) getVarint(buffer);
+        Wagon first = null, last = null;
+        for (int i = 0; i < numberOfWagons; i++) {
+            Wagon wagon = decodeWagon(last, buffer);
+            if (last == null) {
+                first = wagon;
+            } else {
+                wagon.attachTo(last);
+            }
+            last = wagon;
+        }
+        return first;
+    }
+
+    private static void encodeWagon(Wagon wagon, int previousId, int previousCapacity, ByteBuffer buffer) {
+        long header = zigzag(wagon.getId() - (long) previousId) << 1;
+        if (wagon instanceof FreightWagon) {
+            header |= FREIGHT_BIT;
+        }
+        putVarint(buffer, header);
+        putVarint(buffer, zigzag(capacityOf(wagon) - (long) previousCapacity));
+    }
+
+    private static Wagon decodeWagon(Wagon previous, ByteBuffer buffer) {
+        long header = getVarint(buffer);
+        int id = (int) (unzigzag(header >>> 1) + (previous != null ? previous.getId() : 0));
+        int capacity = (int) (unzigzag(getVarint(buffer)) + (previous != null ? capacityOf(previous) : 0));
+        if ((header & FREIGHT_BIT) != 0) {
+            return new FreightWagon(id, capacity);
+        }
+        return new PassengerWagon(id, capacity);
+    }
+
+    private static int capacityOf(Wagon wagon) {
+        if (wagon instanceof PassengerWagon) {
+            return ((PassengerWagon) wagon).getNumberOfSeats();
+        }
+        return ((FreightWagon) wagon).getMaxWeight();
+    }
+
+    static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void putString(ByteBuffer buffer, String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        putVarint(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = (int) getVarint(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Streams trains to a channel through a fixed-size buffer
+     */
+    public static class Writer implements Closeable {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer;
+
+        public Writer(WritableByteChannel channel) {
+            this(channel, 64 * 1024);
+        }
+
+        public Writer(WritableByteChannel channel, int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 256));
+        }
+
+        /**
+         * Writes the given train with all its wagons, in the order of the train, without changing the train
+         * @param train
+         */
+        public void write(Train train) throws IOException {
+            reserve(2 * MAX_VARINT_BYTES);
+            encode(train.getEngine(), buffer);
+            writeString(train.getOrigin());
+            writeString(train.getDestination());
+            reserve(MAX_VARINT_BYTES);
+            putVarint(buffer, train.getNumberOfWagons());
+            int previousId = 0, previousCapacity = 0;
+            for (Wagon wagon : train) {
+                reserve(MAX_WAGON_BYTES);
+                encodeWagon(wagon, previousId, previousCapacity, buffer);
+                previousId = wagon.getId();
+                previousCapacity = capacityOf(wagon);
+            }
+        }
+
+        /**
+         * Writes all buffered bytes to the channel
+         */
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Flushes the buffered bytes, without closing the channel
+         */
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        private void writeString(String string) throws IOException {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            reserve(MAX_VARINT_BYTES + bytes.length);
+            putString(buffer, string);
+        }
+
+        private void reserve(int numberOfBytes) throws IOException {
+            if (buffer.remaining() < numberOfBytes) {
+                flush();
+                if (buffer.remaining() < numberOfBytes) {
+                    throw new IOException("value too large for the buffer");
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams trains from a channel through a fixed-size buffer
+     */
+    public static class Reader implements Closeable {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer;
+        private boolean endOfStream;
+
+        public Reader(ReadableByteChannel channel) {
+            this(channel, 64 * 1024);
+        }
+
+        public Reader(ReadableByteChannel channel, int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 256));
+            this.buffer.flip();
+        }
+
+        /**
+         * @return  the next train from the channel
+         *          (return null at the end of the channel)
+         * @throws EOFException if the channel ends within a train
+         * @throws IllegalArgumentException if the train holds wagons it cannot take (see attachDecoded)
+         */
+        public Train read() throws IOException {
+            if (!fill(1)) {
+                return null;
+            }
+            try {
+                fill(2 * MAX_VARINT_BYTES);
+                Locomotive engine = decodeLocomotive(buffer);
+                String origin = readString();
+                String destination = readString();
+                Train train = new Train(engine, origin, destination);
+                fill(MAX_VARINT_BYTES);
+                int numberOfWagons = (int) getVarint(buffer);
+                Wagon first = null, last = null;
+                for (int i = 0; i < numberOfWagons; i++) {
+                    fill(MAX_WAGON_BYTES);
+                    Wagon wagon = decodeWagon(last, buffer);
+                    if (last == null) {
+                        first = wagon;
+                    } else {
+                        wagon.attachTo(last);
+                    }
+                    last = wagon;
+                }
+                attachDecoded(train, first);
+                return train;
+            } catch (BufferUnderflowException e) {
+                throw new EOFException("channel ends within a train");
+            }
+        }
+
+        /**
+         * Closes the reader, without closing the channel
+         */
+        @Override
+        public void close() {
+        }
+
+        private String readString() throws IOException {
+            fill(MAX_VARINT_BYTES);
+            ByteBuffer lengthPrefix = buffer.duplicate();
+            int length = (int) getVarint(lengthPrefix);
+            fill(lengthPrefix.position() - buffer.position() + length);
+            return getString(buffer);
+        }
+
+        /**
+         * Reads from the channel until the given number of bytes is buffered or the channel ends
+         * @return  whether any bytes are buffered
+         */
+        private boolean fill(int numberOfBytes) throws IOException {
+            if (numberOfBytes > buffer.capacity()) {
+                throw new IOException("value too large for the buffer");
+            }
+            if (buffer.remaining() < numberOfBytes && !endOfStream) {
+                buffer.compact();
+                while (buffer.position() < numberOfBytes && !endOfStream) {
+                    endOfStream = channel.read(buffer) < 0;
+                }
+                buffer.flip();
+            }
+            return buffer.hasRemaining();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package models;
+
+/**
+ * A change of the sequence of wagons of a train, as delivered to a TrainListener.
+ *
+ * Events describe the change by position rather than by wagon, so they take constant space
+ * whatever the number of wagons involved. Applied in order to the state of the train before the first event
+ * of a batch, the events of the batch give the state of the train after the last one.
+ * Positions are the positions in the order of the train (honouring lazy reversal), starting at 1.
+ */
+public final class TrainEvent {
+
+    /**
+     * The kinds of changes
+     */
+    public enum Type {
+        /** wagons were inserted, with the first of them at the position */
+        ADDED,
+        /** numberOfWagons wagons were taken out of the train, starting with the wagon at the position */
+        REMOVED,
+        /** the order of all wagons of the train was reversed */
+        REVERSED
+    }
+
+    private final Type type;
+    private final int position;
+    private final int numberOfWagons;
+    private final Train otherTrain;
+
+    TrainEvent(Type type, int position, int numberOfWagons, Train otherTrain) {
+        this.type = type;
+        this.position = position;
+        this.numberOfWagons = numberOfWagons;
+        this.otherTrain = otherTrain;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return  the position of the first wagon that was added or removed
+     *          (1 for REVERSED)
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return  the number of wagons that were added, removed or reversed
+     */
+    public int getNumberOfWagons() {
+        return numberOfWagons;
+    }
+
+    /**
+     * @return  the train the added wagons came from or the removed wagons moved to
+     *          (return null if they were not part of a train before or after the change)
+     */
+    public Train getOtherTrain() {
+        return otherTrain;
+    }
+
+    @Override
+    public String toString() {
+        return type == Type.REVERSED
+                ? String.format("%s %d wagons", type, numberOfWagons)
+                : String.format("%s %d wagons at %d", type, numberOfWagons, position);
+    }
+}
@@ -0,0 +1,541 @@
+package models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only journal of all changes to a set of trains, from which the trains can be rebuilt.
+ *
+ * Trains are registered in the journal with an id and are changed through the journal,
+ * which applies every change to the train and appends a record of every change that succeeded.
+ * Records are collected in a buffer and written to the journal file in large batches.
+ * commit() writes all records appended since the last commit and forces them to disk at once,
+ * so all changes of a batch share the cost of one synchronous write (group commit).
+ * Records that were not committed can be lost in a crash.
+ *
+ * A snapshot holds the complete state of all trains. takeSnapshot() writes one and starts a new journal file,
+ * after which the older files are deleted; commit() takes a snapshot by itself once the journal file holds
+ * the number of records set with setSnapshotInterval. open() rebuilds the trains from the latest snapshot
+ * and the journal file that follows it, and cuts off a torn record at the end of that file.
+ *
+ * Files in the journal directory, where the generation counts the snapshots:
+ *  snapshot-generation.bin:    magic, version, generation, number of trains, then per train: id, train
+ *  journal-generation.log:     magic, version, generation, then records of: length, CRC-32C of body, body
+ *  body:                       type, train id, then per type:
+ *                                  ADD:        train
+ *                                  INSERT:     position, sequence
+ *                                  MOVE:       wagon id, id of the train the wagon moved to
+ *                                  SPLIT:      position, id of the train the wagons moved to
+ *                                  REVERSE:    -
+ * Headers and record lengths and checksums are 4-byte ints; ids and positions are varints;
+ * trains and sequences are encoded with TrainCodec.
+ *
+ * Wagon sequences that are inserted must not be part of a train, and the trains in the journal
+ * must not be changed other than through the journal. A journal is not thread-safe.
+ */
+public class TrainJournal implements Closeable {
+    private static final int MAGIC = 0x544A4E31;        // "TJN1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int ADD = 1, INSERT = 2, MOVE = 3, SPLIT = 4, REVERSE = 5;
+    private static final int MAX_VARINT_BYTES = 10;
+    private static final int MAX_WAGON_BYTES = 2 * MAX_VARINT_BYTES;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final long INTEGER_MASK = 0xFFFFFFFFL;
+
+    private final Path directory;
+    private long generation;
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);    // records not yet written to the channel
+    private final CRC32C checksum = new CRC32C();
+    private final IntHashMap<Train> trains = new IntHashMap<>();
+    private int[] trainIds = new int[16];                           // the ids of all trains, in order of addition
+    private int numberOfTrains;
+    private long numberOfRecords;                                   // records in the current journal file
+    private long snapshotInterval = 1_000_000;
+
+    private TrainJournal(Path directory, long generation) {
+        this.directory = directory;
+        this.generation = generation;
+    }
+
+    /**
+     * Opens the journal in the given directory, creating an empty one if there is none,
+     * and rebuilds all its trains
+     * @param directory
+     * @return  the journal
+     * @throws IOException  if the directory cannot be read or holds a damaged snapshot or journal
+     */
+    public static TrainJournal open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        long generation = 0;
+        try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(directory, "snapshot-*.bin")) {
+            for (Path snapshot : snapshots) {
+                generation = Math.max(generation, generationOf(snapshot));
+            }
+        }
+        TrainJournal journal = new TrainJournal(directory, generation);
+        if (generation > 0) {
+            journal.loadSnapshot(journal.snapshotFile(generation));
+        }
+        Path log = journal.journalFile(generation);
+        if (Files.exists(log)) {
+            journal.channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                long end = journal.replay();
+                journal.channel.truncate(end);
+                journal.channel.position(end);
+            } catch (IOException | RuntimeException e) {
+                journal.channel.close();
+                throw e;
+            }
+        } else {
+            journal.channel = journal.createJournalFile(generation);
+        }
+        journal.deleteOlderFiles();
+        return journal;
+    }
+
+    /**
+     * @return  the train with the given id
+     *          (return null if the journal has no train with the given trainId)
+     */
+    public Train getTrain(int trainId) {
+        return trains.get(trainId);
+    }
+
+    /**
+     * @return  the ids of all trains in the journal, in the order they were added
+     */
+    public int[] getTrainIds() {
+        return Arrays.copyOf(trainIds, numberOfTrains);
+    }
+
+    /**
+     * @return  the number of records in the current journal file, since the latest snapshot
+     */
+    public long getNumberOfRecords() {
+        return numberOfRecords;
+    }
+
+    /**
+     * @param snapshotInterval  the number of records after which commit() takes a snapshot
+     */
+    public void setSnapshotInterval(long snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Adds a train with all its wagons to the journal
+     * @param trainId
+     * @param train
+     * @throws IllegalArgumentException if the journal already has a train with the given trainId
+     */
+    public void addTrain(int trainId, Train train) throws IOException {
+        if (trains.containsKey(trainId)) {
+            throw new IllegalArgumentException("journal already has a train with id " + trainId);
+        }
+        int mark = beginRecord(ADD, trainId, maxTrainBytes(train));
+        TrainCodec.encode(train, buffer);
+        endRecord(mark);
+        register(trainId, train);
+    }
+
+    /**
+     * @see Train#attachToRear(Wagon)
+     */
+    public boolean attachToRear(int trainId, Wagon sequence) throws IOException {
+        return insertAtPosition(trainId, train(trainId).getNumberOfWagons() + 1, sequence);
+    }
+
+    /**
+     * @see Train#insertAtFront(Wagon)
+     */
+    public boolean insertAtFront(int trainId, Wagon sequence) throws IOException {
+        return insertAtPosition(trainId, 1, sequence);
+    }
+
+    /**
+     * @see Train#insertAtPosition(int, Wagon)
+     * @throws IllegalArgumentException if the sequence is part of a train
+     */
+    public boolean insertAtPosition(int trainId, int position, Wagon sequence) throws IOException {
+        Train train = train(trainId);
+        if (sequence != null && sequence.train != null) {
+            throw new IllegalArgumentException("wagon " + sequence.getId() + " is part of a train");
+        }
+        int numberOfWagons = sequence != null ? sequence.getSequenceLength() : 0;
+        int mark = beginRecord(INSERT, trainId, MAX_VARINT_BYTES + MAX_VARINT_BYTES
+                + (long) numberOfWagons * MAX_WAGON_BYTES);
+        TrainCodec.putVarint(buffer, position & INTEGER_MASK);
+        TrainCodec.encodeSequence(sequence, buffer);
+        if (!train.insertAtPosition(position, sequence)) {
+            buffer.position(mark);
+            return false;
+        }
+        endRecord(mark);
+        return true;
+    }
+
+    /**
+     * @see Train#moveOneWagon(int, Train)
+     */
+    public boolean moveOneWagon(int trainId, int wagonId, int toTrainId) throws IOException {
+        Train train = train(trainId), toTrain = train(toTrainId);
+        int mark = beginRecord(MOVE, trainId, 2 * MAX_VARINT_BYTES);
+        TrainCodec.putVarint(buffer, wagonId & INTEGER_MASK);
+        TrainCodec.putVarint(buffer, toTrainId & INTEGER_MASK);
+        if (!train.moveOneWagon(wagonId, toTrain)) {
+            buffer.position(mark);
+            return false;
+        }
+        endRecord(mark);
+        return true;
+    }
+
+    /**
+     * @see Train#splitAtPosition(int, Train)
+     */
+    public boolean splitAtPosition(int trainId, int position, int toTrainId) throws IOException {
+        Train train = train(trainId), toTrain = train(toTrainId);
+        int mark = beginRecord(SPLIT, trainId, 2 * MAX_VARINT_BYTES);
+        TrainCodec.putVarint(buffer, position & INTEGER_MASK);
+        TrainCodec.putVarint(buffer, toTrainId & INTEGER_MASK);
+        if (!train.splitAtPosition(position, toTrain)) {
+            buffer.position(mark);
+            return false;
+        }
+        endRecord(mark);
+        return true;
+    }
+
+    /**
+     * @see Train#reverse()
+     */
+    public void reverse(int trainId) throws IOException {
+        Train train = train(trainId);
+        int mark = beginRecord(REVERSE, trainId, 0);
+        train.reverse();
+        endRecord(mark);
+    }
+
+    /**
+     * Writes all records appended since the last commit to the journal file and forces them to disk,
+     * then takes a snapshot if the journal file has reached the snapshot interval
+     */
+    public void commit() throws IOException {
+        writeBuffer(channel);
+        channel.force(false);
+        if (numberOfRecords >= snapshotInterval) {
+            takeSnapshot();
+        }
+    }
+
+    /**
+     * Commits all records, writes the state of all trains to a new snapshot and starts a new journal file,
+     * and deletes the previous snapshot and journal file
+     */
+    public void takeSnapshot() throws IOException {
+        writeBuffer(channel);
+        channel.force(false);
+
+        long next = generation + 1;
+        Path temporary = directory.resolve("snapshot-" + next + ".tmp");
+        try (FileChannel snapshot = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(MAGIC).putInt(VERSION).putInt((int) next).putInt(numberOfTrains);
+            for (int i = 0; i < numberOfTrains; i++) {
+                Train train = trains.get(trainIds[i]);
+                reserve(snapshot, MAX_VARINT_BYTES + maxTrainBytes(train));
+                TrainCodec.putVarint(buffer, trainIds[i] & INTEGER_MASK);
+                TrainCodec.encode(train, buffer);
+            }
+            writeBuffer(snapshot);
+            snapshot.force(true);
+        } finally {
+            // the snapshot is built in the buffer of the journal: what is left of a failed snapshot
+            // must not be written to the journal file by the next commit
+            buffer.clear();
+        }
+        // the journal file of the new generation must exist before its snapshot is published:
+        // once the snapshot is in place, open() ignores the journal file of the current generation
+        FileChannel log = createJournalFile(next);
+        try {
+            Files.move(temporary, snapshotFile(next), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            try {
+                log.close();
+                Files.deleteIfExists(journalFile(next));
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        FileChannel previous = channel;
+        channel = log;
+        generation = next;
+        numberOfRecords = 0;
+        previous.close();
+        deleteOlderFiles();
+    }
+
+    /**
+     * Commits all records and closes the journal file
+     */
+    @Override
+    public void close() throws IOException {
+        writeBuffer(channel);
+        channel.force(false);
+        channel.close();
+    }
+
+    private Train train(int trainId) {
+        Train train = trains.get(trainId);
+        if (train == null) {
+            throw new IllegalArgumentException("journal has no train with id " + trainId);
+        }
+        return train;
+    }
+
+    private void register(int trainId, Train train) {
+        trains.put(trainId, train);
+        if (numberOfTrains == trainIds.length) {
+            trainIds = Arrays.copyOf(trainIds, 2 * numberOfTrains);
+        }
+        trainIds[numberOfTrains++] = trainId;
+    }
+
+    private static int maxTrainBytes(Train train) {
+        return 4 * MAX_VARINT_BYTES
+                + 3 * (train.getOrigin().length() + train.getDestination().length())
+                + train.getNumberOfWagons() * MAX_WAGON_BYTES;
+    }
+
+    /**
+     * Starts a record in the buffer, leaving room for its length and checksum
+     * @return  the position of the record in the buffer
+     */
+    private int beginRecord(int type, int trainId, long maxBodyBytes) throws IOException {
+        reserve(channel, RECORD_HEADER_SIZE + 1 + MAX_VARINT_BYTES + maxBodyBytes);
+        int mark = buffer.position();
+        buffer.position(mark + RECORD_HEADER_SIZE);
+        buffer.put((byte) type);
+        TrainCodec.putVarint(buffer, trainId & INTEGER_MASK);
+        return mark;
+    }
+
+    private void endRecord(int mark) throws IOException {
+        int length = buffer.position() - mark - RECORD_HEADER_SIZE;
+        checksum.reset();
+        checksum.update(buffer.array(), mark + RECORD_HEADER_SIZE, length);
+        buffer.putInt(mark, length);
+        buffer.putInt(mark + 4, (int) checksum.getValue());
+        numberOfRecords++;
+        if (buffer.position() >= BUFFER_SIZE) {
+            writeBuffer(channel);
+        }
+    }
+
+    /**
+     * Makes room in the buffer for the given number of bytes, writing the buffer to the given channel
+     * or enlarging it (only called between records)
+     */
+    private void reserve(FileChannel target, long numberOfBytes) throws IOException {
+        if (buffer.remaining() < numberOfBytes) {
+            writeBuffer(target);
+            if (buffer.remaining() < numberOfBytes) {
+                if (numberOfBytes > Integer.MAX_VALUE - 8) {
+                    throw new IOException("record too large for the journal");
+                }
+                buffer = ByteBuffer.allocate((int) Math.max(numberOfBytes, 2L * buffer.capacity()));
+            }
+        }
+    }
+
+    private void writeBuffer(FileChannel target) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private FileChannel createJournalFile(long generation) throws IOException {
+        FileChannel log = FileChannel.open(journalFile(generation), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putInt((int) generation);
+        header.flip();
+        while (header.hasRemaining()) {
+            log.write(header);
+        }
+        log.force(true);
+        return log;
+    }
+
+    private void loadSnapshot(Path file) throws IOException {
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (snapshot.getInt() != MAGIC || snapshot.getInt() != VERSION || snapshot.getInt() != (int) generation) {
+                throw new IOException(file + " is not a train journal snapshot");
+            }
+            for (int i = snapshot.getInt(); i > 0; i--) {
+                int trainId = (int) TrainCodec.getVarint(snapshot);
+                register(trainId, TrainCodec.decode(snapshot));
+            }
+        } catch (RuntimeException e) {
+            throw new IOException(file + " is damaged", e);
+        }
+    }
+
+    /**
+     * Applies all complete records of the journal file to the trains
+     * The trains use lazy reversal while the records are applied, so replaying a reversal takes constant time.
+     * @return  the offset after the last complete record
+     */
+    private long replay() throws IOException {
+        for (int i = 0; i < numberOfTrains; i++) {
+            trains.get(trainIds[i]).setLazyReversal(true);
+        }
+        try {
+            return replayRecords();
+        } finally {
+            for (int i = 0; i < numberOfTrains; i++) {
+                trains.get(trainIds[i]).setLazyReversal(false);
+            }
+        }
+    }
+
+    private long replayRecords() throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        in.flip();
+        if (!fill(in, HEADER_SIZE) || in.getInt() != MAGIC || in.getInt() != VERSION
+                || in.getInt() != (int) generation) {
+            throw new IOException(journalFile(generation) + " is not a train journal");
+        }
+        long size = channel.size();
+        long end = HEADER_SIZE;
+        while (fill(in, RECORD_HEADER_SIZE)) {
+            int length = in.getInt(in.position());
+            int expected = in.getInt(in.position() + 4);
+            if (length < 1 || length > size - end - RECORD_HEADER_SIZE) {
+                break;              // a damaged header or a record that runs past the end of the file
+            }
+            if (RECORD_HEADER_SIZE + length > in.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+                larger.put(in).flip();
+                in = larger;
+            }
+            if (!fill(in, RECORD_HEADER_SIZE + length)) {
+                break;              // the record was torn off by a crash
+            }
+            int start = in.position() + RECORD_HEADER_SIZE;
+            checksum.reset();
+            checksum.update(in.array(), start, length);
+            if ((int) checksum.getValue() != expected) {
+                break;
+            }
+            ByteBuffer body = in.duplicate();
+            body.limit(start + length).position(start);
+            try {
+                apply(body);
+            } catch (RuntimeException e) {
+                throw new IOException("journal record at offset " + end + " is damaged", e);
+            }
+            in.position(start + length);
+            end += RECORD_HEADER_SIZE + length;
+            numberOfRecords++;
+        }
+        return end;
+    }
+
+    /**
+     * Reads from the journal file until the given number of bytes is buffered or the file ends
+     * @return  whether the given number of bytes is buffered
+     */
+    private boolean fill(ByteBuffer in, int numberOfBytes) throws IOException {
+        if (in.remaining() < numberOfBytes) {
+            in.compact();
+            while (in.position() < numberOfBytes) {
+                if (channel.read(in) < 0) {
+                    break;
+                }
+            }
+            in.flip();
+        }
+        return in.remaining() >= numberOfBytes;
+    }
+
+    private void apply(ByteBuffer body) throws IOException {
+        int type = body.get();
+        int trainId = (int) TrainCodec.getVarint(body);
+        boolean applied;
+        switch (type) {
+            case ADD:
+                applied = !trains.containsKey(trainId);
+                if (applied) {
+                    Train train = TrainCodec.decode(body);
+                    train.setLazyReversal(true);
+                    register(trainId, train);
+                }
+                break;
+            case INSERT:
+                int position = (int) TrainCodec.getVarint(body);
+                applied = train(trainId).insertAtPosition(position, TrainCodec.decodeSequence(body));
+                break;
+            case MOVE:
+                int wagonId = (int) TrainCodec.getVarint(body);
+                applied = train(trainId).moveOneWagon(wagonId, train((int) TrainCodec.getVarint(body)));
+                break;
+            case SPLIT:
+                int splitPosition = (int) TrainCodec.getVarint(body);
+                applied = train(trainId).splitAtPosition(splitPosition, train((int) TrainCodec.getVarint(body)));
+                break;
+            case REVERSE:
+                train(trainId).reverse();
+                applied = true;
+                break;
+            default:
+                throw new IOException("unknown journal record type " + type);
+        }
+        if (!applied) {
+            throw new IOException("journal record does not apply to the trains");
+        }
+    }
+
+    private Path snapshotFile(long generation) {
+        return directory.resolve("snapshot-" + generation + ".bin");
+    }
+
+    private Path journalFile(long generation) {
+        return directory.resolve("journal-" + generation + ".log");
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(name.indexOf('-') + 1, name.lastIndexOf('.')));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void deleteOlderFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "{snapshot,journal}-*.{bin,log,tmp}")) {
+            for (Path file : files) {
+                if (generationOf(file) < generation || file.toString().endsWith(".tmp")) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package models;
+
+import java.util.List;
+
+/**
+ * Receives the changes of the sequence of wagons of a train, registered with Train.addListener.
+ *
+ * The changes are delivered in batches on the executor the listener was registered with.
+ * A listener receives the batches of a train one at a time and in order, but the train may have
+ * changed further by the time a batch is delivered: a listener that keeps a derived view of the train
+ * should apply the events to that view, rather than read the train.
+ */
+@FunctionalInterface
+public interface TrainListener {
+
+    /**
+     * @param train     the train that changed
+     * @param events    the changes since the previous batch, in order (not empty, unmodifiable)
+     */
+    void trainChanged(Train train, List<TrainEvent> events);
+}
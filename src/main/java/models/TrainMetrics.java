@@ -0,0 +1,244 @@
+package models;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide metrics of the Train operations: call counts, rejection reasons, latencies
+ * and the distribution of consist lengths after every change.
+ *
+ * Metrics are disabled by default; a disabled train operation only reads one volatile flag.
+ * When enabled, counters are striped LongAdders, so threads working on different trains do not contend,
+ * and latencies and lengths go into log-linear histograms with a single atomic increment per value.
+ * The metrics can be read with snapshot() or through JMX after registerMBean().
+ */
+public final class TrainMetrics {
+
+    /**
+     * The instrumented operations of Train
+     */
+    public enum Operation {
+        CAN_ATTACH, ATTACH_TO_REAR, INSERT_AT_FRONT, INSERT_AT_POSITION, MOVE_ONE_WAGON, SPLIT_AT_POSITION, REVERSE
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final Rejection[] REJECTIONS = Rejection.values();
+
+    private static volatile boolean enabled;
+
+    private static final LongAdder[] calls = new LongAdder[OPERATIONS.length];
+    private static final LongAdder[] rejections = new LongAdder[OPERATIONS.length * REJECTIONS.length];
+    private static final Histogram[] latencies = new Histogram[OPERATIONS.length];
+    private static final Histogram consistLengths = new Histogram();
+
+    static {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            calls[i] = new LongAdder();
+            latencies[i] = new Histogram();
+        }
+        for (int i = 0; i < rejections.length; i++) {
+            rejections[i] = new LongAdder();
+        }
+    }
+
+    private TrainMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        TrainMetrics.enabled = enabled;
+    }
+
+    /**
+     * Records one call of an operation
+     * @param operation
+     * @param startNanos    the System.nanoTime() at the start of the call
+     * @param rejection     the reason the call was rejected (null if it succeeded)
+     * @param consistLength the number of wagons of the train that received the wagons, after the call
+     */
+    static void record(Operation operation, long startNanos, Rejection rejection, int consistLength) {
+        int index = operation.ordinal();
+        latencies[index].record(System.nanoTime() - startNanos);
+        calls[index].increment();
+        if (rejection != null) {
+            rejections[index * REJECTIONS.length + rejection.ordinal()].increment();
+        } else if (operation != Operation.CAN_ATTACH) {
+            consistLengths.record(consistLength);
+        }
+    }
+
+    /**
+     * Clears all metrics
+     */
+    public static void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            calls[i].reset();
+            latencies[i].reset();
+        }
+        for (LongAdder rejection : rejections) {
+            rejection.reset();
+        }
+        consistLengths.reset();
+    }
+
+    /**
+     * @return  a copy of the current metrics
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    /**
+     * Registers the metrics as the MXBean models:type=TrainMetrics with the platform MBean server
+     * (no change if it is registered already)
+     */
+    public static void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("models:type=TrainMetrics");
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot register the train metrics", e);
+        }
+    }
+
+    /**
+     * An immutable copy of the metrics at one moment
+     * (counters are read one by one while operations may continue, so the copy is not atomic)
+     */
+    public static final class Snapshot {
+        private final long[] calls = new long[OPERATIONS.length];
+        private final long[] rejections = new long[TrainMetrics.rejections.length];
+        private final long[][] latencies = new long[OPERATIONS.length][];
+        private final long[] consistLengths;
+
+        private Snapshot() {
+            for (int i = 0; i < OPERATIONS.length; i++) {
+                this.calls[i] = TrainMetrics.calls[i].sum();
+                this.latencies[i] = TrainMetrics.latencies[i].counts();
+            }
+            for (int i = 0; i < this.rejections.length; i++) {
+                this.rejections[i] = TrainMetrics.rejections[i].sum();
+            }
+            this.consistLengths = TrainMetrics.consistLengths.counts();
+        }
+
+        public long getCalls(Operation operation) {
+            return this.calls[operation.ordinal()];
+        }
+
+        public long getRejections(Operation operation, Rejection rejection) {
+            return this.rejections[operation.ordinal() * REJECTIONS.length + rejection.ordinal()];
+        }
+
+        /**
+         * @return  the number of rejected calls of all operations for the given reason
+         */
+        public long getRejections(Rejection rejection) {
+            long total = 0;
+            for (Operation operation : OPERATIONS) {
+                total += getRejections(operation, rejection);
+            }
+            return total;
+        }
+
+        /**
+         * @param operation
+         * @param percentile    from 0 up to and including 100
+         * @return  the latency in nanoseconds at the given percentile, within about 3%
+         *          (return 0 if the operation was not called)
+         */
+        public long getLatencyNanos(Operation operation, double percentile) {
+            return Histogram.valueAtPercentile(this.latencies[operation.ordinal()], percentile);
+        }
+
+        /**
+         * @param percentile    from 0 up to and including 100
+         * @return  the number of wagons of a train after a change at the given percentile, within about 3%
+         *          (return 0 if no train was changed)
+         */
+        public long getConsistLength(double percentile) {
+            return Histogram.valueAtPercentile(this.consistLengths, percentile);
+        }
+    }
+
+    private static final class MXBean implements TrainMetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return TrainMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            TrainMetrics.setEnabled(enabled);
+        }
+
+        @Override
+        public Map<String, Long> getCalls() {
+            Snapshot snapshot = snapshot();
+            Map<String, Long> calls = new LinkedHashMap<>();
+            for (Operation operation : OPERATIONS) {
+                calls.put(operation.name(), snapshot.getCalls(operation));
+            }
+            return calls;
+        }
+
+        @Override
+        public Map<String, Long> getRejections() {
+            Snapshot snapshot = snapshot();
+            Map<String, Long> rejections = new LinkedHashMap<>();
+            for (Rejection rejection : REJECTIONS) {
+                rejections.put(rejection.name(), snapshot.getRejections(rejection));
+            }
+            return rejections;
+        }
+
+        @Override
+        public Map<String, Long> getMedianLatencyNanos() {
+            return latencies(50);
+        }
+
+        @Override
+        public Map<String, Long> getP99LatencyNanos() {
+            return latencies(99);
+        }
+
+        private Map<String, Long> latencies(double percentile) {
+            Snapshot snapshot = snapshot();
+            Map<String, Long> latencies = new LinkedHashMap<>();
+            for (Operation operation : OPERATIONS) {
+                latencies.put(operation.name(), snapshot.getLatencyNanos(operation, percentile));
+            }
+            return latencies;
+        }
+
+        @Override
+        public long getMedianConsistLength() {
+            return snapshot().getConsistLength(50);
+        }
+
+        @Override
+        public long getP99ConsistLength() {
+            return snapshot().getConsistLength(99);
+        }
+
+        @Override
+        public long getMaxConsistLength() {
+            return snapshot().getConsistLength(100);
+        }
+
+        @Override
+        public void reset() {
+            TrainMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package models;
+
+import java.util.Map;
+
+/**
+ * The JMX view of TrainMetrics, registered as models:type=TrainMetrics
+ */
+public interface TrainMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return  the number of calls by operation
+     */
+    Map<String, Long> getCalls();
+
+    /**
+     * @return  the number of rejected calls by rejection reason
+     */
+    Map<String, Long> getRejections();
+
+    /**
+     * @return  the median latency in nanoseconds by operation
+     */
+    Map<String, Long> getMedianLatencyNanos();
+
+    /**
+     * @return  the 99th percentile latency in nanoseconds by operation
+     */
+    Map<String, Long> getP99LatencyNanos();
+
+    long getMedianConsistLength();
+
+    long getP99ConsistLength();
+
+    long getMaxConsistLength();
+
+    void reset();
+}
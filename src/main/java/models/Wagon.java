@@ -8,6 +8,16 @@ public abstract class Wagon {
     private Wagon previousWagon;    // another wagon that is prepended at the front of this wagon
                                     // a.k.a. the predecessor of this wagon in a sequence
                                     // set to null if no predecessor is connected
+    Train train;                    // the train this wagon is part of, maintained by Train
+                                    // set to null if the wagon is not part of a train
+    boolean pooled;                 // whether the wagon is idle in a WagonPool, maintained by WagonPool
+    volatile int claimed;           // 1 while a ConcurrentTrain holds the wagon or is taking it in,
+                                    // maintained by ConcurrentTrain
+
+    // links of the positional index of the train this wagon is part of, maintained by WagonTree
+    Wagon treeLeft, treeRight, treeParent;
+    int treeSize = 1;
+    int treePriority;
 
 
     // representation invariant propositions:
@@ -26,8 +36,21 @@ public abstract class Wagon {
         return this.previousWagon;
     }
 
+    /**
+     * Changes the id of this wagon
+     * @param id
+     * @throws IllegalArgumentException if this wagon is part of a train and another wagon in that train
+     *                                  (or in the fleet of that train) already has the given id
+     */
     public void setId(int id) {
+        if (train != null && !train.isIdAvailable(this, id)) {
+            throw new IllegalArgumentException("wagon id " + id + " is already used in the train or its fleet");
+        }
+        int oldId = this.id;
         this.id = id;
+        if (train != null) {
+            train.idChanged(this, oldId);
+        }
     }
 
     public void setNextWagon(Wagon nextWagon) {
@@ -64,11 +87,11 @@ public abstract class Wagon {
      * @return  the wagon found
      */
     public Wagon getLastWagonAttached() {
-        if (this.hasNextWagon()) {
-            return this.nextWagon.getLastWagonAttached();
-        } else {
-            return this;
+        Wagon wagon = this;
+        while (wagon.nextWagon != null) {
+            wagon = wagon.nextWagon;
         }
+        return wagon;
     }
 
     /**
@@ -77,15 +100,9 @@ public abstract class Wagon {
      */
     public int getSequenceLength() {
         int length = 1;
-        Wagon temp = this.nextWagon;
-        if(!this.hasNextWagon()){
-            return 1;
-        }
-        while(this.hasNextWagon()){
-           this.nextWagon = this.nextWagon.getNextWagon();
+        for (Wagon wagon = this.nextWagon; wagon != null; wagon = wagon.nextWagon) {
             length++;
         }
-        this.nextWagon = temp;
         return length;
     }
 
@@ -149,23 +166,14 @@ public abstract class Wagon {
     public void removeFromSequence() {
         Wagon prev = this.previousWagon;
         Wagon next = this.nextWagon;
-       if(this.hasNextWagon() && !this.hasPreviousWagon()){
-           Wagon wagon = this.nextWagon;
-           this.setNextWagon(null);
-           wagon.setPreviousWagon(null);
-       }
-
-        else if(!this.hasNextWagon() && this.hasPreviousWagon()){
-            this.previousWagon.setNextWagon(null);
-            this.setNextWagon(null);
-            this.setPreviousWagon(null);
-      }else {
-
-        this.previousWagon.setNextWagon(next);
-        this.nextWagon.setPreviousWagon(prev);
+        if (prev != null) {
+            prev.setNextWagon(next);
+        }
+        if (next != null) {
+            next.setPreviousWagon(prev);
+        }
         this.setNextWagon(null);
-        this.setPreviousWagon(null);}
-
+        this.setPreviousWagon(null);
     }
 
 
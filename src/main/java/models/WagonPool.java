@@ -0,0 +1,132 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * A pool of reusable wagons, for simulations that create and discard many wagons.
+ *
+ * passengerWagon() and freightWagon() hand out an idle wagon of the pool, reinitialised with the given properties,
+ * and only create a new wagon when the pool has no idle wagon of that type.
+ * release() returns wagons to the pool; they must not be used afterwards.
+ * Together with the train operations (attachToRear, insertAtFront, insertAtPosition, moveOneWagon,
+ * splitAtPosition), which do not allocate once the indices of the trains have grown to their working size,
+ * this lets a simulation change its consists without creating garbage.
+ *
+ * A pool is not thread-safe.
+ */
+public final class WagonPool {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private PassengerWagon[] passengerWagons = new PassengerWagon[INITIAL_CAPACITY];   // idle passenger wagons
+    private int numberOfPassengerWagons;
+    private FreightWagon[] freightWagons = new FreightWagon[INITIAL_CAPACITY];         // idle freight wagons
+    private int numberOfFreightWagons;
+
+    /**
+     * Fills the pool up to the given numbers of idle wagons, so they need not be created later
+     * @param passengerWagons
+     * @param freightWagons
+     */
+    public void reserve(int passengerWagons, int freightWagons) {
+        while (this.numberOfPassengerWagons < passengerWagons) {
+            PassengerWagon wagon = new PassengerWagon(0, 0);
+            wagon.pooled = true;
+            push(wagon);
+        }
+        while (this.numberOfFreightWagons < freightWagons) {
+            FreightWagon wagon = new FreightWagon(0, 0);
+            wagon.pooled = true;
+            push(wagon);
+        }
+    }
+
+    public int getNumberOfIdlePassengerWagons() {
+        return this.numberOfPassengerWagons;
+    }
+
+    public int getNumberOfIdleFreightWagons() {
+        return this.numberOfFreightWagons;
+    }
+
+    /**
+     * @param wagonId
+     * @param numberOfSeats
+     * @return  an idle passenger wagon of the pool with the given properties (or a new one if there is none)
+     */
+    public PassengerWagon passengerWagon(int wagonId, int numberOfSeats) {
+        if (this.numberOfPassengerWagons == 0) {
+            return new PassengerWagon(wagonId, numberOfSeats);
+        }
+        PassengerWagon wagon = this.passengerWagons[--this.numberOfPassengerWagons];
+        this.passengerWagons[this.numberOfPassengerWagons] = null;
+        wagon.pooled = false;
+        wagon.setId(wagonId);
+        wagon.setNumberOfSeats(numberOfSeats);
+        return wagon;
+    }
+
+    /**
+     * @param wagonId
+     * @param maxWeight
+     * @return  an idle freight wagon of the pool with the given properties (or a new one if there is none)
+     */
+    public FreightWagon freightWagon(int wagonId, int maxWeight) {
+        if (this.numberOfFreightWagons == 0) {
+            return new FreightWagon(wagonId, maxWeight);
+        }
+        FreightWagon wagon = this.freightWagons[--this.numberOfFreightWagons];
+        this.freightWagons[this.numberOfFreightWagons] = null;
+        wagon.pooled = false;
+        wagon.setId(wagonId);
+        wagon.setMaxWeight(maxWeight);
+        return wagon;
+    }
+
+    /**
+     * Returns the given wagon and all wagons attached at its tail to the pool
+     * The wagon is detached from its previous wagon first.
+     * @param sequence  a sequence of wagons that is not part of any train
+     * @throws IllegalArgumentException if a wagon of the sequence is part of a train, already idle in a pool,
+     *          or neither a passenger wagon nor a freight wagon
+     *          (no wagon is released then)
+     */
+    public void release(Wagon sequence) {
+        for (Wagon wagon = sequence; wagon != null; wagon = wagon.getNextWagon()) {
+            if (wagon.train != null) {
+                throw new IllegalArgumentException("wagon " + wagon.getId() + " is part of a train");
+            }
+            if (!(wagon instanceof PassengerWagon || wagon instanceof FreightWagon)) {
+                throw new IllegalArgumentException("wagon " + wagon.getId() + " cannot be pooled");
+            }
+            if (wagon.pooled) {
+                throw new IllegalArgumentException("wagon " + wagon.getId() + " has already been released");
+            }
+        }
+        if (sequence != null) {
+            sequence.detachFromPrevious();
+        }
+        Wagon wagon = sequence;
+        while (wagon != null) {
+            Wagon next = wagon.getNextWagon();
+            wagon.setNextWagon(null);
+            wagon.setPreviousWagon(null);
+            wagon.pooled = true;
+            push(wagon);
+            wagon = next;
+        }
+    }
+
+    private void push(Wagon wagon) {
+        if (wagon instanceof PassengerWagon) {
+            if (this.numberOfPassengerWagons == this.passengerWagons.length) {
+                this.passengerWagons = Arrays.copyOf(this.passengerWagons, 2 * this.numberOfPassengerWagons);
+            }
+            this.passengerWagons[this.numberOfPassengerWagons++] = (PassengerWagon) wagon;
+        } else {
+            if (this.numberOfFreightWagons == this.freightWagons.length) {
+                this.freightWagons = Arrays.copyOf(this.freightWagons, 2 * this.numberOfFreightWagons);
+            }
+            this.freightWagons[this.numberOfFreightWagons++] = (FreightWagon) wagon;
+        }
+    }
+}
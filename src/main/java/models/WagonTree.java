@@ -0,0 +1,263 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * Positional index over the sequence of wagons of a train.
+ * The wagons are kept in an implicit treap: a binary tree that is ordered by position
+ * (in-order traversal yields the sequence) and heap-ordered by a random priority,
+ * which keeps it balanced with high probability.
+ * Every node stores the size of its subtree, so wagons can be found by position
+ * and positions can be computed from wagons in O(log n).
+ * The tree links are stored in the wagons themselves (Wagon.treeLeft etc.),
+ * so the index needs no extra objects per wagon.
+ */
+final class WagonTree {
+    private Wagon root;
+    private Wagon splitRest;            // second result of split()
+    private Wagon[] buildStack = new Wagon[16];
+    private int seed = 0x2545F491;
+
+    /* Representation invariants:
+        root == null || root.treeParent == null
+        for every node: node.treeSize == 1 + size(node.treeLeft) + size(node.treeRight)
+        for every child: child.treeParent == node and child.treePriority <= node.treePriority
+     */
+
+    /**
+     * @return  the number of wagons in the tree
+     */
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * @param position  a position starting at 1 for the first wagon
+     * @return  the wagon at the given position
+     *          (return null if the position is not valid)
+     */
+    Wagon get(int position) {
+        if (position < 1 || position > size(root)) {
+            return null;
+        }
+        Wagon node = root;
+        while (true) {
+            int leftSize = size(node.treeLeft);
+            if (position <= leftSize) {
+                node = node.treeLeft;
+            } else if (position == leftSize + 1) {
+                return node;
+            } else {
+                position -= leftSize + 1;
+                node = node.treeRight;
+            }
+        }
+    }
+
+    /**
+     * @param wagon     a wagon in the tree
+     * @return  the position of the wagon, starting at 1 for the first wagon
+     */
+    int positionOf(Wagon wagon) {
+        int position = size(wagon.treeLeft) + 1;
+        for (Wagon node = wagon; node.treeParent != null; node = node.treeParent) {
+            if (node == node.treeParent.treeRight) {
+                position += size(node.treeParent.treeLeft) + 1;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Inserts a sequence of wagons at the given position
+     * @param position  a position from 1 up to and including size() + 1
+     * @param sequence  the first wagon of a sequence that is not (yet) linked to other wagons at its tail
+     */
+    void insert(int position, Wagon sequence) {
+        Wagon inserted = build(sequence);
+        if (position > size(root)) {
+            root = merge(root, inserted);
+        } else {
+            Wagon front = split(root, position - 1);
+            root = merge(merge(front, inserted), splitRest);
+        }
+        splitRest = null;
+    }
+
+    /**
+     * Removes a single wagon from the tree
+     * @param wagon     a wagon in the tree
+     */
+    void remove(Wagon wagon) {
+        Wagon parent = wagon.treeParent;
+        Wagon replacement = merge(wagon.treeLeft, wagon.treeRight);
+        if (replacement != null) {
+            replacement.treeParent = parent;
+        }
+        if (parent == null) {
+            root = replacement;
+        } else {
+            if (parent.treeLeft == wagon) {
+                parent.treeLeft = replacement;
+            } else {
+                parent.treeRight = replacement;
+            }
+            for (Wagon node = parent; node != null; node = node.treeParent) {
+                node.treeSize--;
+            }
+        }
+        clearLinks(wagon);
+    }
+
+    /**
+     * Removes all wagons from the given position up to the end of the sequence
+     * @param position  a position from 1 up to and including size()
+     */
+    void truncate(int position) {
+        root = split(root, position - 1);
+        splitRest = null;
+    }
+
+    /**
+     * Removes count wagons starting at the given position
+     * @param position  a position from 1 up to and including size()
+     * @param count     the number of wagons to remove, at most size() - position + 1
+     */
+    void removeRange(int position, int count) {
+        Wagon front = split(root, position - 1);
+        split(splitRest, count);
+        root = merge(front, splitRest);
+        splitRest = null;
+    }
+
+    /**
+     * Replaces the contents of the tree by the given sequence
+     * @param sequence  the first wagon of a sequence (can be null)
+     */
+    void rebuild(Wagon sequence) {
+        root = sequence != null ? build(sequence) : null;
+    }
+
+    void clear() {
+        root = null;
+    }
+
+    private static int size(Wagon node) {
+        return node == null ? 0 : node.treeSize;
+    }
+
+    private static void update(Wagon node) {
+        node.treeSize = 1 + size(node.treeLeft) + size(node.treeRight);
+        if (node.treeLeft != null) {
+            node.treeLeft.treeParent = node;
+        }
+        if (node.treeRight != null) {
+            node.treeRight.treeParent = node;
+        }
+    }
+
+    private static void clearLinks(Wagon wagon) {
+        wagon.treeLeft = null;
+        wagon.treeRight = null;
+        wagon.treeParent = null;
+        wagon.treeSize = 1;
+    }
+
+    /**
+     * Concatenates two trees
+     * @return  the root of the tree holding all wagons of front followed by all wagons of rear
+     */
+    private static Wagon merge(Wagon front, Wagon rear) {
+        Wagon merged;
+        if (front == null || rear == null) {
+            merged = front != null ? front : rear;
+        } else if (front.treePriority > rear.treePriority) {
+            front.treeRight = merge(front.treeRight, rear);
+            update(front);
+            merged = front;
+        } else {
+            rear.treeLeft = merge(front, rear.treeLeft);
+            update(rear);
+            merged = rear;
+        }
+        if (merged != null) {
+            merged.treeParent = null;
+        }
+        return merged;
+    }
+
+    /**
+     * Splits a tree after its first count wagons
+     * @return  the root of the tree with the first count wagons;
+     *          the root of the tree with the remaining wagons is left in splitRest
+     */
+    private Wagon split(Wagon node, int count) {
+        if (node == null) {
+            splitRest = null;
+            return null;
+        }
+        Wagon front;
+        if (size(node.treeLeft) >= count) {
+            front = split(node.treeLeft, count);
+            node.treeLeft = splitRest;
+            update(node);
+            splitRest = node;
+        } else {
+            node.treeRight = split(node.treeRight, count - size(node.treeLeft) - 1);
+            update(node);
+            front = node;
+        }
+        if (front != null) {
+            front.treeParent = null;
+        }
+        if (splitRest != null) {
+            splitRest.treeParent = null;
+        }
+        return front;
+    }
+
+    /**
+     * Builds a balanced tree from a linked sequence of wagons in linear time,
+     * by assigning random priorities and building the Cartesian tree with a stack
+     * @param sequence  the first wagon of the sequence, which ends at the first wagon without a next wagon
+     * @return  the root of the tree
+     */
+    private Wagon build(Wagon sequence) {
+        int top = 0;
+        for (Wagon wagon = sequence; wagon != null; wagon = wagon.getNextWagon()) {
+            clearLinks(wagon);
+            wagon.treePriority = nextPriority();
+            Wagon lastPopped = null;
+            while (top > 0 && buildStack[top - 1].treePriority < wagon.treePriority) {
+                lastPopped = buildStack[--top];
+                buildStack[top] = null;
+                update(lastPopped);
+            }
+            wagon.treeLeft = lastPopped;
+            if (top > 0) {
+                buildStack[top - 1].treeRight = wagon;
+            }
+            if (top == buildStack.length) {
+                buildStack = Arrays.copyOf(buildStack, top * 2);
+            }
+            buildStack[top++] = wagon;
+        }
+        while (top > 1) {
+            update(buildStack[--top]);
+            buildStack[top] = null;
+        }
+        Wagon built = buildStack[0];
+        update(built);
+        built.treeParent = null;
+        buildStack[0] = null;
+        return built;
+    }
+
+    private int nextPriority() {
+        // xorshift: cheap, allocation free and good enough to keep the treap balanced
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+}
@@ -0,0 +1,180 @@
+package models;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Reclassifies the wagons of many inbound trains into outbound trains in a single batch, as in a hump yard.
+ *
+ * A routing function assigns every wagon to its outbound train. Every run of consecutive wagons with the same
+ * outbound train is then cut out of its inbound train in one piece, and every outbound train
+ * receives all its wagons as one sequence at its rear, in the order of the inbound trains and their wagons.
+ * The cost is linear in the number of wagons, plus a logarithmic positional cut for every run.
+ * Inbound trains only lose the runs that move: a train that keeps all its wagons is not changed at all,
+ * and the others keep their orientation and report each run they lose to their listeners.
+ *
+ * A wagon stays in its inbound train when it is routed to null or to one of the inbound trains,
+ * or when it cannot be attached to its outbound train: when the engine of the outbound train has no capacity left,
+ * when the wagon type does not match the outbound train, or when the outbound train (or its fleet)
+ * already has a wagon with the same id. Wagons that stay keep their original order.
+ *
+ * A reclassifier keeps its working storage between batches, so it is not thread-safe.
+ */
+public class YardReclassifier {
+
+    /**
+     * A sequence of wagons being collected for one outbound train
+     */
+    private static final class Chain {
+        final Train train;
+        Wagon first, last;
+        int count;                  // the number of wagons accepted for the train
+        boolean typed, freight;     // the type of wagon the train accepts, once known
+
+        Chain(Train train) {
+            this.train = train;
+            if (train.hasWagons()) {
+                this.typed = true;
+                this.freight = train.isFreightTrain();
+            }
+        }
+
+        /**
+         * Appends the given sequence, which is not part of any train
+         */
+        void append(Wagon sequence) {
+            if (this.last == null) {
+                this.first = sequence;
+            } else {
+                sequence.attachTo(this.last);
+            }
+            this.last = sequence.getLastWagonAttached();
+        }
+    }
+
+    private final IdentityHashMap<Train, Chain> outboundChains = new IdentityHashMap<>();
+    private final IdentityHashMap<Train, Boolean> inboundTrains = new IdentityHashMap<>();
+    private final IntHashSet movedIds = new IntHashSet();     // ids of the wagons moved in this batch
+    private Train[] routes = new Train[16];                     // the outbound train of every wagon, in batch order
+
+    /**
+     * Moves the wagons of all inbound trains to the outbound trains chosen by the routing function
+     * The routing function is called once for every wagon, before any train is changed,
+     * so an exception from the routing function leaves all trains unchanged.
+     * @param inboundTrains
+     * @param routing   gives the outbound train of a wagon (or null to keep it in its inbound train)
+     * @return  the number of wagons that were moved to an outbound train
+     * @throws IllegalArgumentException if a train is listed more than once (no train is changed then)
+     */
+    public int reclassify(List<Train> inboundTrains, Function<? super Wagon, Train> routing) {
+        int numberOfWagons = 0;
+        for (Train train : inboundTrains) {
+            if (this.inboundTrains.put(train, Boolean.TRUE) != null) {
+                this.inboundTrains.clear();
+                throw new IllegalArgumentException("inbound train is listed twice: " + train.getEngine());
+            }
+            numberOfWagons += train.getNumberOfWagons();
+        }
+        if (this.routes.length < numberOfWagons) {
+            this.routes = new Train[Math.max(numberOfWagons, 2 * this.routes.length)];
+        }
+        try {
+            int i = 0;
+            for (Train train : inboundTrains) {
+                for (Wagon wagon : train) {
+                    Train outbound = routing.apply(wagon);
+                    this.routes[i++] = outbound == null || this.inboundTrains.containsKey(outbound) ? null : outbound;
+                }
+            }
+            return regroup(inboundTrains);
+        } finally {
+            Arrays.fill(this.routes, 0, numberOfWagons, null);
+            this.inboundTrains.clear();
+            this.outboundChains.clear();
+            this.movedIds.clear();
+        }
+    }
+
+    private int regroup(List<Train> inboundTrains) {
+        int start = 0, moved = 0;
+        Train lastRoute = null;
+        Chain lastChain = null;
+        for (Train train : inboundTrains) {
+            int i = start, movedFromTrain = 0;
+            for (Wagon wagon : train) {
+                Train route = this.routes[i];
+                if (route != lastRoute) {
+                    lastRoute = route;
+                    lastChain = route != null ? this.outboundChains.computeIfAbsent(route, Chain::new) : null;
+                }
+                if (lastChain != null && accepts(lastChain, wagon)) {
+                    lastChain.count++;
+                    this.movedIds.add(wagon.getId());
+                    movedFromTrain++;
+                } else {
+                    this.routes[i] = null;      // the wagon stays
+                }
+                i++;
+            }
+            if (movedFromTrain > 0) {
+                cutRuns(train, start, i);
+            }
+            moved += movedFromTrain;
+            start = i;
+        }
+        for (Chain chain : this.outboundChains.values()) {
+            if (chain.first != null && !chain.train.attachToRear(chain.first)) {
+                throw new IllegalStateException("outbound train rejected checked wagons");
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Cuts every run of consecutive wagons with the same outbound train out of the given inbound train
+     * and appends it to the chain of its outbound train, in the order of the inbound train
+     * @param train
+     * @param start     the index in routes of the first wagon of the train
+     * @param end       the index in routes after the last wagon of the train
+     */
+    private void cutRuns(Train train, int start, int end) {
+        int removed = 0;
+        int i = start;
+        while (i < end) {
+            Train route = this.routes[i];
+            int runStart = i;
+            do {
+                i++;
+            } while (i < end && this.routes[i] == route);
+            if (route != null) {
+                int count = i - runStart;
+                this.outboundChains.get(route).append(train.removeSequence(runStart - start + 1 - removed, count));
+                removed += count;
+            }
+        }
+    }
+
+    /**
+     * Determines if the given wagon can be appended to the wagons collected for an outbound train
+     * (the same checks as Train.canAttach, applied one wagon at a time)
+     */
+    private boolean accepts(Chain chain, Wagon wagon) {
+        Train outbound = chain.train;
+        if (outbound.getNumberOfWagons() + chain.count >= outbound.getEngine().getMaxWagons()) {
+            return false;
+        }
+        boolean freight = wagon instanceof FreightWagon;
+        if (chain.typed && chain.freight != freight) {
+            return false;
+        }
+        if (this.movedIds.contains(wagon.getId()) || outbound.findWagonById(wagon.getId()) != null
+                || outbound.fleet != null && outbound.fleet.hasOtherWagonWithId(wagon)) {
+            return false;
+        }
+        chain.typed = true;
+        chain.freight = freight;
+        return true;
+    }
+}
@@ -0,0 +1,140 @@
+import models.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactTrainTest {
+    CompactTrain passengerTrain, trainWithoutWagons, freightTrain;
+
+    PassengerWagon passengerWagon1, passengerWagon2, passengerWagon3;
+    FreightWagon freightWagon1, freightWagon2;
+
+    @BeforeEach
+    private void setup() {
+        Locomotive rembrandt = new Locomotive(24531, 7);
+        passengerTrain = new CompactTrain(rembrandt, "Amsterdam", "Paris");
+        passengerTrain.attachToRear(new PassengerWagon(8001,32));
+        passengerTrain.attachToRear(new PassengerWagon(8002,32));
+        passengerTrain.attachToRear(new PassengerWagon(8003,18));
+        passengerTrain.attachToRear(new PassengerWagon(8004,44));
+        passengerTrain.attachToRear(new PassengerWagon(8005,44));
+        passengerTrain.attachToRear(new PassengerWagon(8006,44));
+        passengerTrain.attachToRear(new PassengerWagon(8007,40));
+
+        Locomotive vanGogh = new Locomotive(29123, 7);
+        trainWithoutWagons = new CompactTrain(vanGogh, "Amsterdam", "London");
+
+        Locomotive clusius = new Locomotive(63427, 50);
+        freightTrain = new CompactTrain(clusius, "Amsterdam", "Berlin");
+        freightTrain.attachFreightWagon(9001,50000);
+        freightTrain.attachFreightWagon(9002,40000);
+        freightTrain.attachFreightWagon(9003,30000);
+
+        passengerWagon1 = new PassengerWagon(8011,50);
+        passengerWagon2 = new PassengerWagon(8012,50);
+        passengerWagon3 = new PassengerWagon(8013,50);
+        passengerWagon2.attachTo(passengerWagon1);
+        passengerWagon3.attachTo(passengerWagon2);
+        freightWagon1 = new FreightWagon(9011,60000);
+        freightWagon2 = new FreightWagon(9012,60000);
+        freightWagon2.attachTo(freightWagon1);
+    }
+
+    @Test
+    public void T41_reportsTheSameCumulativePropertiesAsATrain() {
+        assertTrue(passengerTrain.isPassengerTrain());
+        assertTrue(freightTrain.isFreightTrain());
+        assertFalse(trainWithoutWagons.isPassengerTrain() || trainWithoutWagons.isFreightTrain());
+        assertEquals(7, passengerTrain.getNumberOfWagons());
+        assertEquals(254, passengerTrain.getTotalNumberOfSeats());
+        assertEquals(0, passengerTrain.getTotalMaxWeight());
+        assertEquals(120000, freightTrain.getTotalMaxWeight());
+        assertEquals(0, trainWithoutWagons.getTotalNumberOfSeats());
+    }
+
+    @Test
+    public void T41_findsWagonsByPositionAndById() {
+        assertEquals(8001, passengerTrain.findWagonAtPosition(1).getId());
+        assertEquals(8007, passengerTrain.findWagonAtPosition(7).getId());
+        assertNull(passengerTrain.findWagonAtPosition(8));
+        assertNull(passengerTrain.findWagonAtPosition(0));
+        assertEquals(40000, ((FreightWagon) freightTrain.findWagonById(9002)).getMaxWeight());
+        assertEquals(2, freightTrain.findPositionById(9002));
+        assertNull(freightTrain.findWagonById(9000));
+        assertEquals(18, passengerTrain.getNumberOfSeatsAt(3));
+
+        // the wagons found are detached copies
+        int seats = passengerTrain.getTotalNumberOfSeats();
+        PassengerWagon copy = (PassengerWagon) passengerTrain.findWagonAtPosition(3);
+        copy.setNumberOfSeats(80);
+        copy.setId(8099);
+        assertEquals(18, passengerTrain.getNumberOfSeatsAt(3));
+        assertEquals(seats, passengerTrain.getTotalNumberOfSeats());
+        assertEquals(3, passengerTrain.findPositionById(8003));
+        assertEquals(0, passengerTrain.findPositionById(8099));
+    }
+
+    @Test
+    public void T41_rejectsTheSameAttachmentsAsATrain() {
+        assertFalse(passengerTrain.attachToRear(passengerWagon1));
+        assertFalse(freightTrain.insertAtFront(passengerWagon1));
+        assertFalse(passengerTrain.insertAtFront(freightWagon1));
+        assertFalse(trainWithoutWagons.insertAtPosition(2, passengerWagon1));
+        assertTrue(trainWithoutWagons.insertAtFront(passengerWagon1));
+        assertEquals(3, trainWithoutWagons.getNumberOfWagons());
+        assertFalse(trainWithoutWagons.insertAtFront(passengerWagon1));
+        assertTrue(freightTrain.insertAtPosition(2, freightWagon1));
+        assertEquals(9012, freightTrain.findWagonAtPosition(3).getId());
+        assertEquals(240000, freightTrain.getTotalMaxWeight());
+    }
+
+    @Test
+    public void T41_rejectsSequencesThatRepeatAnIdLikeATrain() {
+        PassengerWagon repeated = new PassengerWagon(8011, 20);
+        repeated.attachTo(passengerWagon3);
+        Train linkedTrain = new Train(new Locomotive(29123, 7), "Amsterdam", "London");
+        assertFalse(linkedTrain.insertAtPosition(1, passengerWagon1));
+        assertFalse(trainWithoutWagons.canAttach(passengerWagon1));
+        assertFalse(trainWithoutWagons.insertAtPosition(1, passengerWagon1));
+        assertFalse(trainWithoutWagons.attachToRear(passengerWagon1));
+        assertEquals(0, trainWithoutWagons.getNumberOfWagons());
+
+        repeated.setId(8014);
+        assertTrue(trainWithoutWagons.attachToRear(passengerWagon1));
+        assertEquals(4, trainWithoutWagons.getNumberOfWagons());
+        assertTrue(linkedTrain.attachToRear(passengerWagon1));
+        assertEquals(4, linkedTrain.getNumberOfWagons());
+    }
+
+    @Test
+    public void T41_splitsMovesAndReversesLikeATrain() {
+        assertTrue(passengerTrain.splitAtPosition(5, trainWithoutWagons));
+        assertEquals(3, trainWithoutWagons.getNumberOfWagons());
+        assertEquals(4, passengerTrain.getNumberOfWagons());
+        assertFalse(trainWithoutWagons.moveOneWagon(8001, passengerTrain));
+        assertTrue(trainWithoutWagons.moveOneWagon(8006, passengerTrain));
+        assertEquals(8006, passengerTrain.findWagonAtPosition(5).getId());
+        passengerTrain.reverse();
+        assertEquals(8006, passengerTrain.findWagonAtPosition(1).getId());
+        assertEquals(8001, passengerTrain.findWagonAtPosition(5).getId());
+        assertEquals(32 + 32 + 18 + 44 + 44, passengerTrain.getTotalNumberOfSeats());
+        assertFalse(new CompactTrain(new Locomotive(1, 1), "A", "B").splitAtPosition(1, passengerTrain));
+    }
+
+    @Test
+    public void T41_convertsToAndFromALinkedTrain() {
+        Train linkedTrain = freightTrain.toTrain();
+        assertEquals(3, linkedTrain.getNumberOfWagons());
+        assertEquals(120000, linkedTrain.getTotalMaxWeight());
+        assertEquals(9003, linkedTrain.getLastWagonAttached().getId());
+
+        CompactTrain copy = CompactTrain.copyOf(linkedTrain);
+        int sumIds = 0;
+        for (Wagon wagon : copy) {
+            sumIds += wagon.getId();
+        }
+        assertEquals(27006, sumIds);
+    }
+}
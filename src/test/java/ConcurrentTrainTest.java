@@ -0,0 +1,165 @@
+import models.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentTrainTest {
+    static final int NUMBER_OF_TRAINS = 8;
+    static final int WAGONS_PER_TRAIN = 200;
+
+    @Test
+    public void T81_wagonLinksStayConsistentUnderContention() throws Exception {
+        ConcurrentTrain[] trains = new ConcurrentTrain[NUMBER_OF_TRAINS];
+        for (int t = 0; t < NUMBER_OF_TRAINS; t++) {
+            trains[t] = new ConcurrentTrain(new Locomotive(t, NUMBER_OF_TRAINS * WAGONS_PER_TRAIN), "A", "B");
+            for (int w = 0; w < WAGONS_PER_TRAIN; w++) {
+                assertTrue(trains[t].attachToRear(new FreightWagon(t * WAGONS_PER_TRAIN + w, 1000 + w)));
+            }
+        }
+        int expectedMaxWeight = 0;
+        for (ConcurrentTrain train : trains) {
+            expectedMaxWeight += train.getTotalMaxWeight();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 6; thread++) {
+            long seed = thread;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int step = 0; step < 20000; step++) {
+                    ConcurrentTrain from = trains[random.nextInt(NUMBER_OF_TRAINS)];
+                    ConcurrentTrain to = trains[random.nextInt(NUMBER_OF_TRAINS)];
+                    switch (random.nextInt(10)) {
+                        case 0:
+                            from.splitAtPosition(1 + random.nextInt(WAGONS_PER_TRAIN), to);
+                            break;
+                        case 1:
+                            from.reverse();
+                            break;
+                        case 2:
+                            from.getTotalMaxWeight();
+                            from.getWagonIds();
+                            break;
+                        default:
+                            from.moveOneWagon(random.nextInt(NUMBER_OF_TRAINS * WAGONS_PER_TRAIN), to);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(expectedMaxWeight, assertConsistent(trains, NUMBER_OF_TRAINS * WAGONS_PER_TRAIN));
+    }
+
+    /**
+     * Checks that the wagons 0 up to numberOfWagons are each in exactly one of the trains, with consistent links
+     * @return  the total max weight of the wagons in the trains
+     */
+    private static int assertConsistent(ConcurrentTrain[] trains, int numberOfWagons) {
+        boolean[] seen = new boolean[numberOfWagons];
+        int totalMaxWeight = 0;
+        for (ConcurrentTrain train : trains) {
+            int[] count = {0};
+            int[] maxWeight = {0};
+            train.forEachWagon(wagon -> {
+                assertTrue(!wagon.hasNextWagon() || wagon == wagon.getNextWagon().getPreviousWagon());
+                assertTrue(!wagon.hasPreviousWagon() || wagon == wagon.getPreviousWagon().getNextWagon());
+                assertFalse(seen[wagon.getId()], "wagon " + wagon.getId() + " is in two trains");
+                seen[wagon.getId()] = true;
+                count[0]++;
+                maxWeight[0] += ((FreightWagon) wagon).getMaxWeight();
+            });
+            int[] ids = train.getWagonIds();
+            assertEquals(count[0], ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                assertEquals(i + 1, train.findPositionById(ids[i]));
+            }
+            assertEquals(count[0], train.getNumberOfWagons());
+            assertEquals(maxWeight[0], train.getTotalMaxWeight());
+            totalMaxWeight += maxWeight[0];
+        }
+        for (boolean wagonSeen : seen) {
+            assertTrue(wagonSeen);
+        }
+        return totalMaxWeight;
+    }
+
+    @Test
+    public void T81_freeWagonsAreAttachedToOneTrainOnly() throws Exception {
+        int rounds = 200, sequences = 50, threads = 6;
+        ConcurrentTrain[] trains = new ConcurrentTrain[threads];
+        for (int t = 0; t < threads; t++) {
+            trains[t] = new ConcurrentTrain(new Locomotive(t, rounds * sequences * 2), "A", "B");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int round = 0; round < rounds; round++) {
+            // sequences of two free wagons, which every thread tries to take for its own train
+            Wagon[] free = new Wagon[sequences];
+            for (int s = 0; s < sequences; s++) {
+                int id = 2 * (round * sequences + s);
+                free[s] = new FreightWagon(id, 1000);
+                new FreightWagon(id + 1, 1000).attachTo(free[s]);
+            }
+            CyclicBarrier start = new CyclicBarrier(threads);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                ConcurrentTrain train = trains[t];
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int attached = 0;
+                    for (int s = 0; s < sequences; s++) {
+                        Wagon sequence = free[(s + offset * 7) % sequences];
+                        boolean success;
+                        switch ((s + offset) % 3) {
+                            case 0:
+                                success = train.attachToRear(sequence);
+                                break;
+                            case 1:
+                                success = train.insertAtFront(sequence);
+                                break;
+                            default:
+                                success = train.insertAtPosition(1 + train.getNumberOfWagons() / 2, sequence);
+                        }
+                        attached += success ? 1 : 0;
+                    }
+                    return attached;
+                }));
+            }
+            int attached = 0;
+            for (Future<Integer> future : futures) {
+                attached += future.get();
+            }
+            assertEquals(sequences, attached, "every sequence is attached exactly once");
+        }
+        executor.shutdown();
+        assertConsistent(trains, rounds * sequences * 2);
+    }
+
+    @Test
+    public void T81_onlyWagonsOutsideTrainsCanBeAttached() {
+        ConcurrentTrain train1 = new ConcurrentTrain(new Locomotive(1, 10), "A", "B");
+        ConcurrentTrain train2 = new ConcurrentTrain(new Locomotive(2, 10), "A", "B");
+        Wagon wagon = new PassengerWagon(8001, 40);
+        assertTrue(train1.attachToRear(wagon));
+        assertFalse(train2.attachToRear(wagon));
+        assertTrue(train1.moveOneWagon(8001, train2));
+        assertArrayEquals(new int[] {8001}, train2.getWagonIds());
+        assertEquals(0, train1.getNumberOfWagons());
+        assertEquals(40, train2.getTotalNumberOfSeats());
+    }
+}
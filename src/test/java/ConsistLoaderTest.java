@@ -0,0 +1,69 @@
+import models.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsistLoaderTest {
+    List<Train> trains;
+    List<String> errors;
+    ConsistLoader loader;
+
+    @BeforeEach
+    private void setup() {
+        trains = new ArrayList<>();
+        errors = new ArrayList<>();
+        loader = new ConsistLoader(trains::add, (lineNumber, line, reason) -> errors.add(lineNumber + ": " + reason));
+    }
+
+    @Test
+    public void T71_loadsValidConsists() throws IOException {
+        load("# planned consists\n"
+                + "24531,7,Amsterdam,Paris,P8001:32,P8002:32,P8003:18\n"
+                + "\n"
+                + "63427,50,Amsterdam,Berlin,F9001:50000,F9002:40000\n"
+                + "29123,7,Amsterdam,London\n");
+        assertEquals(3, trains.size());
+        assertEquals(0, errors.size());
+        assertEquals(5, loader.getLinesRead());
+
+        Train paris = trains.get(0);
+        assertEquals("Paris", paris.getDestination());
+        assertEquals(3, paris.getNumberOfWagons());
+        assertEquals(82, paris.getTotalNumberOfSeats());
+        assertEquals(8003, paris.getLastWagonAttached().getId());
+        assertEquals(8002, paris.findWagonAtPosition(2).getId());
+        assertEquals(90000, trains.get(1).getTotalMaxWeight());
+        assertFalse(trains.get(2).hasWagons());
+    }
+
+    @Test
+    public void T71_reportsInvalidLinesAndContinues() throws IOException {
+        load("24531,2,Amsterdam,Paris,P8001:32,P8002:32,P8003:18\n"
+                + "24531,7,Amsterdam,Paris,P8001:32,F9001:1000\n"
+                + "24531,7,Amsterdam,Paris,P8001:32,P8001:32\n"
+                + "24531,x,Amsterdam,Paris\n"
+                + "24531,7,Amsterdam\n"
+                + "24531,7,Amsterdam,Paris,Q8001:32\n"
+                + "24531,7,Amsterdam,Paris,P8001:32,\n"
+                + "24531,7,Amsterdam,Paris,P8001:32\n");
+        assertEquals(1, trains.size());
+        assertEquals(7, errors.size());
+        assertEquals(7, loader.getLinesRejected());
+        assertEquals(1, loader.getTrainsLoaded());
+        assertTrue(errors.get(0).startsWith("1: more than 2 wagons"));
+        assertTrue(errors.get(2).startsWith("3: duplicate wagon 8001"));
+        assertTrue(errors.get(3).startsWith("4: invalid maxWagons"));
+    }
+
+    private void load(String contents) throws IOException {
+        loader.load(new BufferedReader(new StringReader(contents)));
+    }
+}
@@ -0,0 +1,126 @@
+import models.*;
+import models.ConsistSolver.Route;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsistSolverTest {
+    ConsistSolver solver;
+    List<Wagon> wagons;
+
+    @BeforeEach
+    private void setup() {
+        solver = new ConsistSolver();
+        wagons = new ArrayList<>();
+        int id = 8001;
+        for (int seats : new int[] {10, 20, 30, 40, 50}) {
+            wagons.add(new PassengerWagon(id++, seats));
+        }
+        id = 9001;
+        for (int maxWeight : new int[] {20000, 35000, 50000, 50000, 60000}) {
+            wagons.add(new FreightWagon(id++, maxWeight));
+        }
+    }
+
+    @Test
+    public void T151_demandIsMetWithoutSurplusWhenPossible() {
+        Train[] trains = solver.solve(
+                List.of(new Route("Amsterdam", "Paris", false, 60), new Route("Amsterdam", "Berlin", true, 105000)),
+                List.of(new Locomotive(24531, 2), new Locomotive(63427, 3)),
+                wagons);
+        assertEquals(60, trains[0].getTotalNumberOfSeats());
+        assertTrue(trains[0].getNumberOfWagons() <= trains[0].getEngine().getMaxWagons());
+        assertEquals("Paris", trains[0].getDestination());
+        assertEquals(105000, trains[1].getTotalMaxWeight());
+        assertEquals(3, trains[1].getNumberOfWagons());
+        assertEquals(63427, trains[1].getEngine().getLocNumber());
+    }
+
+    @Test
+    public void T151_routesThatCannotBeServedGetNoTrain() {
+        Train[] trains = solver.solve(
+                List.of(new Route("Amsterdam", "Paris", false, 100), new Route("Amsterdam", "London", false, 10),
+                        new Route("Amsterdam", "Berlin", true, 300000)),
+                List.of(new Locomotive(24531, 2), new Locomotive(29123, 1), new Locomotive(63427, 9)),
+                wagons);
+        // the freight route cannot be served, so the locomotive with 9 wagons goes to the route of 100 seats
+        assertEquals(100, trains[0].getTotalNumberOfSeats());
+        assertEquals(9, trains[0].getEngine().getMaxWagons());
+        assertEquals(2, trains[1].getEngine().getMaxWagons());
+        assertEquals(50, trains[1].getTotalNumberOfSeats());
+        assertNull(trains[2]);
+        for (Wagon wagon : wagons) {
+            if (wagon instanceof FreightWagon) {
+                assertFalse(wagon.hasNextWagon() || wagon.hasPreviousWagon());
+            }
+        }
+    }
+
+    @Test
+    public void T151_unavailableWagonsAreRejected() {
+        Train train = new Train(new Locomotive(24531, 2), "Amsterdam", "Paris");
+        train.attachToRear(wagons.get(0));
+        List<Route> routes = List.of(new Route("Amsterdam", "Paris", false, 10));
+        List<Locomotive> locomotives = List.of(new Locomotive(29123, 2));
+        assertThrows(IllegalArgumentException.class, () -> solver.solve(routes, locomotives, wagons));
+        assertThrows(IllegalArgumentException.class, () -> solver.solve(routes, locomotives,
+                List.of(new PassengerWagon(8001, 10), new PassengerWagon(8001, 20))));
+        assertThrows(IllegalArgumentException.class, () -> solver.solve(routes, locomotives,
+                List.of(new PassengerWagon(8001, 10), new PassengerWagon(8002, -5))));
+        assertThrows(IllegalArgumentException.class, () -> solver.solve(
+                List.of(new Route("Amsterdam", "Berlin", true, 10)), locomotives, List.of(new FreightWagon(9001, -5))));
+        assertThrows(IllegalArgumentException.class, () -> new Route("Amsterdam", "Paris", false, 0));
+    }
+
+    @Test
+    public void T151_largePoolsAreAssignedToDisjointConsists() {
+        Random random = new Random(42);
+        List<Wagon> pool = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            pool.add(i % 2 == 0 ? new PassengerWagon(i, 20 + random.nextInt(61))
+                    : new FreightWagon(i, 1000 * (10 + random.nextInt(91))));
+        }
+        List<Route> routes = new ArrayList<>();
+        List<Locomotive> locomotives = new ArrayList<>();
+        for (int r = 0; r < 200; r++) {
+            routes.add(r % 2 == 0 ? new Route("Yard", "P" + r, false, 500 + random.nextInt(2000))
+                    : new Route("Yard", "F" + r, true, 100_000 + random.nextInt(2_000_000)));
+            locomotives.add(new Locomotive(r, 20 + random.nextInt(60)));
+        }
+        long start = System.nanoTime();
+        Train[] trains = solver.solve(routes, locomotives, pool);
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+
+        Set<Integer> ids = new HashSet<>();
+        Set<Integer> engines = new HashSet<>();
+        for (int r = 0; r < routes.size(); r++) {
+            Train train = trains[r];
+            assertNotNull(train, "route " + r);
+            Route route = routes.get(r);
+            int capacity = route.isFreight() ? train.getTotalMaxWeight() : train.getTotalNumberOfSeats();
+            assertTrue(capacity >= route.getDemand());
+            assertTrue(train.getNumberOfWagons() <= train.getEngine().getMaxWagons());
+            assertTrue(engines.add(train.getEngine().getLocNumber()));
+            for (Wagon wagon : train) {
+                assertTrue(ids.add(wagon.getId()));
+            }
+        }
+        long seatSurplus = 0, weightSurplus = 0, leastWeightSurplus = 0;
+        for (int r = 0; r < routes.size(); r++) {
+            seatSurplus += trains[r].getTotalNumberOfSeats() - (routes.get(r).isFreight() ? 0 : routes.get(r).getDemand());
+            weightSurplus += trains[r].getTotalMaxWeight() - (routes.get(r).isFreight() ? routes.get(r).getDemand() : 0);
+            leastWeightSurplus += routes.get(r).isFreight() ? Math.floorMod(-routes.get(r).getDemand(), 1000) : 0;
+        }
+        assertEquals(0, seatSurplus);
+        assertEquals(leastWeightSurplus, weightSurplus);     // weights are multiples of 1000
+    }
+}
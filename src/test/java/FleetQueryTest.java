@@ -0,0 +1,66 @@
+import models.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FleetQueryTest {
+    List<Train> trains;
+
+    @BeforeEach
+    private void setup() {
+        trains = new ArrayList<>();
+        Train passengerTrain = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8007; id++) {
+            passengerTrain.attachToRear(new PassengerWagon(id, 20));
+        }
+        trains.add(passengerTrain);
+        Train freightTrain = new Train(new Locomotive(63427, 50), "Amsterdam", "Berlin");
+        freightTrain.attachToRear(new FreightWagon(9001, 50000));
+        freightTrain.attachToRear(new FreightWagon(9002, 40000));
+        trains.add(freightTrain);
+        Train otherFreightTrain = new Train(new Locomotive(63428, 50), "Amsterdam", "Berlin");
+        otherFreightTrain.attachToRear(new FreightWagon(9003, 30000));
+        trains.add(otherFreightTrain);
+        Train longTrain = new Train(new Locomotive(1, 100000), "Rotterdam", "Duisburg");
+        Wagon first = new FreightWagon(100000, 1), last = first;
+        for (int id = 100001; id < 200000; id++) {
+            Wagon wagon = new FreightWagon(id, 1);
+            wagon.attachTo(last);
+            last = wagon;
+        }
+        longTrain.setFirstWagon(first);
+        trains.add(longTrain);
+        trains.add(new Train(new Locomotive(2, 7), "Amsterdam", "London"));
+    }
+
+    @Test
+    public void T121_trainAggregatesAreSummedOverTheFleet() {
+        FleetQuery query = new FleetQuery(trains, new ForkJoinPool(4));
+        assertEquals(140, query.getTotalNumberOfSeats());
+        assertEquals(120000 + 100000, query.getTotalMaxWeight());
+        assertEquals(Map.of("Amsterdam", Map.of("Berlin", 120000L), "Rotterdam", Map.of("Duisburg", 100000L)),
+                query.getTotalMaxWeightByRoute());
+        assertEquals(Map.of(7, 7L, 50, 3L, 100000, 100000L), query.getNumberOfWagonsByLocomotiveClass());
+    }
+
+    @Test
+    public void T121_wagonQueriesSplitLongTrains() {
+        FleetQuery query = new FleetQuery(trains);
+        assertEquals(100000 + 3, query.countWagons(wagon -> wagon instanceof FreightWagon));
+        long sumOfIds = 0;
+        for (Train train : trains) {
+            for (Wagon wagon : train) {
+                sumOfIds += wagon.getId();
+            }
+        }
+        assertEquals(sumOfIds, query.sumOverWagons(Wagon::getId));
+        assertEquals(0, new FleetQuery(List.of()).sumOverWagons(Wagon::getId));
+    }
+}
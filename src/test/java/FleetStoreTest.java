@@ -0,0 +1,100 @@
+import models.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FleetStoreTest {
+    Path file;
+    FleetStore store;
+    int passengerTrain, trainWithoutWagons, freightTrain;
+
+    @BeforeEach
+    private void setup() throws IOException {
+        file = Files.createTempFile("fleet", ".store");
+        store = FleetStore.create(file, 100, 10);
+        passengerTrain = store.addTrain(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        trainWithoutWagons = store.addTrain(new Locomotive(29123, 7), "Amsterdam", "London");
+        freightTrain = store.addTrain(new Locomotive(63427, 50), "Amsterdam", "Berlin");
+        int[] seats = {32, 32, 18, 44, 44, 44, 40};
+        for (int i = 0; i < seats.length; i++) {
+            store.addPassengerWagon(8001 + i, seats[i]);
+            assertTrue(store.attachToRear(passengerTrain, 8001 + i));
+        }
+        store.addFreightWagon(9001, 50000);
+        store.addFreightWagon(9002, 40000);
+        store.addFreightWagon(9003, 30000);
+        assertTrue(store.attachToRear(freightTrain, 9002));
+        assertTrue(store.insertAtFront(freightTrain, 9001));
+        assertTrue(store.insertAtPosition(freightTrain, 3, 9003));
+    }
+
+    @AfterEach
+    private void cleanup() throws IOException {
+        store.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void T51_storedTrainsReportTheirWagons() {
+        assertEquals(7, store.getNumberOfWagons(passengerTrain));
+        assertEquals(254, store.getTotalNumberOfSeats(passengerTrain));
+        assertEquals(120000, store.getTotalMaxWeight(freightTrain));
+        assertEquals(8004, store.getWagonId(store.findWagonAtPosition(passengerTrain, 4)));
+        assertEquals(9003, store.getWagonId(store.getLastWagon(freightTrain)));
+        assertEquals(FleetStore.NONE, store.findWagonAtPosition(trainWithoutWagons, 1));
+        assertEquals(FleetStore.NONE, store.findWagon(7000));
+        assertEquals(passengerTrain, store.getTrainOfWagon(store.findWagon(8003)));
+    }
+
+    @Test
+    public void T51_rejectsIncompatibleAttachments() {
+        store.addPassengerWagon(8008, 40);
+        assertFalse(store.attachToRear(passengerTrain, 8008));
+        assertFalse(store.attachToRear(freightTrain, 8008));
+        assertFalse(store.attachToRear(trainWithoutWagons, 8001));
+        assertThrows(IllegalArgumentException.class, () -> store.addFreightWagon(9001, 1));
+    }
+
+    @Test
+    public void T51_splitsMovesAndReversesOnTheStore() {
+        assertTrue(store.splitAtPosition(passengerTrain, 5, trainWithoutWagons));
+        assertEquals(3, store.getNumberOfWagons(trainWithoutWagons));
+        assertEquals(4, store.getNumberOfWagons(passengerTrain));
+        assertFalse(store.moveOneWagon(trainWithoutWagons, 8001, passengerTrain));
+        assertTrue(store.moveOneWagon(trainWithoutWagons, 8006, passengerTrain));
+        assertEquals(8006, store.getWagonId(store.findWagonAtPosition(passengerTrain, 5)));
+
+        store.reverse(passengerTrain);
+        Train train = store.toTrain(passengerTrain);
+        int[] expected = {8006, 8004, 8003, 8002, 8001};
+        int position = 0;
+        for (Wagon wagon : train) {
+            assertEquals(expected[position++], wagon.getId());
+        }
+        assertEquals(32 + 32 + 18 + 44 + 44, train.getTotalNumberOfSeats());
+        assertEquals(store.getTotalNumberOfSeats(passengerTrain), train.getTotalNumberOfSeats());
+    }
+
+    @Test
+    public void T51_reopenedStoreHoldsTheSameFleet() throws IOException {
+        assertTrue(store.splitAtPosition(passengerTrain, 6, trainWithoutWagons));
+        store.close();
+
+        store = FleetStore.open(file);
+        assertEquals(3, store.getNumberOfTrains());
+        assertEquals(10, store.getNumberOfWagons());
+        assertEquals("London", store.getDestination(trainWithoutWagons));
+        assertEquals(2, store.getNumberOfWagons(trainWithoutWagons));
+        assertEquals(8007, store.getWagonId(store.getLastWagon(trainWithoutWagons)));
+        assertEquals(9002, store.getWagonId(store.getNextWagon(store.findWagon(9001))));
+        assertEquals(24531, store.getEngine(passengerTrain).getLocNumber());
+        assertTrue(store.moveOneWagon(trainWithoutWagons, 8007, passengerTrain));
+    }
+}
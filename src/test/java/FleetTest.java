@@ -0,0 +1,140 @@
+import models.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FleetTest {
+    Fleet fleet;
+    Train passengerTrain, trainWithoutWagons, freightTrain;
+
+    @BeforeEach
+    private void setup() {
+        passengerTrain = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8005; id++) {
+            passengerTrain.attachToRear(new PassengerWagon(id, 40));
+        }
+        trainWithoutWagons = new Train(new Locomotive(29123, 7), "Amsterdam", "London");
+        freightTrain = new Train(new Locomotive(63427, 50), "Amsterdam", "Berlin");
+        freightTrain.attachToRear(new FreightWagon(9001, 50000));
+        freightTrain.attachToRear(new FreightWagon(9002, 40000));
+
+        fleet = new Fleet();
+        fleet.addTrain(passengerTrain);
+        fleet.addTrain(trainWithoutWagons);
+        fleet.addTrain(freightTrain);
+    }
+
+    @Test
+    public void T31_findsWagonsAndTheirTrainsById() {
+        assertEquals(7, fleet.getNumberOfWagons());
+        assertSame(passengerTrain, fleet.findTrainOfWagon(8003));
+        assertSame(freightTrain, fleet.findTrainOfWagon(9002));
+        assertEquals(9002, fleet.findWagonById(9002).getId());
+        assertEquals(3, fleet.findPositionOfWagon(8003));
+        assertEquals(2, fleet.findPositionOfWagon(9002));
+        assertNull(fleet.findTrainOfWagon(7000));
+        assertEquals(0, fleet.findPositionOfWagon(7000));
+    }
+
+    @Test
+    public void T31_duplicateIdsCannotEnterATrain() {
+        Wagon sequence = new PassengerWagon(8101, 40);
+        new PassengerWagon(8102, 40).attachTo(sequence);
+        new PassengerWagon(8101, 20).attachTo(sequence.getLastWagonAttached());
+        assertEquals(Rejection.DUPLICATE_ID, trainWithoutWagons.tryAttachToRear(sequence));
+        assertEquals(Rejection.DUPLICATE_ID, new Train(new Locomotive(1, 7), "A", "B").checkAttach(sequence));
+        assertFalse(trainWithoutWagons.hasWagons());
+
+        Wagon wagon = passengerTrain.findWagonById(8002);
+        assertThrows(IllegalArgumentException.class, () -> wagon.setId(8003));
+        assertThrows(IllegalArgumentException.class, () -> wagon.setId(9001), "the id is used in the fleet");
+        assertEquals(8002, wagon.getId());
+        assertSame(wagon, passengerTrain.findWagonById(8002));
+        assertEquals(3, passengerTrain.findPositionById(8003));
+        wagon.setId(8002);
+        wagon.setId(8102);
+        assertSame(wagon, fleet.findWagonById(8102));
+        assertNull(passengerTrain.findWagonById(8002));
+    }
+
+    @Test
+    public void T31_replacedSequencesCannotRepeatIds() {
+        Wagon repeating = new PassengerWagon(8101, 40);
+        new PassengerWagon(8101, 20).attachTo(repeating);
+        assertThrows(IllegalArgumentException.class, () -> passengerTrain.setFirstWagon(repeating));
+        assertThrows(IllegalArgumentException.class, () -> trainWithoutWagons.setFirstWagon(new FreightWagon(9001, 20)),
+                "the id is used by another train of the fleet");
+        assertEquals(5, passengerTrain.getNumberOfWagons());
+        assertFalse(trainWithoutWagons.hasWagons());
+        assertEquals(7, fleet.getNumberOfWagons());
+
+        Wagon replacement = new PassengerWagon(8003, 30);
+        new PassengerWagon(8101, 30).attachTo(replacement);
+        passengerTrain.setFirstWagon(replacement);
+        assertEquals(2, passengerTrain.getNumberOfWagons());
+        assertSame(replacement, fleet.findWagonById(8003));
+        assertNull(fleet.findWagonById(8001));
+        assertEquals(4, fleet.getNumberOfWagons());
+    }
+
+    @Test
+    public void T31_registryFollowsWagonsThatAreMovedBetweenTrains() {
+        assertTrue(passengerTrain.splitAtPosition(4, trainWithoutWagons));
+        assertSame(trainWithoutWagons, fleet.findTrainOfWagon(8004));
+        assertEquals(1, fleet.findPositionOfWagon(8004));
+        assertEquals(2, fleet.findPositionOfWagon(8005));
+
+        assertTrue(trainWithoutWagons.moveOneWagon(8005, passengerTrain));
+        assertSame(passengerTrain, fleet.findTrainOfWagon(8005));
+        assertEquals(4, fleet.findPositionOfWagon(8005));
+        assertEquals(4, passengerTrain.findPositionById(8005));
+        assertEquals(7, fleet.getNumberOfWagons());
+    }
+
+    @Test
+    public void T31_wagonsLeavingTheFleetAreUnregistered() {
+        Train outsideTrain = new Train(new Locomotive(1, 10), "Utrecht", "Zwolle");
+        assertTrue(passengerTrain.splitAtPosition(2, outsideTrain));
+        assertEquals(3, fleet.getNumberOfWagons());
+        assertNull(fleet.findWagonById(8002));
+
+        fleet.removeTrain(freightTrain);
+        assertEquals(1, fleet.getNumberOfWagons());
+        assertNull(fleet.findTrainOfWagon(9001));
+    }
+
+    @Test
+    public void T31_cantAttachAWagonWhoseIdIsUsedElsewhereInTheFleet() {
+        assertFalse(trainWithoutWagons.attachToRear(new PassengerWagon(8002, 40)));
+        assertFalse(passengerTrain.attachToRear(new PassengerWagon(8002, 40)));
+        assertTrue(trainWithoutWagons.attachToRear(new PassengerWagon(8010, 40)));
+        assertThrows(IllegalArgumentException.class, () -> {
+            Train duplicate = new Train(new Locomotive(2, 10), "Utrecht", "Zwolle");
+            duplicate.attachToRear(new FreightWagon(9001, 1000));
+            fleet.addTrain(duplicate);
+        });
+    }
+
+    @Test
+    public void T31_indexStaysCorrectForManyWagons() {
+        Train longTrain = new Train(new Locomotive(1, 20000), "Amsterdam", "Rotterdam");
+        Train otherTrain = new Train(new Locomotive(2, 20000), "Amsterdam", "Rotterdam");
+        fleet.addTrain(longTrain);
+        fleet.addTrain(otherTrain);
+        for (int id = 100001; id <= 120000; id++) {
+            assertTrue(longTrain.attachToRear(new FreightWagon(id, 1000)));
+        }
+        for (int id = 100002; id <= 120000; id += 2) {
+            assertTrue(longTrain.moveOneWagon(id, otherTrain));
+        }
+        for (int id = 100001; id <= 120000; id++) {
+            Train expected = id % 2 == 0 ? otherTrain : longTrain;
+            assertSame(expected, fleet.findTrainOfWagon(id));
+            assertEquals(id, expected.findWagonById(id).getId());
+            assertNull((id % 2 == 0 ? longTrain : otherTrain).findWagonById(id));
+        }
+        assertEquals(10000, otherTrain.findPositionById(120000));
+    }
+}
@@ -0,0 +1,120 @@
+import models.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistentTrainTest {
+    Train passengerTrain;
+    PersistentTrain base;
+
+    @BeforeEach
+    private void setup() {
+        passengerTrain = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8005; id++) {
+            passengerTrain.attachToRear(new PassengerWagon(id, id - 7990));
+        }
+        base = PersistentTrain.copyOf(passengerTrain);
+    }
+
+    @Test
+    public void T101_operationsReturnNewVersionsAndKeepTheOriginal() {
+        PersistentTrain inserted = base.insertAtPosition(2, new PassengerWagon(8010, 20));
+        PersistentTrain reversed = inserted.reverse();
+        PersistentTrain removed = reversed.removeAtPosition(1);
+
+        assertArrayEquals(new int[] {8001, 8002, 8003, 8004, 8005}, idsOf(base));
+        assertArrayEquals(new int[] {8001, 8010, 8002, 8003, 8004, 8005}, idsOf(inserted));
+        assertArrayEquals(new int[] {8005, 8004, 8003, 8002, 8010, 8001}, idsOf(reversed));
+        assertArrayEquals(new int[] {8004, 8003, 8002, 8010, 8001}, idsOf(removed));
+        assertEquals(passengerTrain.getTotalNumberOfSeats(), base.getTotalNumberOfSeats());
+        assertEquals(passengerTrain.getTotalNumberOfSeats() + 20, reversed.getTotalNumberOfSeats());
+        assertEquals(8003, reversed.findWagonAtPosition(3).getId());
+        assertEquals(5, reversed.findPositionById(8010));
+    }
+
+    @Test
+    public void T101_splitAndConcatShareTheBaseVersion() {
+        PersistentTrain front = base.head(2);
+        PersistentTrain rear = base.tail(3);
+        assertArrayEquals(new int[] {8001, 8002}, idsOf(front));
+        assertArrayEquals(new int[] {8003, 8004, 8005}, idsOf(rear));
+        assertArrayEquals(new int[] {8003, 8004, 8005, 8001, 8002}, idsOf(rear.concat(front)));
+        assertArrayEquals(new int[] {8005, 8004, 8003, 8001, 8002}, idsOf(rear.reverse().concat(front)));
+        assertArrayEquals(idsOf(base), idsOf(front.concat(rear)));
+    }
+
+    @Test
+    public void T101_invalidOperationsReturnTheSameVersion() {
+        assertSame(base, base.attachToRear(new FreightWagon(9001, 1000)));
+        assertSame(base, base.concat(base));
+        assertSame(base, base.insertAtPosition(7, new PassengerWagon(8010, 20)));
+        assertSame(base, base.removeAtPosition(0));
+        assertNull(base.findWagonAtPosition(6));
+        assertEquals(0, base.findPositionById(9001));
+    }
+
+    @Test
+    public void T101_toTrainMaterializesTheVersion() {
+        Train train = base.reverse().toTrain();
+        assertEquals(5, train.getNumberOfWagons());
+        assertEquals(8005, train.getFirstWagon().getId());
+        assertEquals(8001, train.getLastWagonAttached().getId());
+        assertEquals(passengerTrain.getTotalNumberOfSeats(), train.getTotalNumberOfSeats());
+        assertArrayEquals(new int[] {8001, 8002, 8003, 8004, 8005}, idsOf(base));
+    }
+
+    @Test
+    public void T101_randomOperationsMatchAListModel() {
+        Random random = new Random(11);
+        PersistentTrain train = PersistentTrain.empty(new Locomotive(1, 1000), "Amsterdam", "Paris");
+        List<Integer> model = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int operation = random.nextInt(5);
+            if (operation <= 1 || model.isEmpty()) {
+                int position = 1 + random.nextInt(model.size() + 1);
+                PersistentTrain next = train.insertAtPosition(position, new FreightWagon(i, 10));
+                if (model.size() < 1000) {
+                    model.add(position - 1, i);
+                }
+                train = next;
+            } else if (operation == 2) {
+                int position = 1 + random.nextInt(model.size());
+                train = train.removeAtPosition(position);
+                model.remove(position - 1);
+            } else if (operation == 3) {
+                train = train.reverse();
+                Collections.reverse(model);
+            } else {
+                int position = 1 + random.nextInt(model.size() + 1);
+                train = train.tail(position).concat(train.head(position - 1));
+                List<Integer> rotated = new ArrayList<>(model.subList(position - 1, model.size()));
+                rotated.addAll(model.subList(0, position - 1));
+                model = rotated;
+            }
+            assertEquals(model.size(), train.getNumberOfWagons());
+            assertEquals(10 * model.size(), train.getTotalMaxWeight());
+            if (!model.isEmpty()) {
+                int position = 1 + random.nextInt(model.size());
+                assertEquals((int) model.get(position - 1), train.findWagonAtPosition(position).getId());
+            }
+        }
+        int[] expected = model.stream().mapToInt(Integer::intValue).toArray();
+        assertArrayEquals(expected, idsOf(train));
+    }
+
+    private static int[] idsOf(PersistentTrain train) {
+        int[] ids = new int[train.getNumberOfWagons()];
+        int i = 0;
+        for (Wagon wagon : train) {
+            ids[i++] = wagon.getId();
+        }
+        return ids;
+    }
+}
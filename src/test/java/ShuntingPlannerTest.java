@@ -0,0 +1,105 @@
+import models.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShuntingPlannerTest {
+    ShuntingPlanner planner;
+    Train passengerTrain;
+    Train siding;
+
+    @BeforeEach
+    private void setup() {
+        planner = new ShuntingPlanner();
+        passengerTrain = new Train(new Locomotive(24531, 10), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8008; id++) {
+            passengerTrain.attachToRear(new PassengerWagon(id, 32));
+        }
+        siding = new Train(new Locomotive(29123, 10), "Amsterdam", "Amsterdam");
+    }
+
+    @Test
+    public void T161_aTrainInTargetOrderNeedsNoSteps() {
+        ShuntingPlan plan = planner.plan(passengerTrain, new int[] {8001, 8002, 8003, 8004, 8005, 8006, 8007, 8008});
+        assertEquals(0, plan.size());
+        assertEquals(0, plan.getSidingCapacity());
+    }
+
+    @Test
+    public void T161_oneMisplacedWagonIsMovedAndInsertedBack() {
+        int[] target = {8001, 8006, 8002, 8003, 8004, 8005, 8007, 8008};
+        ShuntingPlan plan = planner.plan(passengerTrain, target);
+        assertEquals(2, plan.size());
+        assertEquals(ShuntingPlan.Action.MOVE_TO_SIDING, plan.getAction(0));
+        assertEquals(8006, plan.getWagonId(0));
+        assertEquals(ShuntingPlan.Action.INSERT_FROM_SIDING, plan.getAction(1));
+        assertEquals(2, plan.getPosition(1));
+        assertTrue(plan.applyTo(passengerTrain, siding));
+        assertArrayEquals(target, idsOf(passengerTrain));
+        assertFalse(siding.hasWagons());
+    }
+
+    @Test
+    public void T161_adjacentWagonsAreInsertedInOneStep() {
+        int[] target = {8005, 8006, 8007, 8008, 8001, 8002, 8003, 8004};
+        ShuntingPlan plan = planner.plan(passengerTrain, target);
+        assertEquals(5, plan.size());
+        assertTrue(plan.applyTo(passengerTrain, siding));
+        assertArrayEquals(target, idsOf(passengerTrain));
+    }
+
+    @Test
+    public void T161_aReversedOrderIsReachedByReversing() {
+        int[] target = {8008, 8007, 8006, 8005, 8004, 8002, 8003, 8001};
+        ShuntingPlan plan = planner.plan(passengerTrain, target);
+        assertEquals(3, plan.size());
+        assertEquals(ShuntingPlan.Action.REVERSE, plan.getAction(0));
+        assertTrue(plan.applyTo(passengerTrain, siding));
+        assertArrayEquals(target, idsOf(passengerTrain));
+    }
+
+    @Test
+    public void T161_randomOrdersOfLongTrainsAreReached() {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            int n = 1 + random.nextInt(2000);
+            Train train = new Train(new Locomotive(1, n), "Amsterdam", "Berlin");
+            int[] target = new int[n];
+            for (int i = 0; i < n; i++) {
+                train.attachToRear(new FreightWagon(i - n / 2, 1000));
+                target[i] = i - n / 2;
+            }
+            // a mix of local swaps and displaced blocks
+            for (int k = random.nextInt(n); k > 0; k--) {
+                int a = random.nextInt(n), b = Math.min(n - 1, a + random.nextInt(20));
+                int swap = target[a];
+                target[a] = target[b];
+                target[b] = swap;
+            }
+            train.setLazyReversal(round % 2 == 0);
+            ShuntingPlan plan = planner.plan(train, target);
+            Train yard = new Train(new Locomotive(2, plan.getSidingCapacity()), "Amsterdam", "Amsterdam");
+            assertTrue(plan.applyTo(train, yard));
+            assertArrayEquals(target, idsOf(train));
+            assertEquals(n, train.getNumberOfWagons());
+        }
+    }
+
+    @Test
+    public void T161_targetOrdersOfOtherWagonsAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.plan(passengerTrain, new int[] {8001, 8002, 8003}));
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.plan(passengerTrain, new int[] {8001, 8002, 8003, 8004, 8005, 8006, 8007, 8009}));
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.plan(passengerTrain, new int[] {8001, 8002, 8003, 8004, 8005, 8006, 8007, 8007}));
+    }
+
+    private static int[] idsOf(Train train) {
+        return train.stream().mapToInt(Wagon::getId).toArray();
+    }
+}
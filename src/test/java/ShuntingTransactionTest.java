@@ -0,0 +1,108 @@
+import models.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShuntingTransactionTest {
+    Train passengerTrain, trainWithoutWagons, freightTrain;
+    ShuntingTransaction transaction;
+
+    @BeforeEach
+    private void setup() {
+        passengerTrain = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8007; id++) {
+            passengerTrain.attachToRear(new PassengerWagon(id, id - 7990));
+        }
+        trainWithoutWagons = new Train(new Locomotive(29123, 7), "Amsterdam", "London");
+        freightTrain = new Train(new Locomotive(63427, 50), "Amsterdam", "Berlin");
+        freightTrain.attachToRear(new FreightWagon(9001, 50000));
+        freightTrain.attachToRear(new FreightWagon(9002, 40000));
+        transaction = new ShuntingTransaction();
+    }
+
+    @Test
+    public void T91_committedTransactionKeepsAllOperations() {
+        assertTrue(transaction.splitAtPosition(passengerTrain, 5, trainWithoutWagons));
+        assertTrue(transaction.reverse(trainWithoutWagons));
+        assertTrue(transaction.moveOneWagon(passengerTrain, 8002, trainWithoutWagons));
+        assertTrue(transaction.insertAtFront(passengerTrain, new PassengerWagon(8010, 20)));
+        assertTrue(transaction.commit());
+        assertEquals(0, transaction.size());
+        assertArrayEquals(new int[] {8010, 8001, 8003, 8004}, idsOf(passengerTrain));
+        assertArrayEquals(new int[] {8007, 8006, 8005, 8002}, idsOf(trainWithoutWagons));
+    }
+
+    @Test
+    public void T91_failedTransactionRollsBackAllOperations() {
+        int[] passengerIds = idsOf(passengerTrain);
+        int seats = passengerTrain.getTotalNumberOfSeats();
+        PassengerWagon newWagon = new PassengerWagon(8010, 20);
+        new PassengerWagon(8011, 20).attachTo(newWagon);
+
+        assertTrue(transaction.splitAtPosition(passengerTrain, 3, trainWithoutWagons));
+        assertTrue(transaction.reverse(trainWithoutWagons));
+        assertTrue(transaction.moveOneWagon(trainWithoutWagons, 8005, passengerTrain));
+        assertTrue(transaction.insertAtPosition(passengerTrain, 2, newWagon));
+        assertTrue(transaction.moveOneWagon(passengerTrain, 8001, trainWithoutWagons));
+        assertFalse(transaction.moveOneWagon(trainWithoutWagons, 8004, freightTrain));
+        assertTrue(transaction.isFailed());
+        assertFalse(transaction.reverse(passengerTrain));
+        assertFalse(transaction.commit());
+
+        assertArrayEquals(passengerIds, idsOf(passengerTrain));
+        assertEquals(seats, passengerTrain.getTotalNumberOfSeats());
+        assertEquals(8007, passengerTrain.getLastWagonAttached().getId());
+        assertEquals(0, trainWithoutWagons.getNumberOfWagons());
+        assertArrayEquals(new int[] {9001, 9002}, idsOf(freightTrain));
+        assertEquals(2, newWagon.getSequenceLength());
+        assertFalse(newWagon.hasPreviousWagon());
+        for (int position = 1; position <= 7; position++) {
+            assertEquals(passengerIds[position - 1], passengerTrain.findWagonAtPosition(position).getId());
+        }
+    }
+
+    @Test
+    public void T91_transactionCanBeReusedAfterRollback() {
+        for (int plan = 0; plan < 100; plan++) {
+            transaction.splitAtPosition(passengerTrain, 1 + plan % 7, trainWithoutWagons);
+            transaction.moveOneWagon(trainWithoutWagons, 8007, freightTrain);
+            transaction.rollback();
+        }
+        assertArrayEquals(new int[] {8001, 8002, 8003, 8004, 8005, 8006, 8007}, idsOf(passengerTrain));
+        assertFalse(trainWithoutWagons.hasWagons());
+        assertFalse(transaction.isFailed());
+    }
+
+    @Test
+    public void T91_rollbackReportsChangesOutsideTheTransaction() {
+        assertTrue(transaction.moveOneWagon(passengerTrain, 8002, trainWithoutWagons));
+        assertTrue(transaction.reverse(passengerTrain));
+        Train yard = new Train(new Locomotive(1, 7), "Amsterdam", "Amsterdam");
+        assertTrue(trainWithoutWagons.moveOneWagon(8002, yard));
+        IllegalStateException exception = assertThrows(IllegalStateException.class, transaction::rollback);
+        assertTrue(exception.getMessage().contains("operation 1"), exception.getMessage());
+        assertEquals(0, transaction.size());
+        assertArrayEquals(new int[] {8001, 8003, 8004, 8005, 8006, 8007}, idsOf(passengerTrain),
+                "the operations after the failing one are undone");
+
+        assertTrue(transaction.insertAtFront(passengerTrain, new PassengerWagon(8010, 20)));
+        assertFalse(transaction.moveOneWagon(passengerTrain, 8099, trainWithoutWagons));
+        passengerTrain.setFirstWagon(null);
+        assertThrows(IllegalStateException.class, transaction::commit);
+        assertFalse(transaction.isFailed());
+        assertEquals(0, transaction.size());
+    }
+
+    private static int[] idsOf(Train train) {
+        List<Integer> ids = new ArrayList<>();
+        for (Wagon wagon : train) {
+            ids.add(wagon.getId());
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,136 @@
+import models.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrainCodecTest {
+    Train passengerTrain, trainWithoutWagons, freightTrain;
+
+    @BeforeEach
+    private void setup() {
+        passengerTrain = new Train(new Locomotive(24531, 7), "Amsterdam", "Parijs-Nord é");
+        passengerTrain.attachToRear(new PassengerWagon(8001,32));
+        passengerTrain.attachToRear(new PassengerWagon(8002,32));
+        passengerTrain.attachToRear(new PassengerWagon(7003,18));
+        passengerTrain.attachToRear(new PassengerWagon(8004,44));
+        trainWithoutWagons = new Train(new Locomotive(29123, 7), "Amsterdam", "London");
+        freightTrain = new Train(new Locomotive(63427, 5000), "Amsterdam", "Berlin");
+        for (int id = 9001; id <= 12000; id++) {
+            freightTrain.attachToRear(new FreightWagon(id, id % 3 == 0 ? 60000 : 50000));
+        }
+    }
+
+    @Test
+    public void T61_trainsSurviveARoundTripThroughABuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        TrainCodec.encode(passengerTrain, buffer);
+        TrainCodec.encode(trainWithoutWagons, buffer);
+        TrainCodec.encode(freightTrain, buffer);
+        buffer.flip();
+        assertSameTrain(passengerTrain, TrainCodec.decode(buffer));
+        assertSameTrain(trainWithoutWagons, TrainCodec.decode(buffer));
+        assertSameTrain(freightTrain, TrainCodec.decode(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void T61_similarWagonsAreEncodedCompactly() {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        TrainCodec.encodeSequence(freightTrain.getFirstWagon(), buffer);
+        assertTrue(buffer.position() < 4 * freightTrain.getNumberOfWagons());
+    }
+
+    @Test
+    public void T61_incompleteTrainsAreRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        TrainCodec.encode(passengerTrain, buffer);
+        buffer.flip();
+        buffer.limit(buffer.limit() - 1);
+        assertThrows(IllegalArgumentException.class, () -> TrainCodec.decode(buffer));
+    }
+
+    @Test
+    public void T61_trainsThatCannotTakeTheirWagonsAreRejected() {
+        Wagon repeating = new PassengerWagon(8001, 32);
+        new PassengerWagon(8001, 20).attachTo(repeating);
+        Wagon mixed = new PassengerWagon(8001, 32);
+        new FreightWagon(9001, 50000).attachTo(mixed);
+        Wagon tooLong = new PassengerWagon(8001, 32);
+        for (int id = 8002; id <= 8008; id++) {
+            new PassengerWagon(id, 32).attachTo(tooLong.getLastWagonAttached());
+        }
+        for (Wagon sequence : new Wagon[] { repeating, mixed, tooLong }) {
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            TrainCodec.encode(trainWithoutWagons, buffer);
+            buffer.position(buffer.position() - 1);     // replaces the empty sequence
+            TrainCodec.encodeSequence(sequence, buffer);
+            buffer.flip();
+            assertThrows(IllegalArgumentException.class, () -> TrainCodec.decode(buffer));
+        }
+    }
+
+    @Test
+    public void T61_encodingDoesNotRelinkALazilyReversedTrain() {
+        passengerTrain.setLazyReversal(true);
+        passengerTrain.reverse();
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        TrainCodec.encode(passengerTrain, buffer);
+        assertEquals(8001, passengerTrain.findWagonAtPosition(4).getId());
+        assertEquals(8002, passengerTrain.findWagonAtPosition(4).getNextWagon().getId(),
+                "the links still follow the order before the reversal");
+        buffer.flip();
+        Train decoded = TrainCodec.decode(buffer);
+        assertEquals(8004, decoded.findWagonAtPosition(1).getId());
+        assertEquals(8001, decoded.findWagonAtPosition(4).getId());
+    }
+
+    @Test
+    public void T61_trainsCanBeStreamedThroughAFileChannel() throws IOException {
+        Path file = Files.createTempFile("trains", ".bin");
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+                 TrainCodec.Writer writer = new TrainCodec.Writer(channel, 256)) {
+                for (int i = 0; i < 10; i++) {
+                    writer.write(passengerTrain);
+                    writer.write(freightTrain);
+                    writer.write(trainWithoutWagons);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                 TrainCodec.Reader reader = new TrainCodec.Reader(channel, 256)) {
+                for (int i = 0; i < 10; i++) {
+                    assertSameTrain(passengerTrain, reader.read());
+                    assertSameTrain(freightTrain, reader.read());
+                    assertSameTrain(trainWithoutWagons, reader.read());
+                }
+                assertNull(reader.read());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void assertSameTrain(Train expected, Train actual) {
+        assertEquals(expected.getOrigin(), actual.getOrigin());
+        assertEquals(expected.getDestination(), actual.getDestination());
+        assertEquals(expected.getEngine().getMaxWagons(), actual.getEngine().getMaxWagons());
+        assertEquals(expected.getNumberOfWagons(), actual.getNumberOfWagons());
+        assertEquals(expected.getTotalNumberOfSeats(), actual.getTotalNumberOfSeats());
+        assertEquals(expected.getTotalMaxWeight(), actual.getTotalMaxWeight());
+        Wagon actualWagon = actual.getFirstWagon();
+        for (Wagon wagon : expected) {
+            assertEquals(wagon.getId(), actualWagon.getId());
+            assertEquals(wagon.getClass(), actualWagon.getClass());
+            actualWagon = actualWagon.getNextWagon();
+        }
+    }
+}
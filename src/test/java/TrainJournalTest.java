@@ -0,0 +1,207 @@
+import models.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrainJournalTest {
+    Path directory;
+    TrainJournal journal;
+
+    @BeforeEach
+    private void setup() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        journal = TrainJournal.open(directory);
+        journal.addTrain(1, new Train(new Locomotive(24531, 7), "Amsterdam", "Paris"));
+        Train freightTrain = new Train(new Locomotive(63427, 50), "Amsterdam", "Berlin");
+        freightTrain.attachToRear(new FreightWagon(9001, 50000));
+        journal.addTrain(2, freightTrain);
+        journal.addTrain(3, new Train(new Locomotive(29123, 7), "Amsterdam", "London"));
+    }
+
+    @AfterEach
+    private void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void T171_committedChangesAreRebuiltOnOpen() throws IOException {
+        PassengerWagon sequence = new PassengerWagon(8001, 32);
+        new PassengerWagon(8002, 32).attachTo(sequence);
+        assertTrue(journal.attachToRear(1, sequence));
+        assertTrue(journal.insertAtFront(1, new PassengerWagon(8003, 18)));
+        assertTrue(journal.insertAtPosition(1, 2, new PassengerWagon(8004, 44)));
+        assertTrue(journal.insertAtPosition(2, 1, new FreightWagon(-9002, 40000)));
+        journal.reverse(1);
+        assertTrue(journal.moveOneWagon(1, 8004, 3));
+        assertTrue(journal.splitAtPosition(1, 2, 3));
+        assertEquals(10, journal.getNumberOfRecords());
+        String before = describe(journal);
+        journal.close();
+
+        journal = TrainJournal.open(directory);
+        assertEquals(before, describe(journal));
+        assertArrayEquals(new int[] {8004, 8001, 8003}, journal.getTrain(3).stream().mapToInt(Wagon::getId).toArray());
+        assertEquals(-9002, journal.getTrain(2).getFirstWagon().getId());
+    }
+
+    @Test
+    public void T171_failedChangesAreNotRecorded() throws IOException {
+        assertFalse(journal.attachToRear(2, new PassengerWagon(8001, 32)));
+        assertFalse(journal.moveOneWagon(1, 8001, 2));
+        assertFalse(journal.splitAtPosition(2, 5, 3));
+        assertFalse(journal.insertAtPosition(1, 3, new PassengerWagon(8001, 32)));
+        assertEquals(3, journal.getNumberOfRecords());
+        assertThrows(IllegalArgumentException.class,
+                () -> journal.attachToRear(1, journal.getTrain(2).getFirstWagon()));
+        assertThrows(IllegalArgumentException.class, () -> journal.reverse(4));
+        assertThrows(IllegalArgumentException.class,
+                () -> journal.addTrain(1, new Train(new Locomotive(1, 1), "Amsterdam", "Paris")));
+    }
+
+    @Test
+    public void T171_uncommittedAndTornRecordsAreDropped() throws IOException {
+        journal.attachToRear(1, new PassengerWagon(8001, 32));
+        journal.commit();
+        String committed = describe(journal);
+        journal.attachToRear(1, new PassengerWagon(8002, 32));
+
+        Path log = directory.resolve("journal-0.log");
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3}));
+        }
+        long tornSize = Files.size(log);
+
+        TrainJournal recovered = TrainJournal.open(directory);
+        assertEquals(committed, describe(recovered));
+        assertEquals(tornSize - 7, Files.size(log));
+        assertTrue(recovered.attachToRear(1, new PassengerWagon(8005, 32)));
+        recovered.close();
+        recovered = TrainJournal.open(directory);
+        assertEquals(8005, recovered.getTrain(1).getLastWagonAttached().getId());
+        recovered.close();
+    }
+
+    @Test
+    public void T171_recordLengthsPastTheEndOfTheFileAreTornRecords() throws IOException {
+        journal.attachToRear(1, new PassengerWagon(8001, 32));
+        journal.close();
+        Path log = directory.resolve("journal-0.log");
+        long size = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7f, (byte) 0xff, (byte) 0xff, 0, 1, 2, 3, 4, 5}));
+        }
+
+        journal = TrainJournal.open(directory);
+        assertEquals(8001, journal.getTrain(1).getLastWagonAttached().getId());
+        assertEquals(size, Files.size(log));
+    }
+
+    @Test
+    public void T171_failedSnapshotsLeaveTheJournalIntact() throws IOException {
+        journal.attachToRear(1, new PassengerWagon(8001, 32));
+        journal.getTrain(3).setOrigin(null);
+        assertThrows(NullPointerException.class, journal::takeSnapshot);
+        journal.getTrain(3).setOrigin("Amsterdam");
+        journal.attachToRear(1, new PassengerWagon(8002, 32));
+        journal.commit();
+        String committed = describe(journal);
+        journal.close();
+
+        journal = TrainJournal.open(directory);
+        assertEquals(committed, describe(journal));
+        assertEquals(2, journal.getTrain(1).getNumberOfWagons());
+    }
+
+    @Test
+    public void T171_snapshotsWithoutANewJournalFileAreNotPublished() throws IOException {
+        journal.attachToRear(1, new PassengerWagon(8001, 32));
+        Path blocked = Files.createDirectory(directory.resolve("journal-1.log"));
+        assertThrows(IOException.class, journal::takeSnapshot);
+        assertFalse(Files.exists(directory.resolve("snapshot-1.bin")));
+        journal.attachToRear(1, new PassengerWagon(8002, 32));
+        journal.commit();
+        String committed = describe(journal);
+        journal.close();
+        Files.delete(blocked);
+
+        journal = TrainJournal.open(directory);
+        assertEquals(committed, describe(journal));
+        assertEquals(2, journal.getTrain(1).getNumberOfWagons());
+    }
+
+    @Test
+    public void T171_snapshotsReplaceOlderJournalFiles() throws IOException {
+        journal.setSnapshotInterval(50);
+        Random random = new Random(3);
+        int id = 9100;
+        for (int i = 0; i < 400; i++) {
+            int from = 2 + random.nextInt(2), to = 5 - from;
+            switch (random.nextInt(4)) {
+                case 0:
+                    journal.attachToRear(from, new FreightWagon(id++, 1000 + i));
+                    break;
+                case 1:
+                    Train train = journal.getTrain(from);
+                    if (train.hasWagons()) {
+                        journal.moveOneWagon(from, train.getFirstWagon().getId(), to);
+                    }
+                    break;
+                case 2:
+                    journal.splitAtPosition(from, 1 + random.nextInt(10), to);
+                    break;
+                default:
+                    journal.reverse(from);
+            }
+            if (i % 7 == 0) {
+                journal.commit();
+            }
+        }
+        journal.commit();
+        String before = describe(journal);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+        journal.close();
+
+        journal = TrainJournal.open(directory);
+        assertEquals(before, describe(journal));
+        journal.takeSnapshot();
+        assertEquals(0, journal.getNumberOfRecords());
+        journal.close();
+        journal = TrainJournal.open(directory);
+        assertEquals(before, describe(journal));
+    }
+
+    private static String describe(TrainJournal journal) {
+        StringBuilder description = new StringBuilder();
+        for (int trainId : journal.getTrainIds()) {
+            Train train = journal.getTrain(trainId);
+            description.append(trainId).append(' ').append(train.getEngine().getLocNumber()).append(' ')
+                    .append(train.getOrigin()).append('-').append(train.getDestination()).append(':');
+            for (Wagon wagon : train) {
+                description.append(' ').append(wagon.getId());
+            }
+            description.append(" = ").append(train.getTotalNumberOfSeats() + train.getTotalMaxWeight()).append('\n');
+        }
+        return description.toString();
+    }
+}
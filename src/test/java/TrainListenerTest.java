@@ -0,0 +1,194 @@
+import models.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrainListenerTest {
+    Train passengerTrain;
+    Train otherTrain;
+    Deque<Runnable> tasks;
+    List<List<TrainEvent>> batches;
+    List<List<TrainEvent>> otherBatches;
+
+    @BeforeEach
+    private void setup() {
+        passengerTrain = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        otherTrain = new Train(new Locomotive(29123, 7), "Amsterdam", "London");
+        tasks = new ArrayDeque<>();
+        batches = new ArrayList<>();
+        otherBatches = new ArrayList<>();
+        passengerTrain.addListener((train, events) -> batches.add(events), tasks::add);
+        otherTrain.addListener((train, events) -> otherBatches.add(events), tasks::add);
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+    }
+
+    private static void assertEvent(TrainEvent.Type type, int position, int numberOfWagons, Train otherTrain,
+                                    TrainEvent event) {
+        assertEquals(type, event.getType());
+        assertEquals(position, event.getPosition());
+        assertEquals(numberOfWagons, event.getNumberOfWagons());
+        assertSame(otherTrain, event.getOtherTrain());
+    }
+
+    @Test
+    public void T181_changesAreDeliveredInBatches() {
+        PassengerWagon sequence = new PassengerWagon(8001, 32);
+        new PassengerWagon(8002, 32).attachTo(sequence);
+        assertTrue(passengerTrain.attachToRear(sequence));
+        assertTrue(passengerTrain.insertAtFront(new PassengerWagon(8003, 18)));
+        assertTrue(passengerTrain.insertAtPosition(3, new PassengerWagon(8004, 44)));
+        assertFalse(passengerTrain.attachToRear(new FreightWagon(9001, 50000)));
+        assertEquals(1, tasks.size(), "one delivery is scheduled per batch");
+        assertTrue(batches.isEmpty());
+
+        runTasks();
+        assertEquals(1, batches.size());
+        List<TrainEvent> events = batches.get(0);
+        assertEquals(3, events.size(), "rejected changes are not reported");
+        assertEvent(TrainEvent.Type.ADDED, 1, 2, null, events.get(0));
+        assertEvent(TrainEvent.Type.ADDED, 1, 1, null, events.get(1));
+        assertEvent(TrainEvent.Type.ADDED, 3, 1, null, events.get(2));
+        assertThrows(UnsupportedOperationException.class, () -> events.add(events.get(0)));
+
+        passengerTrain.reverse();
+        runTasks();
+        assertEquals(2, batches.size());
+        assertEvent(TrainEvent.Type.REVERSED, 1, 4, null, batches.get(1).get(0));
+        assertTrue(otherBatches.isEmpty());
+    }
+
+    @Test
+    public void T182_movesAreReportedToBothTrains() {
+        for (int id = 8001; id <= 8004; id++) {
+            passengerTrain.attachToRear(new PassengerWagon(id, 32));
+        }
+        runTasks();
+        batches.clear();
+
+        assertTrue(passengerTrain.moveOneWagon(8002, otherTrain));
+        assertTrue(passengerTrain.splitAtPosition(2, otherTrain));
+        assertTrue(passengerTrain.insertAtFront(otherTrain.findWagonAtPosition(3)));
+        runTasks();
+
+        List<TrainEvent> events = batches.get(0);
+        assertEquals(3, events.size());
+        assertEvent(TrainEvent.Type.REMOVED, 2, 1, otherTrain, events.get(0));
+        assertEvent(TrainEvent.Type.REMOVED, 2, 2, otherTrain, events.get(1));
+        assertEvent(TrainEvent.Type.ADDED, 1, 1, otherTrain, events.get(2));
+
+        List<TrainEvent> otherEvents = otherBatches.get(0);
+        assertEquals(3, otherEvents.size());
+        assertEvent(TrainEvent.Type.ADDED, 1, 1, passengerTrain, otherEvents.get(0));
+        assertEvent(TrainEvent.Type.ADDED, 2, 2, passengerTrain, otherEvents.get(1));
+        assertEvent(TrainEvent.Type.REMOVED, 3, 1, passengerTrain, otherEvents.get(2));
+        assertEquals(2, passengerTrain.getNumberOfWagons());
+        assertEquals(2, otherTrain.getNumberOfWagons());
+    }
+
+    @Test
+    public void T183_removedListenersAreNotNotified() {
+        List<TrainEvent> direct = new ArrayList<>();
+        TrainListener listener = (train, events) -> direct.addAll(events);
+        passengerTrain.addListener(listener, Runnable::run);
+        passengerTrain.attachToRear(new PassengerWagon(8001, 32));
+        assertEquals(1, direct.size(), "a direct executor delivers during the change");
+
+        passengerTrain.setFirstWagon(new PassengerWagon(8002, 32));
+        assertEquals(3, direct.size());
+        assertEvent(TrainEvent.Type.REMOVED, 1, 1, null, direct.get(1));
+        assertEvent(TrainEvent.Type.ADDED, 1, 1, null, direct.get(2));
+
+        assertTrue(passengerTrain.removeListener(listener));
+        assertFalse(passengerTrain.removeListener(listener));
+        passengerTrain.attachToRear(new PassengerWagon(8003, 32));
+        assertEquals(3, direct.size());
+
+        assertFalse(passengerTrain.removeListener((train, events) -> batches.add(events)));
+        TrainListener queued = (train, events) -> fail("events of a removed listener are dropped");
+        otherTrain.addListener(queued, tasks::add);
+        otherTrain.attachToRear(new PassengerWagon(8004, 32));
+        otherTrain.removeListener(queued);
+        runTasks();
+        assertEquals(1, otherBatches.size());
+    }
+
+    @Test
+    public void T184_eventsKeepDerivedViewsUpToDate() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Train[] trains = { passengerTrain, otherTrain };
+        int[][] lengths = new int[2][1];
+        boolean[] consistent = { true, true };     // assertions would fail on the threads of the executor
+        for (int t = 0; t < 2; t++) {
+            int[] length = lengths[t];
+            int index = t;
+            trains[t].setLazyReversal(t == 1);
+            trains[t].addListener((train, events) -> {
+                for (TrainEvent event : events) {
+                    switch (event.getType()) {
+                        case ADDED:
+                            consistent[index] &= event.getPosition() >= 1 && event.getPosition() <= length[0] + 1;
+                            length[0] += event.getNumberOfWagons();
+                            break;
+                        case REMOVED:
+                            consistent[index] &= event.getPosition() >= 1
+                                    && event.getPosition() + event.getNumberOfWagons() - 1 <= length[0];
+                            length[0] -= event.getNumberOfWagons();
+                            break;
+                        case REVERSED:
+                            consistent[index] &= event.getNumberOfWagons() == length[0];
+                            break;
+                    }
+                }
+            }, executor);
+        }
+
+        Random random = new Random(181);
+        int nextId = 1;
+        for (int i = 0; i < 20000; i++) {
+            Train train = trains[random.nextInt(2)];
+            Train other = train == passengerTrain ? otherTrain : passengerTrain;
+            int n = train.getNumberOfWagons();
+            switch (random.nextInt(5)) {
+                case 0:
+                    train.insertAtPosition(1 + random.nextInt(n + 1), new PassengerWagon(nextId++, 32));
+                    break;
+                case 1:
+                    if (n > 0) {
+                        train.moveOneWagon(train.findWagonAtPosition(1 + random.nextInt(n)).getId(), other);
+                    }
+                    break;
+                case 2:
+                    train.splitAtPosition(1 + random.nextInt(n + 1), other);
+                    break;
+                case 3:
+                    train.reverse();
+                    break;
+                default:
+                    if (n > 0) {
+                        other.insertAtFront(train.findWagonAtPosition(1 + random.nextInt(n)));
+                    }
+            }
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(consistent[0] && consistent[1]);
+        assertEquals(passengerTrain.getNumberOfWagons(), lengths[0][0]);
+        assertEquals(otherTrain.getNumberOfWagons(), lengths[1][0]);
+    }
+}
@@ -0,0 +1,120 @@
+import models.*;
+import models.TrainMetrics.Operation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrainMetricsTest {
+    Train passengerTrain;
+    Train freightTrain;
+
+    @BeforeEach
+    private void setup() {
+        TrainMetrics.reset();
+        TrainMetrics.setEnabled(true);
+        passengerTrain = new Train(new Locomotive(24531, 3), "Amsterdam", "Paris");
+        freightTrain = new Train(new Locomotive(63427, 40), "Amsterdam", "Berlin");
+    }
+
+    @AfterEach
+    private void tearDown() {
+        TrainMetrics.setEnabled(false);
+        TrainMetrics.reset();
+    }
+
+    @Test
+    public void T141_callsAndRejectionReasonsAreCounted() {
+        freightTrain.attachToRear(new FreightWagon(9002, 50000));
+        TrainMetrics.reset();
+        assertTrue(passengerTrain.attachToRear(new PassengerWagon(8001, 32)));
+        assertTrue(passengerTrain.insertAtFront(new PassengerWagon(8002, 32)));
+        assertFalse(passengerTrain.attachToRear(new PassengerWagon(8001, 18)));
+        assertFalse(passengerTrain.attachToRear(new FreightWagon(9001, 50000)));
+        PassengerWagon sequence = new PassengerWagon(8003, 44);
+        new PassengerWagon(8004, 44).attachTo(sequence);
+        assertFalse(passengerTrain.canAttach(sequence));
+        assertFalse(passengerTrain.insertAtPosition(5, new PassengerWagon(8005, 44)));
+        assertFalse(passengerTrain.moveOneWagon(8099, freightTrain));
+        assertFalse(passengerTrain.moveOneWagon(8001, freightTrain));
+
+        TrainMetrics.Snapshot snapshot = TrainMetrics.snapshot();
+        assertEquals(3, snapshot.getCalls(Operation.ATTACH_TO_REAR));
+        assertEquals(1, snapshot.getCalls(Operation.INSERT_AT_FRONT));
+        assertEquals(1, snapshot.getCalls(Operation.CAN_ATTACH));
+        assertEquals(1, snapshot.getRejections(Operation.ATTACH_TO_REAR, Rejection.DUPLICATE_ID));
+        assertEquals(1, snapshot.getRejections(Operation.ATTACH_TO_REAR, Rejection.TYPE_MISMATCH));
+        assertEquals(1, snapshot.getRejections(Operation.CAN_ATTACH, Rejection.CAPACITY_EXCEEDED));
+        assertEquals(1, snapshot.getRejections(Rejection.INVALID_POSITION));
+        assertEquals(1, snapshot.getRejections(Rejection.WAGON_NOT_FOUND));
+        assertEquals(1, snapshot.getRejections(Operation.MOVE_ONE_WAGON, Rejection.TYPE_MISMATCH));
+        assertEquals(2, snapshot.getRejections(Rejection.TYPE_MISMATCH));
+        assertTrue(snapshot.getLatencyNanos(Operation.ATTACH_TO_REAR, 100) > 0);
+        assertEquals(0, snapshot.getLatencyNanos(Operation.REVERSE, 50));
+    }
+
+    @Test
+    public void T141_nestedOperationsAreCountedOnce() {
+        freightTrain.attachToRear(new FreightWagon(9001, 50000));
+        freightTrain.attachToRear(new FreightWagon(9002, 50000));
+        freightTrain.attachToRear(new FreightWagon(9003, 50000));
+        Train otherTrain = new Train(new Locomotive(63428, 40), "Amsterdam", "Milan");
+        assertTrue(freightTrain.insertAtPosition(4, new FreightWagon(9004, 50000)));
+        assertTrue(freightTrain.splitAtPosition(3, otherTrain));
+        assertTrue(freightTrain.moveOneWagon(9001, otherTrain));
+        freightTrain.reverse();
+
+        TrainMetrics.Snapshot snapshot = TrainMetrics.snapshot();
+        assertEquals(3, snapshot.getCalls(Operation.ATTACH_TO_REAR));
+        assertEquals(1, snapshot.getCalls(Operation.INSERT_AT_POSITION));
+        assertEquals(1, snapshot.getCalls(Operation.SPLIT_AT_POSITION));
+        assertEquals(1, snapshot.getCalls(Operation.MOVE_ONE_WAGON));
+        assertEquals(1, snapshot.getCalls(Operation.REVERSE));
+        assertEquals(0, snapshot.getCalls(Operation.CAN_ATTACH));
+        // lengths after the changes: 1, 2, 3, 4, 2 (split), 3 (move), 1 (reverse)
+        assertEquals(1, snapshot.getConsistLength(0));
+        assertEquals(2, snapshot.getConsistLength(50));
+        assertEquals(4, snapshot.getConsistLength(100));
+    }
+
+    @Test
+    public void T141_disabledMetricsRecordNothing() {
+        TrainMetrics.setEnabled(false);
+        passengerTrain.attachToRear(new PassengerWagon(8001, 32));
+        passengerTrain.attachToRear(new FreightWagon(9001, 50000));
+        passengerTrain.reverse();
+        TrainMetrics.Snapshot snapshot = TrainMetrics.snapshot();
+        for (Operation operation : Operation.values()) {
+            assertEquals(0, snapshot.getCalls(operation));
+        }
+        assertEquals(0, snapshot.getRejections(Rejection.TYPE_MISMATCH));
+        assertEquals(0, snapshot.getConsistLength(100));
+    }
+
+    @Test
+    public void T141_metricsAreExposedThroughJmx() throws Exception {
+        TrainMetrics.registerMBean();
+        TrainMetrics.registerMBean();
+        passengerTrain.attachToRear(new PassengerWagon(8001, 32));
+        passengerTrain.attachToRear(new FreightWagon(9001, 50000));
+
+        ObjectName name = new ObjectName("models:type=TrainMetrics");
+        assertEquals(Boolean.TRUE, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Enabled"));
+        TrainMetricsMXBean metrics = javax.management.JMX.newMXBeanProxy(
+                ManagementFactory.getPlatformMBeanServer(), name, TrainMetricsMXBean.class);
+        Map<String, Long> calls = metrics.getCalls();
+        assertEquals(2L, (long) calls.get("ATTACH_TO_REAR"));
+        assertEquals(1L, (long) metrics.getRejections().get("TYPE_MISMATCH"));
+        assertEquals(1, metrics.getMaxConsistLength());
+        metrics.reset();
+        assertEquals(0L, (long) metrics.getCalls().get("ATTACH_TO_REAR"));
+        metrics.setEnabled(false);
+        assertFalse(TrainMetrics.isEnabled());
+    }
+}
@@ -3,6 +3,18 @@ import models.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class  TrainTest {
@@ -94,8 +106,7 @@ public class  TrainTest {
         System.out.println(passengerTrain);
 
         // check toString
-        // zie comments in de train classe
-//        assertTrue(freightTrain.toString().indexOf("from Amsterdam to Berlin") > 0);
+        assertTrue(freightTrain.toString().indexOf("from Amsterdam to Berlin") > 0);
     }
 
     @Test
@@ -227,4 +238,364 @@ public class  TrainTest {
         }
         assertEquals(27006, sumIds);
     }
+
+    @Test
+    public void T20_cumulativePropertiesStayCorrectAfterEveryOperation() {
+        assertTrue(passengerTrain.splitAtPosition(5, trainWithoutWagons));
+        assertCumulativePropertiesMatchWagons(passengerTrain);
+        assertCumulativePropertiesMatchWagons(trainWithoutWagons);
+
+        assertTrue(trainWithoutWagons.moveOneWagon(8006, passengerTrain));
+        passengerTrain.reverse();
+        assertTrue(passengerTrain.insertAtPosition(2, trainWithoutWagons.getFirstWagon()));
+        assertCumulativePropertiesMatchWagons(passengerTrain);
+        assertCumulativePropertiesMatchWagons(trainWithoutWagons);
+        assertEquals(0, trainWithoutWagons.getNumberOfWagons());
+        assertEquals(7, passengerTrain.getNumberOfWagons());
+        assertEquals(254, passengerTrain.getTotalNumberOfSeats());
+
+        ((PassengerWagon) passengerTrain.findWagonById(8003)).setNumberOfSeats(20);
+        assertEquals(256, passengerTrain.getTotalNumberOfSeats());
+
+        assertTrue(freightTrain.insertAtFront(freightWagon1));
+        assertEquals(240000, freightTrain.getTotalMaxWeight());
+        assertCumulativePropertiesMatchWagons(freightTrain);
+    }
+
+    @Test
+    public void T20_longSequencesCanBeAssembledOneWagonAtATime() {
+        Train longTrain = new Train(new Locomotive(1, 50000), "Amsterdam", "Rotterdam");
+        for (int id = 1; id <= 50000; id++) {
+            assertTrue(longTrain.attachToRear(new FreightWagon(id, 1000)));
+        }
+        assertEquals(50000, longTrain.getNumberOfWagons());
+        assertEquals(50000, longTrain.getLastWagonAttached().getId());
+        assertEquals(50000, longTrain.getFirstWagon().getSequenceLength());
+        assertSame(longTrain.getLastWagonAttached(), longTrain.getFirstWagon().getLastWagonAttached());
+    }
+
+    @Test
+    public void T21_positionsStayCorrectAfterRandomOperations() {
+        Random random = new Random(20201);
+        Train train1 = new Train(new Locomotive(1, 1000), "Amsterdam", "Rotterdam");
+        Train train2 = new Train(new Locomotive(2, 1000), "Amsterdam", "Rotterdam");
+        int nextId = 1;
+        for (int step = 0; step < 2000; step++) {
+            Train from = random.nextBoolean() ? train1 : train2;
+            Train to = from == train1 ? train2 : train1;
+            int n = from.getNumberOfWagons();
+            switch (random.nextInt(5)) {
+                case 0:
+                    from.insertAtPosition(1 + random.nextInt(n + 1), new FreightWagon(nextId++, 100));
+                    break;
+                case 1:
+                    FreightWagon sequence = new FreightWagon(nextId++, 100);
+                    new FreightWagon(nextId++, 100).attachTo(sequence);
+                    from.insertAtPosition(1 + random.nextInt(n + 1), sequence);
+                    break;
+                case 2:
+                    if (n > 0) from.moveOneWagon(from.findWagonAtPosition(1 + random.nextInt(n)).getId(), to);
+                    break;
+                case 3:
+                    if (n > 0 && random.nextInt(4) == 0) from.splitAtPosition(1 + random.nextInt(n), to);
+                    break;
+                default:
+                    from.reverse();
+            }
+            if (step % 50 == 0) {
+                assertPositionsMatchWagons(train1);
+                assertPositionsMatchWagons(train2);
+            }
+        }
+        assertPositionsMatchWagons(train1);
+        assertPositionsMatchWagons(train2);
+    }
+
+    @Test
+    public void T22_lazyReversalGivesTheSameTrainsAsEagerReversal() {
+        Random random = new Random(22);
+        Train[] lazy = {new Train(new Locomotive(1, 1000), "Amsterdam", "Rotterdam"),
+                new Train(new Locomotive(2, 1000), "Amsterdam", "Rotterdam")};
+        Train[] eager = {new Train(new Locomotive(1, 1000), "Amsterdam", "Rotterdam"),
+                new Train(new Locomotive(2, 1000), "Amsterdam", "Rotterdam")};
+        lazy[0].setLazyReversal(true);
+        lazy[1].setLazyReversal(true);
+        int nextId = 1;
+        for (int step = 0; step < 2000; step++) {
+            int from = random.nextInt(2);
+            int n = lazy[from].getNumberOfWagons();
+            int operation = random.nextInt(6);
+            int position = 1 + random.nextInt(n + 1);
+            boolean split = random.nextInt(4) == 0;
+            for (Train[] trains : new Train[][] {lazy, eager}) {
+                Train train = trains[from], to = trains[1 - from];
+                switch (operation) {
+                    case 0:
+                        FreightWagon sequence = new FreightWagon(nextId, 100);
+                        new FreightWagon(nextId + 1, 100).attachTo(sequence);
+                        train.insertAtPosition(position, sequence);
+                        break;
+                    case 1:
+                        train.attachToRear(new FreightWagon(nextId, 100));
+                        break;
+                    case 2:
+                        if (position <= n) train.moveOneWagon(train.findWagonAtPosition(position).getId(), to);
+                        break;
+                    case 3:
+                        if (position <= n && split) train.splitAtPosition(position, to);
+                        break;
+                    default:
+                        train.reverse();
+                }
+            }
+            nextId += 2;
+            for (int i = 0; i < 2; i++) {
+                assertEquals(idsOf(eager[i]), idsOf(lazy[i]));
+                if (lazy[i].hasWagons()) {
+                    assertEquals(eager[i].getLastWagonAttached().getId(), lazy[i].getLastWagonAttached().getId());
+                }
+            }
+            if (step % 50 == 0) {
+                assertPositionsMatchWagons(lazy[0]);
+                assertPositionsMatchWagons(lazy[1]);
+            }
+        }
+        lazy[0].setLazyReversal(false);
+        assertEquals(idsOf(eager[0]), idsOf(lazy[0]));
+        assertEquals(eager[0].getFirstWagon().getSequenceLength(), lazy[0].getFirstWagon().getSequenceLength());
+    }
+
+    @Test
+    public void T22_checksDoNotRelinkALazilyReversedTrain() {
+        Train reversedTrain = new Train(new Locomotive(1, 10), "Amsterdam", "Brussels");
+        reversedTrain.setLazyReversal(true);
+        for (int id = 8101; id <= 8105; id++) {
+            reversedTrain.attachToRear(new PassengerWagon(id, 40));
+        }
+        reversedTrain.reverse();
+        Wagon sequence = reversedTrain.findWagonAtPosition(2);      // followed by 8103, 8102, 8101 in the train
+        Train otherTrain = new Train(new Locomotive(2, 10), "Amsterdam", "Rome");
+        otherTrain.attachToRear(new PassengerWagon(8101, 40));
+
+        Iterator<Wagon> wagons = reversedTrain.iterator();
+        wagons.next();
+        assertTrue(trainWithoutWagons.canAttach(sequence));
+        assertEquals(Rejection.DUPLICATE_ID, otherTrain.checkAttach(sequence));
+        assertEquals(Rejection.CAPACITY_EXCEEDED, passengerTrain.checkAttach(sequence));
+        assertEquals(8104, wagons.next().getId(), "a check does not change the train it looks at");
+
+        assertTrue(trainWithoutWagons.attachToRear(sequence));
+        assertEquals(List.of(8104, 8103, 8102, 8101), idsOf(trainWithoutWagons));
+        assertEquals(List.of(8105), idsOf(reversedTrain));
+    }
+
+    @Test
+    public void T23_spliteratorSplitsAtTheMiddlePosition() {
+        Train train = new Train(new Locomotive(1, 1000), "Amsterdam", "Rotterdam");
+        for (int id = 1; id <= 1000; id++) {
+            train.attachToRear(new FreightWagon(id, 100));
+        }
+        train.setLazyReversal(true);
+        train.reverse();
+        Spliterator<Wagon> rear = train.spliterator();
+        assertTrue(rear.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+        Spliterator<Wagon> front = rear.trySplit();
+        Spliterator<Wagon> middle = rear.trySplit();
+        assertEquals(500, front.estimateSize());
+        assertEquals(250, middle.estimateSize());
+        assertEquals(250, rear.estimateSize());
+        List<Integer> ids = new ArrayList<>();
+        assertTrue(front.tryAdvance(wagon -> ids.add(wagon.getId())));
+        front.forEachRemaining(wagon -> ids.add(wagon.getId()));
+        middle.forEachRemaining(wagon -> ids.add(wagon.getId()));
+        rear.forEachRemaining(wagon -> ids.add(wagon.getId()));
+        assertFalse(rear.tryAdvance(wagon -> ids.add(wagon.getId())));
+        assertEquals(idsOf(train), ids);
+        assertEquals(1000, (int) ids.get(0));
+    }
+
+    @Test
+    public void T24_streamsMatchIterationAndCumulativeProperties() {
+        Train longTrain = new Train(new Locomotive(1, 100000), "Amsterdam", "Rotterdam");
+        Wagon first = new PassengerWagon(1, 1), last = first;
+        for (int id = 2; id <= 100000; id++) {
+            Wagon wagon = new PassengerWagon(id, id % 50);
+            wagon.attachTo(last);
+            last = wagon;
+        }
+        longTrain.setFirstWagon(first);
+        assertEquals(longTrain.getTotalNumberOfSeats(), longTrain.seatCounts(true).sum());
+        assertEquals(longTrain.getTotalNumberOfSeats(), longTrain.seatCounts(false).sum());
+        assertEquals(0, longTrain.maxWeights(true).count());
+        assertEquals(idsOf(longTrain), longTrain.parallelStream().map(Wagon::getId).collect(Collectors.toList()));
+        assertEquals(100000, longTrain.parallelStream().filter(wagon -> wagon.getId() > 0).count());
+        assertEquals(8004, passengerTrain.stream().skip(3).findFirst().get().getId());
+        assertEquals(freightTrain.getTotalMaxWeight(), freightTrain.maxWeights(false).sum());
+        assertEquals(0, trainWithoutWagons.stream().count());
+        assertEquals(0, trainWithoutWagons.seatCounts(true).sum());
+    }
+
+    @Test
+    public void T25_iteratorsFailFastWhenTheTrainIsChanged() {
+        Iterator<Wagon> wagons = passengerTrain.iterator();
+        wagons.next();
+        passengerTrain.moveOneWagon(8002, trainWithoutWagons);
+        assertThrows(ConcurrentModificationException.class, wagons::next);
+        Spliterator<Wagon> spliterator = passengerTrain.spliterator();
+        passengerTrain.reverse();
+        assertThrows(ConcurrentModificationException.class, () -> spliterator.tryAdvance(wagon -> { }));
+        Iterator<Wagon> exhausted = trainWithoutWagons.iterator();
+        exhausted.next();
+        assertThrows(NoSuchElementException.class, exhausted::next);
+    }
+
+    @Test
+    public void T25_snapshotIteratorsAllowChangesDuringIteration() {
+        passengerTrain.setSnapshotIteration(true);
+        List<Integer> expected = idsOf(passengerTrain);
+        List<Integer> ids = new ArrayList<>();
+        for (Wagon wagon : passengerTrain) {
+            ids.add(wagon.getId());
+            passengerTrain.moveOneWagon(wagon.getId(), trainWithoutWagons);
+        }
+        assertEquals(expected.subList(0, trainWithoutWagons.getEngine().getMaxWagons()), idsOf(trainWithoutWagons));
+        assertEquals(expected, ids);
+        passengerTrain.setSnapshotIteration(false);
+        assertFalse(passengerTrain.isSnapshotIteration());
+    }
+
+    @Test
+    public void T25_snapshotIteratorsSeeTheTrainAsItWasWhenTheyStarted() {
+        passengerTrain.setSnapshotIteration(true);
+        List<Integer> expected = idsOf(passengerTrain);
+        Iterator<Wagon> before = passengerTrain.iterator();
+        Iterator<Wagon> unchanged = passengerTrain.iterator();
+        List<Integer> ids = new ArrayList<>();
+        while (before.hasNext()) {
+            Wagon wagon = before.next();
+            ids.add(wagon.getId());
+            assertEquals(wagon, unchanged.next(), "iterators started before a change share the copy");
+            switch (wagon.getId() % 3) {
+                case 0:
+                    passengerTrain.reverse();
+                    break;
+                case 1:
+                    passengerTrain.splitAtPosition(passengerTrain.getNumberOfWagons(), trainWithoutWagons);
+                    break;
+                default:
+                    passengerTrain.insertAtFront(trainWithoutWagons.getFirstWagon());
+            }
+        }
+        assertEquals(expected, ids);
+        List<Integer> after = new ArrayList<>();
+        passengerTrain.iterator().forEachRemaining(wagon -> after.add(wagon.getId()));
+        assertEquals(idsOf(passengerTrain), after, "an iterator started after the changes sees them");
+        assertNotEquals(expected, after);
+    }
+
+    @Test
+    public void T26_tryOperationsReportWhyNoChangeWasMade() {
+        assertEquals(Rejection.CAPACITY_EXCEEDED, passengerTrain.tryAttachToRear(new PassengerWagon(8008, 32)));
+        assertEquals(Rejection.TYPE_MISMATCH, freightTrain.tryInsertAtFront(passengerWagon1));
+        assertEquals(Rejection.DUPLICATE_ID, freightTrain.tryAttachToRear(new FreightWagon(9002, 10000)));
+        assertEquals(Rejection.NO_WAGONS, freightTrain.tryAttachToRear(null));
+        assertEquals(Rejection.INVALID_POSITION, freightTrain.tryInsertAtPosition(5, freightWagon1));
+        assertEquals(Rejection.INVALID_POSITION, freightTrain.trySplitAtPosition(4, trainWithoutWagons));
+        assertEquals(Rejection.WAGON_NOT_FOUND, passengerTrain.tryMoveOneWagon(8099, trainWithoutWagons));
+        assertEquals(Rejection.TYPE_MISMATCH, passengerTrain.tryMoveOneWagon(8001, freightTrain));
+        assertEquals(7, passengerTrain.getNumberOfWagons());
+        assertEquals(3, freightTrain.getNumberOfWagons());
+
+        assertNull(freightTrain.tryInsertAtPosition(2, freightWagon1));
+        assertEquals(9011, freightTrain.findWagonAtPosition(2).getId());
+        assertNull(passengerTrain.tryMoveOneWagon(8001, trainWithoutWagons));
+        assertNull(passengerTrain.trySplitAtPosition(5, trainWithoutWagons));
+        assertEquals(3, trainWithoutWagons.getNumberOfWagons());
+        assertEquals(Rejection.DUPLICATE_ID, trainWithoutWagons.checkAttach(new PassengerWagon(8006, 44)));
+        assertNull(trainWithoutWagons.checkAttach(passengerTrain.getFirstWagon()));
+    }
+
+    @Test
+    public void T26_candidateSequencesAreCheckedInOneCall() {
+        Wagon[] candidates = {
+                new FreightWagon(9021, 10000), passengerWagon1, new FreightWagon(9001, 10000),
+                freightWagon1, null, new FreightWagon(9022, 10000)
+        };
+        Rejection[] results = new Rejection[candidates.length];
+        assertEquals(3, freightTrain.checkAttach(candidates, results));
+        assertArrayEquals(new Rejection[] {
+                null, Rejection.TYPE_MISMATCH, Rejection.DUPLICATE_ID, null, Rejection.NO_WAGONS, null
+        }, results);
+        assertEquals(3, freightTrain.getNumberOfWagons());
+
+        Train shortTrain = new Train(new Locomotive(63428, 1), "Amsterdam", "Berlin");
+        assertEquals(3, shortTrain.checkAttach(candidates, results));
+        assertEquals(Rejection.CAPACITY_EXCEEDED, results[1]);
+        assertEquals(Rejection.CAPACITY_EXCEEDED, results[3]);
+        assertThrows(IllegalArgumentException.class, () -> shortTrain.checkAttach(candidates, new Rejection[1]));
+    }
+
+    @Test
+    public void T27_toStringRendersTheCompleteConsist() throws IOException {
+        assertEquals("[Loc-24531][Wagon-8001][Wagon-8002][Wagon-8003][Wagon-8004][Wagon-8005][Wagon-8006][Wagon-8007]"
+                + " with 7 wagons and 254 seats from Amsterdam to Paris", passengerTrain.toString());
+        assertEquals("[Loc-29123] with 0 wagons from Amsterdam to London", trainWithoutWagons.toString());
+        trainWithoutWagons.attachToRear(new FreightWagon(-9002, 40000));
+        assertEquals("[Loc-29123][Wagon--9002] with 1 wagon and 40000 kg from Amsterdam to London",
+                trainWithoutWagons.toString());
+
+        StringBuilder out = new StringBuilder();
+        assertSame(out, passengerTrain.appendTo(out, 3));
+        assertEquals("[Loc-24531][Wagon-8001][Wagon-8002][... 4 wagons ...][Wagon-8007]"
+                + " with 7 wagons and 254 seats from Amsterdam to Paris", out.toString());
+        passengerTrain.setLazyReversal(true);
+        passengerTrain.reverse();
+        out.setLength(0);
+        assertEquals("[Loc-24531][Wagon-8007][... 5 wagons ...][Wagon-8001]"
+                + " with 7 wagons and 254 seats from Amsterdam to Paris", passengerTrain.appendTo(out, 2).toString());
+        out.setLength(0);
+        assertEquals("[Loc-24531][... 7 wagons ...] with 7 wagons and 254 seats from Amsterdam to Paris",
+                passengerTrain.appendTo(out, 0).toString());
+
+        CharBuffer buffer = CharBuffer.allocate(256);
+        passengerTrain.appendTo(buffer, 100);
+        buffer.flip();
+        assertEquals(passengerTrain.toString(), buffer.toString());
+        assertThrows(BufferOverflowException.class, () -> passengerTrain.appendTo(CharBuffer.allocate(16), 100));
+        assertThrows(IllegalArgumentException.class, () -> passengerTrain.appendTo(out, -1));
+    }
+
+    private static List<Integer> idsOf(Train train) {
+        List<Integer> ids = new ArrayList<>();
+        for (Wagon wagon : train) {
+            ids.add(wagon.getId());
+        }
+        return ids;
+    }
+
+    private static void assertPositionsMatchWagons(Train train) {
+        int position = 0;
+        for (Wagon wagon : train) {
+            position++;
+            assertSame(wagon, train.findWagonAtPosition(position));
+            assertEquals(position, train.findPositionById(wagon.getId()));
+        }
+        assertNull(train.findWagonAtPosition(position + 1));
+        assertCumulativePropertiesMatchWagons(train);
+    }
+
+    private static void assertCumulativePropertiesMatchWagons(Train train) {
+        int numberOfWagons = 0, seats = 0, maxWeight = 0;
+        Wagon last = null;
+        for (Wagon wagon : train) {
+            last = wagon;
+            numberOfWagons++;
+            if (wagon instanceof PassengerWagon) seats += ((PassengerWagon) wagon).getNumberOfSeats();
+            else maxWeight += ((FreightWagon) wagon).getMaxWeight();
+        }
+        assertEquals(numberOfWagons, train.getNumberOfWagons());
+        assertEquals(seats, train.getTotalNumberOfSeats());
+        assertEquals(maxWeight, train.getTotalMaxWeight());
+        assertSame(last, train.getLastWagonAttached());
+    }
 }
@@ -0,0 +1,59 @@
+import models.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WagonPoolTest {
+    WagonPool pool;
+    Train freightTrain;
+
+    @BeforeEach
+    private void setup() {
+        pool = new WagonPool();
+        freightTrain = new Train(new Locomotive(63427, 50), "Amsterdam", "Berlin");
+    }
+
+    @Test
+    public void T131_releasedWagonsAreReusedWithNewProperties() {
+        FreightWagon wagon = pool.freightWagon(9001, 50000);
+        new FreightWagon(9002, 40000).attachTo(wagon);
+        pool.release(wagon);
+        assertEquals(2, pool.getNumberOfIdleFreightWagons());
+        FreightWagon reused = pool.freightWagon(9003, 30000);
+        FreightWagon other = pool.freightWagon(9004, 20000);
+        assertTrue(reused == wagon || other == wagon);
+        assertEquals(0, pool.getNumberOfIdleFreightWagons());
+        assertEquals(9003, reused.getId());
+        assertEquals(30000, reused.getMaxWeight());
+        assertFalse(reused.hasNextWagon() || reused.hasPreviousWagon());
+        assertTrue(freightTrain.attachToRear(reused));
+        assertTrue(freightTrain.attachToRear(other));
+        assertEquals(50000, freightTrain.getTotalMaxWeight());
+        assertSame(reused, freightTrain.findWagonById(9003));
+    }
+
+    @Test
+    public void T131_releaseDetachesTheSequenceFromItsPreviousWagon() {
+        pool.reserve(3, 0);
+        PassengerWagon first = pool.passengerWagon(8001, 32);
+        PassengerWagon second = pool.passengerWagon(8002, 32);
+        second.attachTo(first);
+        pool.release(second);
+        assertFalse(first.hasNextWagon());
+        assertEquals(2, pool.getNumberOfIdlePassengerWagons());
+    }
+
+    @Test
+    public void T131_wagonsInTrainsOrAlreadyReleasedCannotBeReleased() {
+        FreightWagon wagon = pool.freightWagon(9001, 50000);
+        freightTrain.attachToRear(wagon);
+        assertThrows(IllegalArgumentException.class, () -> pool.release(wagon));
+        assertEquals(0, pool.getNumberOfIdleFreightWagons());
+        freightTrain.setFirstWagon(null);
+        pool.release(wagon);
+        assertThrows(IllegalArgumentException.class, () -> pool.release(wagon));
+        assertEquals(1, pool.getNumberOfIdleFreightWagons());
+    }
+}
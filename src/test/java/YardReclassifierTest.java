@@ -0,0 +1,159 @@
+import models.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class YardReclassifierTest {
+    Train inbound1, inbound2, toParis, toBerlin, freightTrain;
+    YardReclassifier reclassifier;
+
+    @BeforeEach
+    private void setup() {
+        inbound1 = new Train(new Locomotive(1, 10), "Utrecht", "Yard");
+        inbound2 = new Train(new Locomotive(2, 10), "Zwolle", "Yard");
+        for (int id = 8001; id <= 8006; id++) {
+            inbound1.attachToRear(new PassengerWagon(id, 20));
+            inbound2.attachToRear(new PassengerWagon(id + 100, 30));
+        }
+        toParis = new Train(new Locomotive(3, 5), "Yard", "Paris");
+        toParis.attachToRear(new PassengerWagon(8500, 40));
+        toBerlin = new Train(new Locomotive(4, 10), "Yard", "Berlin");
+        freightTrain = new Train(new Locomotive(5, 10), "Yard", "Hamburg");
+        freightTrain.attachToRear(new FreightWagon(9001, 50000));
+        reclassifier = new YardReclassifier();
+    }
+
+    @Test
+    public void T111_wagonsAreGroupedByOutboundTrainInInboundOrder() {
+        // even ids to Paris, odd ids to Berlin
+        int moved = reclassifier.reclassify(List.of(inbound1, inbound2),
+                wagon -> wagon.getId() % 2 == 0 ? toParis : toBerlin);
+        assertEquals(10, moved);
+        assertEquals(List.of(8500, 8002, 8004, 8006, 8102), idsOf(toParis));
+        assertEquals(List.of(8001, 8003, 8005, 8101, 8103, 8105), idsOf(toBerlin));
+        assertEquals(List.of(), idsOf(inbound1));
+        assertEquals(List.of(8104, 8106), idsOf(inbound2));
+        assertEquals(40 + 3 * 20 + 30, toParis.getTotalNumberOfSeats());
+        assertEquals(3 * 20 + 3 * 30, toBerlin.getTotalNumberOfSeats());
+        assertEquals(60, inbound2.getTotalNumberOfSeats());
+        assertSame(toBerlin.findWagonById(8101), toBerlin.findWagonAtPosition(4));
+        assertEquals(6, toBerlin.findPositionById(8105));
+    }
+
+    @Test
+    public void T111_incompatibleAndUnroutedWagonsStayInTheirInboundTrain() {
+        inbound1.attachToRear(new PassengerWagon(9001, 20));
+        Map<Integer, Train> routes = Map.of(8001, freightTrain, 8002, toBerlin, 8003, inbound1,
+                8004, toBerlin, 9001, toBerlin);
+        int moved = reclassifier.reclassify(List.of(inbound1), wagon -> routes.get(wagon.getId()));
+        assertEquals(3, moved);
+        assertEquals(List.of(8002, 8004, 9001), idsOf(toBerlin));
+        assertEquals(List.of(8001, 8003, 8005, 8006), idsOf(inbound1));
+        assertEquals(4, inbound1.getNumberOfWagons());
+        assertEquals(8006, inbound1.getLastWagonAttached().getId());
+        assertEquals(List.of(9001), idsOf(freightTrain));
+    }
+
+    @Test
+    public void T111_outboundCapacityAndIdsAreRespected() {
+        toParis.attachToRear(new PassengerWagon(8104, 40));
+        int moved = reclassifier.reclassify(List.of(inbound2, inbound1), wagon -> toParis);
+        assertEquals(3, moved);
+        assertEquals(List.of(8500, 8104, 8101, 8102, 8103), idsOf(toParis));
+        assertEquals(List.of(8104, 8105, 8106), idsOf(inbound2));
+        assertEquals(6, inbound1.getNumberOfWagons());
+    }
+
+    @Test
+    public void T111_routingExceptionsLeaveAllTrainsUnchanged() {
+        assertThrows(IllegalArgumentException.class, () -> reclassifier.reclassify(List.of(inbound1, inbound2),
+                wagon -> {
+                    if (wagon.getId() == 8103) throw new IllegalArgumentException("no route");
+                    return toBerlin;
+                }));
+        assertEquals(6, inbound1.getNumberOfWagons());
+        assertEquals(6, inbound2.getNumberOfWagons());
+        assertFalse(toBerlin.hasWagons());
+    }
+
+    @Test
+    public void T111_onlyTheRunsThatMoveAreCutOut() {
+        List<TrainEvent> events = new ArrayList<>();
+        List<TrainEvent> otherEvents = new ArrayList<>();
+        inbound1.setLazyReversal(true);
+        inbound1.reverse();
+        inbound1.addListener((train, batch) -> events.addAll(batch), Runnable::run);
+        inbound2.addListener((train, batch) -> otherEvents.addAll(batch), Runnable::run);
+        Map<Integer, Train> routes = Map.of(8006, toBerlin, 8005, toBerlin, 8002, toParis, 8001, toBerlin);
+        int moved = reclassifier.reclassify(List.of(inbound1, inbound2), wagon -> routes.get(wagon.getId()));
+
+        assertEquals(4, moved);
+        assertEquals(List.of(8006, 8005, 8001), idsOf(toBerlin));
+        assertEquals(List.of(8500, 8002), idsOf(toParis));
+        assertEquals(List.of(8004, 8003), idsOf(inbound1));
+        assertEquals(8003, inbound1.findWagonAtPosition(1).getPreviousWagon().getId(),
+                "the inbound train keeps its orientation instead of being relinked");
+        assertEquals(3, events.size(), "one event for every run");
+        assertEquals(TrainEvent.Type.REMOVED, events.get(0).getType());
+        assertEquals(1, events.get(0).getPosition());
+        assertEquals(2, events.get(0).getNumberOfWagons());
+        assertEquals(3, events.get(1).getPosition());
+        assertEquals(1, events.get(1).getNumberOfWagons());
+        assertEquals(3, events.get(2).getPosition());
+        assertTrue(otherEvents.isEmpty(), "a train that keeps all its wagons is not changed");
+        assertEquals(6, inbound2.getNumberOfWagons());
+    }
+
+    @Test
+    public void T111_trainsListedTwiceAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> reclassifier.reclassify(List.of(inbound1, inbound2, inbound1), wagon -> toBerlin));
+        assertEquals(6, inbound1.getNumberOfWagons());
+        assertFalse(toBerlin.hasWagons());
+        assertEquals(6, reclassifier.reclassify(List.of(inbound1), wagon -> toBerlin));
+    }
+
+    @Test
+    public void T111_largeYardIsReclassifiedCompletely() {
+        List<Train> inbound = new ArrayList<>();
+        Train[] outbound = new Train[7];
+        for (int t = 0; t < outbound.length; t++) {
+            outbound[t] = new Train(new Locomotive(100 + t, 100000), "Yard", "Destination " + t);
+        }
+        int id = 100000;
+        for (int t = 0; t < 50; t++) {
+            Train train = new Train(new Locomotive(t, 1000), "Origin " + t, "Yard");
+            for (int w = 0; w < 1000; w++) {
+                train.attachToRear(new FreightWagon(id++, 1000 + w));
+            }
+            inbound.add(train);
+        }
+        assertEquals(50000, reclassifier.reclassify(inbound, wagon -> outbound[wagon.getId() * 31 % 7]));
+        int total = 0;
+        for (int t = 0; t < outbound.length; t++) {
+            int previousId = 0;
+            for (Wagon wagon : outbound[t]) {
+                assertEquals(t, wagon.getId() * 31 % 7);
+                assertTrue(wagon.getId() > previousId);
+                previousId = wagon.getId();
+                total++;
+            }
+            assertEquals(outbound[t].getNumberOfWagons(), outbound[t].getFirstWagon().getSequenceLength());
+        }
+        assertEquals(50000, total);
+    }
+
+    private static List<Integer> idsOf(Train train) {
+        List<Integer> ids = new ArrayList<>();
+        for (Wagon wagon : train) {
+            ids.add(wagon.getId());
+        }
+        return ids;
+    }
+}